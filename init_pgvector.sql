@@ -4,9 +4,16 @@ CREATE TABLE document_chunks (
     id UUID PRIMARY KEY,
     content TEXT,
     file_name VARCHAR(255),
+    collection VARCHAR(255),
     chunk_index INTEGER,
     total_chunks INTEGER,
     embedding_vector VECTOR(384),
     created_at TIMESTAMP
 );
 
+CREATE INDEX IF NOT EXISTS document_chunks_file_name_idx ON document_chunks (file_name);
+CREATE INDEX IF NOT EXISTS document_chunks_collection_idx ON document_chunks (collection);
+
+-- The application creates and maintains this index at startup (see vector.index.* properties)
+CREATE INDEX IF NOT EXISTS document_chunks_embedding_idx
+    ON document_chunks USING hnsw (embedding_vector vector_l2_ops) WITH (m = 16, ef_construction = 64);
@@ -0,0 +1,92 @@
+package com.example.PDF.chatbot.using.Spring.AI.entity;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the binary pgvector codec with the decimal string codec it replaced
+ * (CustomOnnxService.embeddingToString / stringToEmbedding, copied here verbatim as the baseline).
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Thread)
+public class PgVectorCodecBenchmark {
+
+    @Param({"384"})
+    private int dimensions;
+
+    private float[] embedding;
+    private List<Float> boxedEmbedding;
+    private String encodedString;
+    private byte[] encodedBinary;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        embedding = new float[dimensions];
+        boxedEmbedding = new ArrayList<>(dimensions);
+        for (int i = 0; i < dimensions; i++) {
+            embedding[i] = (float) random.nextGaussian();
+            boxedEmbedding.add(embedding[i]);
+        }
+        encodedString = embeddingToString(boxedEmbedding);
+        PgVector vector = new PgVector(embedding);
+        encodedBinary = new byte[vector.lengthInBytes()];
+        vector.toBytes(encodedBinary, 0);
+    }
+
+    @Benchmark
+    public String stringEncode() {
+        return embeddingToString(boxedEmbedding);
+    }
+
+    @Benchmark
+    public List<Float> stringDecode() {
+        return stringToEmbedding(encodedString);
+    }
+
+    @Benchmark
+    public byte[] binaryEncode() {
+        PgVector vector = new PgVector(embedding);
+        byte[] bytes = new byte[vector.lengthInBytes()];
+        vector.toBytes(bytes, 0);
+        return bytes;
+    }
+
+    @Benchmark
+    public float[] binaryDecode() throws SQLException {
+        PgVector vector = new PgVector();
+        vector.setByteValue(encodedBinary, 0);
+        return vector.toArray();
+    }
+
+    private static String embeddingToString(List<Float> embedding) {
+        StringBuilder sb = new StringBuilder();
+        sb.append("[");
+        for (int i = 0; i < embedding.size(); i++) {
+            if (i > 0) sb.append(",");
+            sb.append(embedding.get(i));
+        }
+        sb.append("]");
+        return sb.toString();
+    }
+
+    private static List<Float> stringToEmbedding(String embeddingString) {
+        List<Float> embedding = new ArrayList<>();
+        String clean = embeddingString.replaceAll("[\\[\\]]", "");
+        String[] parts = clean.split(",");
+        for (String part : parts) {
+            try {
+                embedding.add(Float.parseFloat(part.trim()));
+            } catch (NumberFormatException e) {
+                embedding.add(0.0f);
+            }
+        }
+        return embedding;
+    }
+}
@@ -0,0 +1,182 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Recall@k and latency of the two-phase search of {@link VectorQuantization} by oversampling factor, on a
+ * synthetic clustered corpus. Phase one scans the compact representation exactly (the index in PostgreSQL
+ * adds its own approximation on top), phase two re-ranks the candidates by exact L2 distance, as the SQL does.
+ * Recall against the exact top k is printed once per trial; the score is the time per query.
+ * {@code offset} adds a shared per-dimension bias, as unnormalized [CLS] embeddings have; sign-bit
+ * quantization loses most where the bias dominates.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class QuantizedSearchBenchmark {
+
+    private static final int DIMENSIONS = 384;
+    private static final int CORPUS_SIZE = 50_000;
+    private static final int CLUSTERS = 500;
+    private static final int QUERIES = 200;
+    private static final int K = 10;
+
+    @Param({"NONE", "HALFVEC", "BINARY"})
+    private VectorQuantization mode;
+
+    @Param({"1", "2", "4", "8", "16"})
+    private int oversampling;
+
+    @Param({"0.0", "0.5"})
+    private double offset;
+
+    private float[][] corpus;
+    private float[][] halfCorpus;
+    private long[][] bitCorpus;
+    private float[][] queries;
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        float[] bias = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            bias[d] = (float) (offset * random.nextGaussian());
+        }
+        float[][] centroids = new float[CLUSTERS][];
+        for (int c = 0; c < CLUSTERS; c++) {
+            centroids[c] = gaussian(random, null, 1.0, bias);
+        }
+        corpus = new float[CORPUS_SIZE][];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            corpus[i] = gaussian(random, centroids[random.nextInt(CLUSTERS)], 0.6, null);
+        }
+        queries = new float[QUERIES][];
+        for (int q = 0; q < QUERIES; q++) {
+            queries[q] = gaussian(random, centroids[random.nextInt(CLUSTERS)], 0.6, null);
+        }
+        halfCorpus = new float[CORPUS_SIZE][];
+        bitCorpus = new long[CORPUS_SIZE][];
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            halfCorpus[i] = toHalf(corpus[i]);
+            bitCorpus[i] = toBits(corpus[i]);
+        }
+
+        int found = 0;
+        for (float[] query : queries) {
+            int[] exact = topK(query, VectorQuantization.NONE, K);
+            int[] approximate = search(query);
+            for (int id : approximate) {
+                for (int e : exact) {
+                    if (id == e) {
+                        found++;
+                        break;
+                    }
+                }
+            }
+        }
+        System.out.printf("%nrecall@%d mode=%s oversampling=%d offset=%.1f: %.3f%n",
+                K, mode, oversampling, offset, found / (double) (QUERIES * K));
+    }
+
+    @Benchmark
+    public int[] search() {
+        float[] query = queries[next];
+        next = (next + 1) % QUERIES;
+        return search(query);
+    }
+
+    private int[] search(float[] query) {
+        if (mode == VectorQuantization.NONE) {
+            return topK(query, mode, K);
+        }
+        int[] candidates = topK(query, mode, K * oversampling);
+        PriorityQueue<double[]> best = new PriorityQueue<>(K, (a, b) -> Double.compare(b[0], a[0]));
+        for (int id : candidates) {
+            offer(best, l2(query, corpus[id]), id, K);
+        }
+        return ids(best);
+    }
+
+    private int[] topK(float[] query, VectorQuantization by, int k) {
+        PriorityQueue<double[]> best = new PriorityQueue<>(k, (a, b) -> Double.compare(b[0], a[0]));
+        long[] queryBits = by == VectorQuantization.BINARY ? toBits(query) : null;
+        float[] queryHalf = by == VectorQuantization.HALFVEC ? toHalf(query) : null;
+        for (int i = 0; i < CORPUS_SIZE; i++) {
+            double distance = switch (by) {
+                case NONE -> l2(query, corpus[i]);
+                case HALFVEC -> l2(queryHalf, halfCorpus[i]);
+                case BINARY -> hamming(queryBits, bitCorpus[i]);
+            };
+            offer(best, distance, i, k);
+        }
+        return ids(best);
+    }
+
+    private static void offer(PriorityQueue<double[]> best, double distance, int id, int k) {
+        if (best.size() < k) {
+            best.add(new double[]{distance, id});
+        } else if (distance < best.peek()[0]) {
+            best.poll();
+            best.add(new double[]{distance, id});
+        }
+    }
+
+    private static int[] ids(PriorityQueue<double[]> best) {
+        return best.stream().mapToInt(entry -> (int) entry[1]).toArray();
+    }
+
+    private static double l2(float[] a, float[] b) {
+        double sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            double diff = a[d] - b[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static int hamming(long[] a, long[] b) {
+        int distance = 0;
+        for (int i = 0; i < a.length; i++) {
+            distance += Long.bitCount(a[i] ^ b[i]);
+        }
+        return distance;
+    }
+
+    /**
+     * Round trip through IEEE half precision, like the ::halfvec cast
+     */
+    private static float[] toHalf(float[] vector) {
+        float[] half = new float[vector.length];
+        for (int d = 0; d < vector.length; d++) {
+            half[d] = Float.float16ToFloat(Float.floatToFloat16(vector[d]));
+        }
+        return half;
+    }
+
+    /**
+     * One bit per dimension, set when the value is positive, like binary_quantize
+     */
+    private static long[] toBits(float[] vector) {
+        long[] bits = new long[(vector.length + 63) / 64];
+        for (int d = 0; d < vector.length; d++) {
+            if (vector[d] > 0) {
+                bits[d / 64] |= 1L << (d % 64);
+            }
+        }
+        return bits;
+    }
+
+    private static float[] gaussian(Random random, float[] center, double sigma, float[] bias) {
+        float[] vector = new float[DIMENSIONS];
+        for (int d = 0; d < DIMENSIONS; d++) {
+            vector[d] = (float) ((center != null ? center[d] : 0) + (bias != null ? bias[d] : 0)
+                    + sigma * random.nextGaussian());
+        }
+        return vector;
+    }
+}
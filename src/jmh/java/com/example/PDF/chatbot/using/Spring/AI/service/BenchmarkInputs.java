@@ -0,0 +1,117 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.huggingface.tokenizers.jni.CharSpan;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Inputs shared by the service benchmarks: the bundled sample PDF (a 40 page manual, src/jmh/resources) and the
+ * tokenizer at {@code onnx.tokenizer.path}, configured like CustomOnnxService configures its own.
+ */
+final class BenchmarkInputs {
+
+    static final String SAMPLE_PDF = "sample.pdf";
+
+    static final int SAMPLE_PAGES = 40;
+
+    /**
+     * Token budget of a chunk with the default onnx.embedding.max-sequence-length of 256, less [CLS] and [SEP]
+     */
+    static final int MAX_CONTENT_TOKENS = 254;
+
+    static final int OVERLAP_TOKENS = 32;
+
+    private BenchmarkInputs() {
+    }
+
+    static Path tokenizerPath() {
+        Path path = Paths.get(System.getProperty("onnx.tokenizer.path", "onnx-output-folder/tokenizer.json"))
+                .toAbsolutePath();
+        if (!Files.exists(path)) {
+            throw new IllegalStateException("Tokenizer not found: " + path);
+        }
+        return path;
+    }
+
+    /**
+     * Tokenizer of the chunker: no special tokens, no truncation
+     */
+    static HuggingFaceTokenizer segmentTokenizer() throws IOException {
+        return HuggingFaceTokenizer.builder()
+                .optTokenizerPath(CustomOnnxService.tokenizerDirectory(tokenizerPath()))
+                .optPadding(false)
+                .optTruncation(false)
+                .optAddSpecialTokens(false)
+                .build();
+    }
+
+    /**
+     * Copy the sample PDF out of the benchmark jar; the caller deletes it
+     */
+    static Path copySamplePdf() throws IOException {
+        Path pdf = Files.createTempFile("benchmark-sample-", ".pdf");
+        try (InputStream in = BenchmarkInputs.class.getClassLoader().getResourceAsStream(SAMPLE_PDF)) {
+            if (in == null) {
+                throw new IllegalStateException("Missing benchmark resource " + SAMPLE_PDF);
+            }
+            Files.copy(in, pdf, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return pdf;
+    }
+
+    static List<String> samplePages() throws IOException, InterruptedException {
+        Path pdf = copySamplePdf();
+        PdfTextExtractor extractor = new PdfTextExtractor(1, DataSize.ofMegabytes(16));
+        try {
+            List<String> pages = new ArrayList<>();
+            extractor.extract(pdf, count -> {
+            }, (page, text) -> pages.add(text));
+            if (pages.size() != SAMPLE_PAGES) {
+                throw new IllegalStateException(SAMPLE_PDF + " has " + pages.size() + " pages, expected " + SAMPLE_PAGES);
+            }
+            return pages;
+        } finally {
+            extractor.shutdown();
+            Files.deleteIfExists(pdf);
+        }
+    }
+
+    /**
+     * Chunk the sample PDF the way ingestion does
+     */
+    static List<TextChunker.Chunk> sampleChunks(HuggingFaceTokenizer segmentTokenizer)
+            throws IOException, InterruptedException {
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(segmentTokenizer::batchEncode, MAX_CONTENT_TOKENS, OVERLAP_TOKENS,
+                chunks::add);
+        for (String page : samplePages()) {
+            chunker.append(page);
+        }
+        chunker.finish();
+        return chunks;
+    }
+
+    /**
+     * The first {@code tokens} tokens of {@code text}, cut at a token boundary
+     */
+    static String truncate(HuggingFaceTokenizer segmentTokenizer, String text, int tokens) {
+        Encoding encoding = segmentTokenizer.encode(text);
+        CharSpan[] spans = encoding.getCharTokenSpans();
+        for (int i = Math.min(tokens, spans.length) - 1; i >= 0; i--) {
+            if (spans[i] != null) {
+                return text.substring(0, spans[i].getEnd());
+            }
+        }
+        return text;
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cleaning and chunking of the bundled sample PDF as ingestion does it, scored per page: {@code chunk} runs
+ * the TextChunker (whitespace cleanup, sentence split, tokenization, packing) over pre-extracted pages,
+ * {@code extractAndChunk} adds single-threaded PDFBox extraction in front of it. Needs only tokenizer.json.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(BenchmarkInputs.SAMPLE_PAGES)
+@State(Scope.Benchmark)
+public class ChunkingBenchmark {
+
+    private HuggingFaceTokenizer segmentTokenizer;
+    private PdfTextExtractor extractor;
+    private Path pdf;
+    private List<String> pages;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        segmentTokenizer = BenchmarkInputs.segmentTokenizer();
+        extractor = new PdfTextExtractor(1, DataSize.ofMegabytes(16));
+        pdf = BenchmarkInputs.copySamplePdf();
+        pages = BenchmarkInputs.samplePages();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        extractor.shutdown();
+        segmentTokenizer.close();
+        Files.deleteIfExists(pdf);
+    }
+
+    @Benchmark
+    public void chunk(Blackhole blackhole) {
+        TextChunker chunker = newChunker(blackhole);
+        for (String page : pages) {
+            chunker.append(page);
+        }
+        chunker.finish();
+    }
+
+    @Benchmark
+    public void extractAndChunk(Blackhole blackhole) throws IOException, InterruptedException {
+        TextChunker chunker = newChunker(blackhole);
+        extractor.extract(pdf, blackhole::consume, (page, text) -> chunker.append(text));
+        chunker.finish();
+    }
+
+    private TextChunker newChunker(Blackhole blackhole) {
+        return new TextChunker(segmentTokenizer::batchEncode, BenchmarkInputs.MAX_CONTENT_TOKENS,
+                BenchmarkInputs.OVERLAP_TOKENS, blackhole::consume);
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.DirectFieldAccessor;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Prompt context assembly from retrieved chunks of the sample PDF: merging neighbours, removing the overlap,
+ * counting tokens and cutting to the budget. {@code layout} "adjacent" retrieves runs of consecutive chunks
+ * (most merging), "scattered" retrieves unrelated chunks (most passages). Needs only tokenizer.json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class ContextAssemblyBenchmark {
+
+    @Param({"5", "20"})
+    private int topK;
+
+    @Param({"adjacent", "scattered"})
+    private String layout;
+
+    private ContextAssembler assembler;
+    private List<Document> documents;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        List<TextChunker.Chunk> chunks;
+        try (HuggingFaceTokenizer segmentTokenizer = BenchmarkInputs.segmentTokenizer()) {
+            chunks = BenchmarkInputs.sampleChunks(segmentTokenizer);
+        }
+        int stride = "adjacent".equals(layout) ? 1 : 7;
+        documents = new ArrayList<>(topK);
+        for (int i = 0; i < topK; i++) {
+            int index = (i * stride) % chunks.size();
+            TextChunker.Chunk chunk = chunks.get(index);
+            documents.add(new Document("chunk-" + index, chunk.text(),
+                    Map.of(ChunkVectorStore.FILE_NAME, BenchmarkInputs.SAMPLE_PDF, ChunkVectorStore.CHUNK_INDEX, index)));
+        }
+
+        assembler = new ContextAssembler(null);
+        new DirectFieldAccessor(assembler).setPropertyValue("tokenizerPath", BenchmarkInputs.tokenizerPath().toString());
+        assembler.initTokenizer();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        assembler.closeTokenizer();
+    }
+
+    @Benchmark
+    public ContextAssembler.Context assemble() {
+        return assembler.assemble(documents);
+    }
+}
@@ -0,0 +1,80 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.beans.DirectFieldAccessor;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end latency of CustomOnnxService embeddings: tokenization, padding, inference and pooling.
+ * {@code single} is a chat query of {@code tokens} tokens; {@code batch} is an ingestion batch of 32 texts
+ * between half and all of {@code tokens} tokens, which exercises the length-sorted batching.
+ * Needs the exported model at {@code onnx.model.path}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class EmbeddingBenchmark {
+
+    private static final int BATCH = 32;
+
+    @Param({"16", "64", "254"})
+    private int tokens;
+
+    @Param({"MEAN", "CLS"})
+    private CustomOnnxService.Pooling pooling;
+
+    private CustomOnnxService onnxService;
+    private String query;
+    private List<String> batch;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        Path model = Paths.get(System.getProperty("onnx.model.path", "onnx-output-folder/model.onnx"));
+        if (!Files.exists(model)) {
+            throw new IllegalStateException("Model not found: " + model.toAbsolutePath());
+        }
+        onnxService = new CustomOnnxService();
+        DirectFieldAccessor fields = new DirectFieldAccessor(onnxService);
+        fields.setPropertyValue("modelLocation", model.toString());
+        fields.setPropertyValue("tokenizerLocation", BenchmarkInputs.tokenizerPath().toString());
+        fields.setPropertyValue("pooling", pooling);
+        onnxService.init();
+
+        String text = String.join(" ", BenchmarkInputs.samplePages());
+        Random random = new Random(42);
+        try (HuggingFaceTokenizer segmentTokenizer = BenchmarkInputs.segmentTokenizer()) {
+            query = BenchmarkInputs.truncate(segmentTokenizer, text, tokens);
+            batch = new ArrayList<>(BATCH);
+            for (int i = 0; i < BATCH; i++) {
+                int start = text.indexOf(". ", random.nextInt(text.length() / 2)) + 2;
+                int length = tokens / 2 + random.nextInt(tokens - tokens / 2 + 1);
+                batch.add(BenchmarkInputs.truncate(segmentTokenizer, text.substring(start), length));
+            }
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        onnxService.cleanup();
+    }
+
+    @Benchmark
+    public float[] single() {
+        return onnxService.generateEmbedding(query);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<float[]> batch() {
+        return onnxService.generateEmbeddings(batch);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.onnxruntime.OnnxTensor;
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inference throughput and latency of the embedding model by ONNX Runtime profile, with one client per core
+ * calling concurrently. {@code profile} is "sessions x intra-op threads per session" (0 = ONNX Runtime default);
+ * {@code batch} 1 is a chat query, 32 an ingestion batch. Needs the exported model at {@code onnx.model.path}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Threads(Threads.MAX)
+public class OnnxInferenceBenchmark {
+
+    private static final int SEQUENCE_LENGTH = 128;
+
+    @State(Scope.Benchmark)
+    public static class Pool {
+
+        @Param({"1x0", "2x0", "4x0", "1x1", "4x1"})
+        private String profile;
+
+        @Param({"ALL_OPT", "BASIC_OPT"})
+        private OrtSession.SessionOptions.OptLevel optimizationLevel;
+
+        private OnnxSessionPool sessionPool;
+
+        @Setup(Level.Trial)
+        public void setUp() throws OrtException {
+            Path model = Paths.get(System.getProperty("onnx.model.path", "onnx-output-folder/model.onnx"));
+            if (!Files.exists(model)) {
+                throw new IllegalStateException("Model not found: " + model.toAbsolutePath());
+            }
+            String[] parts = profile.split("x");
+            OnnxSessionPool.Settings settings = new OnnxSessionPool.Settings(Integer.parseInt(parts[1]), 0,
+                    optimizationLevel, OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL, true);
+            sessionPool = new OnnxSessionPool(OrtEnvironment.getEnvironment(), model.toString(), settings,
+                    Integer.parseInt(parts[0]));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            sessionPool.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class Input {
+
+        @Param({"1", "32"})
+        private int batch;
+
+        private LongBuffer inputIds;
+        private LongBuffer attentionMask;
+        private long[] shape;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            Random random = new Random(Thread.currentThread().threadId());
+            int elements = batch * SEQUENCE_LENGTH;
+            inputIds = ByteBuffer.allocateDirect(elements * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            attentionMask = ByteBuffer.allocateDirect(elements * Long.BYTES).order(ByteOrder.nativeOrder()).asLongBuffer();
+            for (int row = 0; row < batch; row++) {
+                // [CLS] word pieces [SEP] of the bundled BERT vocabulary
+                inputIds.put(101L);
+                for (int i = 1; i < SEQUENCE_LENGTH - 1; i++) {
+                    inputIds.put(1000L + random.nextInt(29000));
+                }
+                inputIds.put(102L);
+                for (int i = 0; i < SEQUENCE_LENGTH; i++) {
+                    attentionMask.put(1L);
+                }
+            }
+            inputIds.flip();
+            attentionMask.flip();
+            shape = new long[]{batch, SEQUENCE_LENGTH};
+        }
+    }
+
+    @Benchmark
+    public float infer(Pool pool, Input input) throws OrtException, InterruptedException {
+        OrtEnvironment env = OrtEnvironment.getEnvironment();
+        OrtSession session = pool.sessionPool.borrow();
+        try (OnnxTensor inputIds = OnnxTensor.createTensor(env, input.inputIds.duplicate(), input.shape);
+             OnnxTensor attentionMask = OnnxTensor.createTensor(env, input.attentionMask.duplicate(), input.shape);
+             OrtSession.Result result = session.run(Map.of("input_ids", inputIds, "attention_mask", attentionMask))) {
+            return ((OnnxTensor) result.get(0)).getFloatBuffer().get(0);
+        } finally {
+            pool.sessionPool.release(session);
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Text extraction throughput of PdfTextExtractor by worker count. Scores are pages per second
+ * (one operation = one page); scaling is bounded by the number of cores of the machine running it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@OperationsPerInvocation(PdfExtractionBenchmark.PAGES)
+@State(Scope.Benchmark)
+public class PdfExtractionBenchmark {
+
+    static final int PAGES = 200;
+    private static final int LINES_PER_PAGE = 45;
+
+    @Param({"1", "2", "4", "8"})
+    private int workers;
+
+    private Path pdf;
+    private PdfTextExtractor extractor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        pdf = Files.createTempFile("extraction-benchmark-", ".pdf");
+        Random random = new Random(42);
+        try (PDDocument document = new PDDocument()) {
+            for (int p = 0; p < PAGES; p++) {
+                PDPage page = new PDPage();
+                document.addPage(page);
+                try (PDPageContentStream content = new PDPageContentStream(document, page)) {
+                    content.beginText();
+                    content.setFont(PDType1Font.HELVETICA, 10);
+                    content.setLeading(14);
+                    content.newLineAtOffset(50, 740);
+                    for (int line = 0; line < LINES_PER_PAGE; line++) {
+                        content.showText(randomSentence(random));
+                        content.newLine();
+                    }
+                    content.endText();
+                }
+            }
+            document.save(pdf.toFile());
+        }
+        extractor = new PdfTextExtractor(workers, DataSize.ofMegabytes(16));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        extractor.shutdown();
+        Files.deleteIfExists(pdf);
+    }
+
+    @Benchmark
+    public void extract(Blackhole blackhole) throws IOException, InterruptedException {
+        extractor.extract(pdf, blackhole::consume, (page, text) -> blackhole.consume(text));
+    }
+
+    private static String randomSentence(Random random) {
+        StringBuilder sentence = new StringBuilder();
+        while (sentence.length() < 90) {
+            int length = 2 + random.nextInt(9);
+            for (int i = 0; i < length; i++) {
+                sentence.append((char) ('a' + random.nextInt(26)));
+            }
+            sentence.append(' ');
+        }
+        return sentence.toString();
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Tokenizer cost on its own, with the two configurations CustomOnnxService uses: {@code encode} is the query
+ * tokenizer (special tokens, truncation) on a text of {@code tokens} tokens, {@code batchEncode} is the
+ * chunker's tokenizer on the sentences of one page of the sample PDF. Needs only tokenizer.json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class TokenizerBenchmark {
+
+    @Param({"16", "64", "254"})
+    private int tokens;
+
+    private HuggingFaceTokenizer tokenizer;
+    private HuggingFaceTokenizer segmentTokenizer;
+    private String text;
+    private List<String> sentences;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        tokenizer = HuggingFaceTokenizer.builder()
+                .optTokenizerPath(CustomOnnxService.tokenizerDirectory(BenchmarkInputs.tokenizerPath()))
+                .optPadding(false)
+                .optTruncation(true)
+                .optMaxLength(BenchmarkInputs.MAX_CONTENT_TOKENS + 2)
+                .build();
+        segmentTokenizer = BenchmarkInputs.segmentTokenizer();
+        List<String> pages = BenchmarkInputs.samplePages();
+        text = BenchmarkInputs.truncate(segmentTokenizer, String.join(" ", pages), tokens);
+        sentences = List.of(pages.get(1).replaceAll("\\s+", " ").split("(?<=[.!?]) "));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        tokenizer.close();
+        segmentTokenizer.close();
+    }
+
+    @Benchmark
+    public Encoding encode() {
+        return tokenizer.encode(text);
+    }
+
+    @Benchmark
+    public Encoding[] batchEncode() {
+        return segmentTokenizer.batchEncode(sentences);
+    }
+}
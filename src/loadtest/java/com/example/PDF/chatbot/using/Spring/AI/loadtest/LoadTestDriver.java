@@ -0,0 +1,353 @@
+package com.example.PDF.chatbot.using.Spring.AI.loadtest;
+
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Closed-loop load driver: {@code --concurrency} workers replay the corpus in order, round robin, against a running
+ * instance for {@code --duration} after {@code --warmup}, then report throughput and latency percentiles per
+ * operation. Each corpus line is a JSON object, one of
+ * <ul>
+ *     <li>{@code {"upload": "path/to/file.pdf", "collection": "optional"}} - POST /api/upload; with
+ *     {@code --wait-ingestion} (default) the worker then polls the job and "ingestion" is the time until it finished</li>
+ *     <li>{@code {"question": "...", "fileName": "optional", "collection": "optional"}} - POST /api/chat</li>
+ *     <li>{@code {"request_id": "...", "title": "...", "body": "..."}} - the body is asked as a question</li>
+ * </ul>
+ * Uploads replayed more than once get a pass suffix (file-2.pdf, ...), so every pass is a full ingestion rather
+ * than an unchanged-file skip.
+ */
+public final class LoadTestDriver {
+
+    private static final String DEFAULT_CORPUS = "corpus.jsonl";
+    private static final Duration POLL_INTERVAL = Duration.ofMillis(200);
+
+    private final URI baseUrl;
+    private final List<JSONObject> corpus;
+    private final int concurrency;
+    private final Duration warmup;
+    private final Duration duration;
+    private final boolean waitIngestion;
+    private final HttpClient client;
+
+    private final AtomicLong next = new AtomicLong();
+    private final Map<String, Recorder> recorders = new ConcurrentHashMap<>();
+    private volatile long measureFrom;
+    private volatile long measureUntil;
+
+    private LoadTestDriver(URI baseUrl, List<JSONObject> corpus, int concurrency, Duration warmup, Duration duration,
+                           boolean waitIngestion) {
+        this.baseUrl = baseUrl;
+        this.corpus = corpus;
+        this.concurrency = concurrency;
+        this.warmup = warmup;
+        this.duration = duration;
+        this.waitIngestion = waitIngestion;
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .executor(Executors.newFixedThreadPool(Math.max(2, concurrency)))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parseOptions(args);
+        List<JSONObject> corpus = readCorpus(options.get("corpus"));
+        if (corpus.isEmpty()) {
+            throw new IllegalArgumentException("The corpus is empty");
+        }
+        LoadTestDriver driver = new LoadTestDriver(
+                URI.create(options.getOrDefault("base-url", "http://localhost:8080")),
+                corpus,
+                Integer.parseInt(options.getOrDefault("concurrency", "8")),
+                Duration.parse(options.getOrDefault("warmup", "PT30S")),
+                Duration.parse(options.getOrDefault("duration", "PT2M")),
+                Boolean.parseBoolean(options.getOrDefault("wait-ingestion", "true")));
+        JSONObject report = driver.run();
+        System.out.println(format(report));
+        if (options.containsKey("report")) {
+            Path file = Path.of(options.get("report"));
+            Files.writeString(file, report.toString(2));
+            System.out.println("Report written to " + file.toAbsolutePath());
+        }
+        System.exit(0);
+    }
+
+    private JSONObject run() throws InterruptedException {
+        System.out.printf("Replaying %d corpus entries against %s with %d workers: warmup %s, measuring %s%n",
+                corpus.size(), baseUrl, concurrency, warmup, duration);
+        long start = System.nanoTime();
+        measureFrom = start + warmup.toNanos();
+        measureUntil = measureFrom + duration.toNanos();
+        ExecutorService workers = Executors.newFixedThreadPool(concurrency);
+        for (int i = 0; i < concurrency; i++) {
+            workers.submit(this::work);
+        }
+        workers.shutdown();
+        if (!workers.awaitTermination(warmup.plus(duration).plusMinutes(10).toMillis(), TimeUnit.MILLISECONDS)) {
+            workers.shutdownNow();
+        }
+        return report();
+    }
+
+    private void work() {
+        while (System.nanoTime() < measureUntil) {
+            long n = next.getAndIncrement();
+            JSONObject entry = corpus.get((int) (n % corpus.size()));
+            try {
+                if (entry.has("upload")) {
+                    upload(entry, n / corpus.size());
+                } else {
+                    chat(entry);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // e.g. an unexpected response body; keep the worker running
+                System.err.println("Corpus entry " + entry + " failed: " + e);
+            }
+        }
+    }
+
+    private void chat(JSONObject entry) throws InterruptedException {
+        String question = entry.has("question") ? entry.getString("question") : entry.getString("body");
+        JSONObject body = new JSONObject().put("message", question);
+        for (String key : List.of("fileName", "collection")) {
+            if (entry.has(key)) {
+                body.put(key, entry.getString(key));
+            }
+        }
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/api/chat"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                .build();
+        send("chat", request);
+    }
+
+    private void upload(JSONObject entry, long pass) throws InterruptedException {
+        Path pdf = Path.of(entry.getString("upload"));
+        String fileName = pdf.getFileName().toString();
+        if (pass > 0) {
+            fileName = fileName.replaceFirst("(\\.pdf)?$", "-" + (pass + 1) + ".pdf");
+        }
+        String boundary = "----loadtest" + UUID.randomUUID().toString().replace("-", "");
+        List<byte[]> parts = new ArrayList<>();
+        if (entry.has("collection")) {
+            parts.add(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"collection\"\r\n\r\n"
+                    + entry.getString("collection") + "\r\n").getBytes(StandardCharsets.UTF_8));
+        }
+        parts.add(("--" + boundary + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"" + fileName
+                + "\"\r\nContent-Type: application/pdf\r\n\r\n").getBytes(StandardCharsets.UTF_8));
+        try {
+            parts.add(Files.readAllBytes(pdf));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read " + pdf.toAbsolutePath(), e);
+        }
+        parts.add(("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8));
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/api/upload"))
+                .timeout(Duration.ofMinutes(2))
+                .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                .POST(HttpRequest.BodyPublishers.ofByteArrays(parts))
+                .build();
+        long started = System.nanoTime();
+        HttpResponse<String> response = send("upload", request);
+        if (waitIngestion && response != null && response.statusCode() == 202) {
+            awaitJob(new JSONObject(response.body()).getString("jobId"), started);
+        }
+    }
+
+    /**
+     * Poll the ingestion job until it finishes and record the time since the upload started
+     */
+    private void awaitJob(String jobId, long started) throws InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder(baseUrl.resolve("/api/jobs/" + jobId))
+                .timeout(Duration.ofSeconds(30))
+                .GET()
+                .build();
+        while (true) {
+            Thread.sleep(POLL_INTERVAL.toMillis());
+            String status;
+            try {
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                if (response.statusCode() != 200) {
+                    record("ingestion", started, "HTTP " + response.statusCode());
+                    return;
+                }
+                status = new JSONObject(response.body()).getString("status");
+            } catch (IOException e) {
+                record("ingestion", started, e.getClass().getSimpleName());
+                return;
+            }
+            if (!"QUEUED".equals(status) && !"RUNNING".equals(status)) {
+                record("ingestion", started, status);
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the response, or null when the request failed without one
+     */
+    private HttpResponse<String> send(String operation, HttpRequest request) throws InterruptedException {
+        long started = System.nanoTime();
+        try {
+            HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+            record(operation, started, "HTTP " + response.statusCode());
+            return response;
+        } catch (IOException e) {
+            record(operation, started, e.getClass().getSimpleName());
+            return null;
+        }
+    }
+
+    /**
+     * Record an operation that started inside the measurement window; outcomes other than HTTP 2xx and
+     * COMPLETED count as errors
+     */
+    private void record(String operation, long started, String outcome) {
+        long finished = System.nanoTime();
+        if (started < measureFrom || started >= measureUntil) {
+            return;
+        }
+        boolean success = outcome.startsWith("HTTP 2") || "COMPLETED".equals(outcome);
+        recorders.computeIfAbsent(operation, o -> new Recorder()).add(finished - started, outcome, success);
+    }
+
+    private JSONObject report() {
+        double seconds = duration.toNanos() / 1e9;
+        JSONObject operations = new JSONObject();
+        new TreeMap<>(recorders).forEach((operation, recorder) -> operations.put(operation, recorder.summary(seconds)));
+        return new JSONObject()
+                .put("baseUrl", baseUrl.toString())
+                .put("concurrency", concurrency)
+                .put("warmup", warmup.toString())
+                .put("duration", duration.toString())
+                .put("operations", operations);
+    }
+
+    private static String format(JSONObject report) {
+        StringBuilder text = new StringBuilder(String.format("%n%-10s %8s %8s %9s %9s %9s %9s %9s%n",
+                "operation", "count", "errors", "req/s", "p50 ms", "p95 ms", "p99 ms", "max ms"));
+        JSONObject operations = report.getJSONObject("operations");
+        for (String operation : new TreeMap<>(operations.toMap()).keySet()) {
+            JSONObject summary = operations.getJSONObject(operation);
+            text.append(String.format("%-10s %8d %8d %9.2f %9.1f %9.1f %9.1f %9.1f%n", operation,
+                    summary.getLong("count"), summary.getLong("errors"), summary.getDouble("throughput"),
+                    summary.getDouble("p50Ms"), summary.getDouble("p95Ms"), summary.getDouble("p99Ms"),
+                    summary.getDouble("maxMs")));
+            text.append(String.format("%-10s outcomes %s%n", "", summary.getJSONObject("outcomes")));
+        }
+        return text.toString();
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value, got " + arg + "; options: --base-url, "
+                        + "--corpus, --concurrency, --warmup, --duration (ISO-8601, e.g. PT2M), --wait-ingestion, --report");
+            }
+            int equals = arg.indexOf('=');
+            options.put(arg.substring(2, equals), arg.substring(equals + 1));
+        }
+        return options;
+    }
+
+    private static List<JSONObject> readCorpus(String location) throws IOException {
+        List<String> lines;
+        if (location == null) {
+            try (InputStream in = LoadTestDriver.class.getClassLoader().getResourceAsStream(DEFAULT_CORPUS)) {
+                if (in == null) {
+                    throw new IllegalStateException("Missing resource " + DEFAULT_CORPUS);
+                }
+                lines = new String(in.readAllBytes(), StandardCharsets.UTF_8).lines().toList();
+            }
+        } else {
+            lines = Files.readAllLines(Path.of(location));
+        }
+        List<JSONObject> corpus = new ArrayList<>();
+        for (String line : lines) {
+            if (!line.isBlank()) {
+                JSONObject entry = new JSONObject(line);
+                if (!entry.has("upload") && !entry.has("question") && !entry.has("body")) {
+                    throw new IllegalArgumentException("Corpus line has no upload, question or body: " + line);
+                }
+                if (entry.has("upload") && !Files.isReadable(Path.of(entry.getString("upload")))) {
+                    throw new IllegalArgumentException("Cannot read upload " + Path.of(entry.getString("upload")).toAbsolutePath());
+                }
+                corpus.add(entry);
+            }
+        }
+        return corpus;
+    }
+
+    /**
+     * Latencies and outcomes of one operation
+     */
+    private static final class Recorder {
+
+        private long[] latencies = new long[1024];
+        private int count;
+        private long errors;
+        private final Map<String, Long> outcomes = new TreeMap<>();
+
+        synchronized void add(long nanos, String outcome, boolean success) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+            outcomes.merge(outcome, 1L, Long::sum);
+            if (!success) {
+                errors++;
+            }
+        }
+
+        synchronized JSONObject summary(double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new JSONObject()
+                    .put("count", count)
+                    .put("errors", errors)
+                    .put("throughput", count / seconds)
+                    .put("p50Ms", percentile(sorted, 0.50))
+                    .put("p95Ms", percentile(sorted, 0.95))
+                    .put("p99Ms", percentile(sorted, 0.99))
+                    .put("maxMs", count == 0 ? 0.0 : sorted[count - 1] / 1e6)
+                    .put("outcomes", new JSONObject(outcomes));
+        }
+
+        /**
+         * Nearest-rank percentile in milliseconds
+         */
+        private static double percentile(long[] sorted, double quantile) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int rank = (int) Math.ceil(quantile * sorted.length);
+            return sorted[Math.max(0, rank - 1)] / 1e6;
+        }
+    }
+}
@@ -1,6 +1,13 @@
 package com.example.PDF.chatbot.using.Spring.AI.config;
 
 import com.example.PDF.chatbot.using.Spring.AI.service.CustomOnnxService;
+import com.example.PDF.chatbot.using.Spring.AI.service.QueryEmbeddingBatcher;
+import com.example.PDF.chatbot.using.Spring.AI.service.StageMetrics;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.document.Document;
 import org.springframework.ai.embedding.Embedding;
@@ -8,26 +15,77 @@ import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.embedding.EmbeddingRequest;
 import org.springframework.ai.embedding.EmbeddingResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.util.Assert;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.regex.Pattern;
 
 /**
- * Custom implementation of EmbeddingModel that uses ONNX model for embeddings
+ * Custom implementation of EmbeddingModel that uses ONNX model for embeddings.
+ * Single-text embeddings (user queries) go through a size- and TTL-bounded cache keyed by the
+ * normalized text and the model version, and misses are batched with concurrent queries by
+ * {@link QueryEmbeddingBatcher}; batch and document embeddings (ingestion) bypass both. The cache holds futures,
+ * so concurrent misses on the same query share one inference and nobody waits inside the cache's compute.
  */
 @Slf4j
 public class CustomOnnxEmbeddingClient implements EmbeddingModel {
 
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+
     @Autowired
     private CustomOnnxService onnxService;
 
+    @Autowired
+    private StageMetrics metrics;
+
+    @Autowired
+    private QueryEmbeddingBatcher batcher;
+
+    @Value("${embedding.cache.enabled:true}")
+    private boolean cacheEnabled = true;
+
+    @Value("${embedding.cache.max-size:10000}")
+    private long cacheMaxSize = 10_000;
+
+    @Value("${embedding.cache.ttl:PT1H}")
+    private Duration cacheTtl = Duration.ofHours(1);
+
+    private AsyncCache<QueryKey, float[]> queryCache;
+
+    private volatile int dimensions = -1;
+
+    private record QueryKey(String modelVersion, String text) {
+    }
+
+    @PostConstruct
+    void initCache() {
+        if (cacheEnabled) {
+            queryCache = Caffeine.newBuilder()
+                    .maximumSize(cacheMaxSize)
+                    .expireAfterWrite(cacheTtl)
+                    .recordStats()
+                    .buildAsync();
+            CaffeineCacheMetrics.monitor(metrics.getRegistry(), queryCache, "query-embeddings");
+            log.info("Query embedding cache enabled (max size {}, ttl {})", cacheMaxSize, cacheTtl);
+        }
+    }
+
     @Override
     public EmbeddingResponse call(EmbeddingRequest request) {
-        log.info("Generating embeddings for {} texts", request.getInputs().size());
-        List<Embedding> embeddings = request.getInputs().stream()
-                .map(this::generateEmbedding)
-                .collect(Collectors.toList());
+        log.info("Generating embeddings for {} texts", request.getInstructions().size());
+        List<float[]> vectors = onnxService.generateEmbeddings(request.getInstructions());
+        List<Embedding> embeddings = new ArrayList<>(vectors.size());
+        for (int i = 0; i < vectors.size(); i++) {
+            embeddings.add(new Embedding(vectors.get(i), i));
+        }
         return new EmbeddingResponse(embeddings);
     }
     
@@ -41,55 +99,87 @@ public class CustomOnnxEmbeddingClient implements EmbeddingModel {
     public List<float[]> embed(List<String> texts) {
         Assert.notNull(texts, "Texts must not be null");
         log.info("Generating embeddings for {} texts", texts.size());
-        return texts.stream()
-                .map(this::generateEmbeddingAsFloatArray)
-                .collect(Collectors.toList());
+        return onnxService.generateEmbeddings(texts);
     }
 
     @Override
     public float[] embed(String text) {
         Assert.notNull(text, "Text must not be null");
-        log.info("Generating embedding for text");
-        return generateEmbeddingAsFloatArray(text);
+        if (queryCache == null) {
+            log.info("Generating embedding for text");
+            return batcher.embed(text);
+        }
+        QueryKey key = new QueryKey(onnxService.getModelVersion(), normalize(text));
+        // A failed future is dropped from the cache, so the next caller retries
+        float[] embedding = await(queryCache.get(key, (k, executor) -> {
+            log.info("Generating embedding for text");
+            return batcher.embedAsync(k.text());
+        }));
+        // Callers own the returned array; the cached one must never be modified
+        return embedding.clone();
     }
 
     @Override
     public float[] embed(Document document) {
         Assert.notNull(document, "Document must not be null");
         log.info("Generating embedding for document");
-        return generateEmbeddingAsFloatArray(document.getContent());
+        return onnxService.generateEmbedding(document.getText());
     }
     
     @Override
     public int dimensions() {
-        // Return the dimensionality of the embedding vectors
-        return embed("Test String").length;
+        // Computed once; the dimensionality is fixed for the loaded model
+        if (dimensions < 0) {
+            dimensions = onnxService.generateEmbedding("Test String").length;
+        }
+        return dimensions;
     }
 
     /**
-     * Generate embedding using ONNX model and convert to Embedding object
+     * Hit/miss/eviction counters of the query embedding cache
      */
-    private Embedding generateEmbedding(String text) {
-        List<Float> floatEmbedding = onnxService.generateEmbedding(text);
-        float[] embedding = floatEmbedding.stream()
-                .toArray(Float[]::new);
-        // Convert Float[] to float[] primitive array
-        float[] primitiveEmbedding = new float[embedding.length];
-        for (int i = 0; i < embedding.length; i++) {
-            primitiveEmbedding[i] = embedding[i];
+    public Map<String, Object> getCacheStats() {
+        if (queryCache == null) {
+            return Map.of("enabled", false);
+        }
+        CacheStats stats = queryCache.synchronous().stats();
+        return Map.of(
+                "enabled", true,
+                "size", queryCache.synchronous().estimatedSize(),
+                "hits", stats.hitCount(),
+                "misses", stats.missCount(),
+                "hitRate", stats.hitRate(),
+                "evictions", stats.evictionCount()
+        );
+    }
+
+    public void clearCache() {
+        if (queryCache != null) {
+            queryCache.synchronous().invalidateAll();
         }
-        return new Embedding(primitiveEmbedding);
     }
 
     /**
-     * Generate embedding using ONNX model and convert to float array
+     * Wait for a cached embedding; the future may be shared with other callers, so it is never cancelled here
      */
-    private float[] generateEmbeddingAsFloatArray(String text) {
-        List<Float> floatEmbedding = onnxService.generateEmbedding(text);
-        float[] embedding = new float[floatEmbedding.size()];
-        for (int i = 0; i < floatEmbedding.size(); i++) {
-            embedding[i] = floatEmbedding.get(i);
+    private static float[] await(CompletableFuture<float[]> embedding) {
+        try {
+            return embedding.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the query embedding");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Query embedding failed", e.getCause());
         }
-        return embedding;
+    }
+
+    /**
+     * The tokenizer is uncased and splits on whitespace, so case and whitespace runs do not change the embedding
+     */
+    private static String normalize(String text) {
+        return WHITESPACE.matcher(text.strip()).replaceAll(" ").toLowerCase(Locale.ROOT);
     }
 }
\ No newline at end of file
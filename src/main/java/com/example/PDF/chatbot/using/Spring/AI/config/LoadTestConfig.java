@@ -0,0 +1,36 @@
+package com.example.PDF.chatbot.using.Spring.AI.config;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
+
+import java.time.Duration;
+
+/**
+ * Load test profile: a local chat model with configurable latency instead of Groq, so runs need no API key
+ * and measure this service rather than the remote model. See application-loadtest.properties.
+ */
+@Configuration
+@Profile("loadtest")
+@Slf4j
+public class LoadTestConfig {
+
+    @Value("${loadtest.chat.first-token-latency:PT0.3S}")
+    private Duration firstTokenLatency;
+
+    @Value("${loadtest.chat.tokens-per-second:250}")
+    private double tokensPerSecond;
+
+    @Value("${loadtest.chat.answer-tokens:150}")
+    private int answerTokens;
+
+    @Bean
+    public ChatModel chatModel() {
+        log.warn("Load test profile: answers come from a stub chat model (first token after {}, {} tokens at {}/s)",
+                firstTokenLatency, answerTokens, tokensPerSecond);
+        return new StubChatModel(firstTokenLatency, tokensPerSecond, answerTokens);
+    }
+}
@@ -7,8 +7,13 @@ import org.springframework.ai.groq.api.GroqApi;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Profile;
 
+/**
+ * Groq chat model; the loadtest profile replaces it with {@link LoadTestConfig}
+ */
 @Configuration
+@Profile("!loadtest")
 public class SpringAIConfig {
 
     @Value("${spring.ai.groq.api-key}")
@@ -0,0 +1,82 @@
+package com.example.PDF.chatbot.using.Spring.AI.config;
+
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+
+/**
+ * Deterministic local stand-in for the Groq chat model, for load tests.
+ * The answer is {@code answerTokens} words taken in order from the DOCUMENTS section of the prompt (one word is
+ * one token). A call takes {@code firstTokenLatency} plus one {@code 1 / tokensPerSecond} interval per token,
+ * like a remote model that is not the bottleneck; streaming emits the words at that rate.
+ */
+public class StubChatModel implements ChatModel {
+
+    private static final String DOCUMENTS_MARKER = "DOCUMENTS:";
+    private static final List<String> FALLBACK_WORDS = List.of("no", "documents", "were", "retrieved");
+
+    private final Duration firstTokenLatency;
+    private final Duration tokenInterval;
+    private final int answerTokens;
+
+    public StubChatModel(Duration firstTokenLatency, double tokensPerSecond, int answerTokens) {
+        this.firstTokenLatency = firstTokenLatency;
+        this.tokenInterval = tokensPerSecond > 0
+                ? Duration.ofNanos((long) (1_000_000_000L / tokensPerSecond))
+                : Duration.ZERO;
+        this.answerTokens = Math.max(1, answerTokens);
+    }
+
+    @Override
+    public ChatResponse call(Prompt prompt) {
+        List<String> tokens = answer(prompt);
+        try {
+            Thread.sleep(firstTokenLatency.plus(tokenInterval.multipliedBy(tokens.size() - 1L)));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while generating");
+        }
+        return response(String.join("", tokens));
+    }
+
+    @Override
+    public Flux<ChatResponse> stream(Prompt prompt) {
+        return Flux.defer(() -> {
+            Flux<String> tokens = Flux.fromIterable(answer(prompt));
+            if (tokenInterval.isZero()) {
+                return tokens.delaySubscription(firstTokenLatency);
+            }
+            // delayElements also delays the first token by one interval
+            Duration lead = firstTokenLatency.minus(tokenInterval);
+            return tokens.delayElements(tokenInterval).delaySubscription(lead.isNegative() ? Duration.ZERO : lead);
+        }).map(StubChatModel::response);
+    }
+
+    /**
+     * The answer split into tokens, each with its leading space, so that concatenating them gives the text
+     */
+    private List<String> answer(Prompt prompt) {
+        String text = prompt.getContents();
+        int marker = text.indexOf(DOCUMENTS_MARKER);
+        String[] words = (marker < 0 ? "" : text.substring(marker + DOCUMENTS_MARKER.length())).trim().split("\\s+");
+        List<String> source = words.length == 1 && words[0].isEmpty() ? FALLBACK_WORDS : List.of(words);
+        List<String> tokens = new ArrayList<>(answerTokens);
+        for (int i = 0; i < answerTokens; i++) {
+            String word = source.get(i % source.size());
+            tokens.add(i == 0 ? word : " " + word);
+        }
+        return tokens;
+    }
+
+    private static ChatResponse response(String text) {
+        return new ChatResponse(List.of(new Generation(new AssistantMessage(text))));
+    }
+}
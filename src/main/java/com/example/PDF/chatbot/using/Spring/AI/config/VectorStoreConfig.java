@@ -1,25 +1,58 @@
 package com.example.PDF.chatbot.using.Spring.AI.config;
 
-import org.springframework.ai.embedding.EmbeddingModel;
-import org.springframework.ai.vectorstore.pgvector.PgVectorStore;
-import org.springframework.ai.vectorstore.VectorStore;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.IngestedFileRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorDistance;
+import com.example.PDF.chatbot.using.Spring.AI.service.CustomOnnxService;
+import com.example.PDF.chatbot.using.Spring.AI.service.DocumentChunkVectorStore;
+import com.example.PDF.chatbot.using.Spring.AI.service.EmbeddingMigrationService;
+import com.example.PDF.chatbot.using.Spring.AI.service.FullTextIndexService;
+import com.example.PDF.chatbot.using.Spring.AI.service.HnswVectorStore;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
 
 @Configuration
 public class VectorStoreConfig {
 
-    @Value("${spring.ai.vectorstore.pgvector.dimension}")
-    private int dimension;
+    /**
+     * Configure the vector store over the document_chunks table with the custom ONNX embedding adapter,
+     * with hybrid search over the full-text index
+     */
+    @Bean
+    @ConditionalOnProperty(name = "vector.store.type", havingValue = "pgvector", matchIfMissing = true)
+    public DocumentChunkVectorStore vectorStore(DocumentRepository documentRepository,
+                                                CustomOnnxEmbeddingClient embeddingModel,
+                                                FullTextIndexService fullTextIndexService,
+                                                EmbeddingMigrationService migrationService,
+                                                CustomOnnxService onnxService,
+                                                IngestedFileRepository ingestedFileRepository) {
+        return new DocumentChunkVectorStore(documentRepository, embeddingModel, fullTextIndexService,
+                migrationService, onnxService, ingestedFileRepository);
+    }
 
     /**
-     * Configure the PgVectorStore with custom ONNX embedding adapter
+     * In-process HNSW store over memory-mapped files, kept in sync with document_chunks
      */
     @Bean
-    public VectorStore vectorStore(JdbcTemplate jdbcTemplate, CustomOnnxEmbeddingClient embeddingModel) {
-        return new PgVectorStore(jdbcTemplate, embeddingModel, dimension);
+    @ConditionalOnProperty(name = "vector.store.type", havingValue = "hnsw")
+    public HnswVectorStore hnswVectorStore(DocumentRepository documentRepository,
+                                           CustomOnnxEmbeddingClient embeddingModel,
+                                           @Value("${vector.store.hnsw.directory:data/hnsw}") Path directory,
+                                           @Value("${vector.store.hnsw.m:16}") int m,
+                                           @Value("${vector.store.hnsw.ef-construction:100}") int efConstruction,
+                                           @Value("${vector.store.hnsw.ef-search:64}") int efSearch,
+                                           @Value("${vector.search.distance:inner-product}") String distance,
+                                           @Value("${vector.store.hnsw.snapshot-interval:PT5M}") Duration snapshotInterval,
+                                           @Value("${vector.store.hnsw.compact-ratio:0.3}") double compactRatio)
+            throws IOException {
+        return new HnswVectorStore(documentRepository, embeddingModel, directory, m, efConstruction, efSearch,
+                VectorDistance.from(distance), snapshotInterval, compactRatio);
     }
 
     /**
@@ -29,4 +62,4 @@ public class VectorStoreConfig {
     public CustomOnnxEmbeddingClient customOnnxEmbeddingClient() {
         return new CustomOnnxEmbeddingClient();
     }
-}
\ No newline at end of file
+}
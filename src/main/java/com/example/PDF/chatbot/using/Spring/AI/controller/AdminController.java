@@ -0,0 +1,164 @@
+package com.example.PDF.chatbot.using.Spring.AI.controller;
+
+import com.example.PDF.chatbot.using.Spring.AI.config.CustomOnnxEmbeddingClient;
+import com.example.PDF.chatbot.using.Spring.AI.repository.ChunkFilter;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.FusionWeights;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorSearchOptions;
+import com.example.PDF.chatbot.using.Spring.AI.service.AnswerCache;
+import com.example.PDF.chatbot.using.Spring.AI.service.ChunkVectorStore;
+import com.example.PDF.chatbot.using.Spring.AI.service.CustomOnnxService;
+import com.example.PDF.chatbot.using.Spring.AI.service.EmbeddingMigrationService;
+import com.example.PDF.chatbot.using.Spring.AI.service.FullTextIndexService;
+import com.example.PDF.chatbot.using.Spring.AI.service.QueryEmbeddingBatcher;
+import com.example.PDF.chatbot.using.Spring.AI.service.VectorIndexService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+@RequiredArgsConstructor
+@Slf4j
+public class AdminController {
+
+    private final VectorIndexService vectorIndexService;
+    private final CustomOnnxEmbeddingClient embeddingClient;
+    private final AnswerCache answerCache;
+    private final CustomOnnxService onnxService;
+    private final ChunkVectorStore vectorStore;
+    private final FullTextIndexService fullTextIndexService;
+    private final DocumentRepository documentRepository;
+    private final QueryEmbeddingBatcher queryEmbeddingBatcher;
+    private final EmbeddingMigrationService embeddingMigrationService;
+
+    /**
+     * Current state of the vector index
+     */
+    @GetMapping("/index")
+    public ResponseEntity<Map<String, Object>> indexStatus() {
+        return ResponseEntity.ok(vectorIndexService.getIndexStatus());
+    }
+
+    /**
+     * Rebuild the vector index concurrently in the background
+     */
+    @PostMapping("/index/rebuild")
+    public ResponseEntity<Map<String, Object>> rebuildIndex() {
+        log.info("Vector index rebuild requested");
+        vectorIndexService.rebuildIndex();
+        return ResponseEntity.accepted()
+                .body(Map.of("message", "Vector index rebuild started", "index", VectorIndexService.INDEX_NAME));
+    }
+
+    /**
+     * Current state of the full-text index used by hybrid search
+     */
+    @GetMapping("/full-text-index")
+    public ResponseEntity<Map<String, Object>> fullTextIndexStatus() {
+        return ResponseEntity.ok(fullTextIndexService.getIndexStatus());
+    }
+
+    /**
+     * Run the hybrid search statement for a query under EXPLAIN ANALYZE and report the time spent in each
+     * stage (vector and lexical candidate searches, fusion and fetch, planning), in milliseconds
+     */
+    @PostMapping("/search/profile")
+    public ResponseEntity<Map<String, Object>> profileSearch(@RequestBody Map<String, Object> request) {
+        if (!(request.get("message") instanceof String query) || query.isBlank()) {
+            return ResponseEntity.badRequest().body(Map.of("error", "Message cannot be empty"));
+        }
+        if (!fullTextIndexService.isReady()) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Full-text index is not ready", "index", fullTextIndexService.getIndexStatus()));
+        }
+        FusionWeights weights = new FusionWeights(
+                request.get("vectorWeight") instanceof Number n ? n.doubleValue() : null,
+                request.get("lexicalWeight") instanceof Number n ? n.doubleValue() : null);
+        int topK = request.get("topK") instanceof Number n ? n.intValue() : 5;
+        Map<String, Double> stages = documentRepository.profileHybridSearch(embeddingClient.embed(query), query, topK,
+                ChunkFilter.none(), VectorSearchOptions.defaults(), weights);
+        return ResponseEntity.ok(Map.of("query", query, "stagesMs", stages));
+    }
+
+    /**
+     * Vector store implementation in use and its size
+     */
+    @GetMapping("/vector-store")
+    public ResponseEntity<Map<String, Object>> vectorStoreStatus() {
+        return ResponseEntity.ok(vectorStore.getStatus());
+    }
+
+    /**
+     * ONNX Runtime session pool and settings
+     */
+    @GetMapping("/onnx")
+    public ResponseEntity<Map<String, Object>> onnxStatus() {
+        return ResponseEntity.ok(onnxService.getRuntimeStatus());
+    }
+
+    /**
+     * Query embedding batching settings, queue depth and batch sizes
+     */
+    @GetMapping("/embedding-batcher")
+    public ResponseEntity<Map<String, Object>> embeddingBatcherStatus() {
+        return ResponseEntity.ok(queryEmbeddingBatcher.getStatus());
+    }
+
+    /**
+     * Progress of re-embedding stored chunks with the current model, pooling and normalization
+     */
+    @GetMapping("/embeddings/migration")
+    public ResponseEntity<Map<String, Object>> embeddingMigrationStatus() {
+        return ResponseEntity.ok(embeddingMigrationService.getStatus());
+    }
+
+    /**
+     * Re-embed the chunks of every file embedded with another model version, in the background
+     */
+    @PostMapping("/embeddings/migration")
+    public ResponseEntity<Map<String, Object>> migrateEmbeddings() {
+        log.info("Embedding migration requested");
+        embeddingMigrationService.migrate();
+        return ResponseEntity.accepted()
+                .body(Map.of("message", "Embedding migration started", "modelVersion", onnxService.getModelVersion()));
+    }
+
+    /**
+     * Query embedding cache statistics
+     */
+    @GetMapping("/embedding-cache")
+    public ResponseEntity<Map<String, Object>> embeddingCacheStats() {
+        return ResponseEntity.ok(embeddingClient.getCacheStats());
+    }
+
+    /**
+     * Drop all cached query embeddings
+     */
+    @DeleteMapping("/embedding-cache")
+    public ResponseEntity<Map<String, Object>> clearEmbeddingCache() {
+        embeddingClient.clearCache();
+        return ResponseEntity.ok(Map.of("message", "Query embedding cache cleared"));
+    }
+
+    /**
+     * Semantic answer cache statistics
+     */
+    @GetMapping("/answer-cache")
+    public ResponseEntity<Map<String, Object>> answerCacheStats() {
+        return ResponseEntity.ok(answerCache.getStats());
+    }
+
+    /**
+     * Drop all cached answers
+     */
+    @DeleteMapping("/answer-cache")
+    public ResponseEntity<Map<String, Object>> clearAnswerCache() {
+        answerCache.invalidateAll();
+        return ResponseEntity.ok(Map.of("message", "Answer cache cleared"));
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.PDF.chatbot.using.Spring.AI.controller;
+
+import com.example.PDF.chatbot.using.Spring.AI.service.IngestionJob;
+import com.example.PDF.chatbot.using.Spring.AI.service.IngestionJobService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/jobs")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class IngestionJobController {
+
+    private final IngestionJobService ingestionJobService;
+
+    /**
+     * All known ingestion jobs
+     */
+    @GetMapping
+    public ResponseEntity<List<Map<String, Object>>> listJobs() {
+        return ResponseEntity.ok(ingestionJobService.getJobs().stream()
+                .map(IngestionJob::toStatus)
+                .toList());
+    }
+
+    /**
+     * Progress of one ingestion job: pages extracted, chunks embedded, rows stored
+     */
+    @GetMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> getJob(@PathVariable String id) {
+        return ingestionJobService.getJob(id)
+                .map(job -> ResponseEntity.ok(job.toStatus()))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(Map.of("error", "Unknown job: " + id)));
+    }
+
+    /**
+     * Cancel a queued or running ingestion job; nothing it wrote is kept
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> cancelJob(@PathVariable String id) {
+        if (ingestionJobService.getJob(id).isEmpty()) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND)
+                    .body(Map.of("error", "Unknown job: " + id));
+        }
+        if (!ingestionJobService.cancel(id)) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                    .body(Map.of("error", "Job has already finished"));
+        }
+        return ResponseEntity.accepted().body(Map.of("message", "Cancellation requested", "jobId", id));
+    }
+}
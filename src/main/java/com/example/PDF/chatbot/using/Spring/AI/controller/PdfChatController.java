@@ -1,15 +1,33 @@
 package com.example.PDF.chatbot.using.Spring.AI.controller;
 
+import com.example.PDF.chatbot.using.Spring.AI.repository.FusionWeights;
 import com.example.PDF.chatbot.using.Spring.AI.service.ChatService;
+import com.example.PDF.chatbot.using.Spring.AI.service.ChunkVectorStore;
+import com.example.PDF.chatbot.using.Spring.AI.service.IngestionJob;
+import com.example.PDF.chatbot.using.Spring.AI.service.IngestionJobService;
 import com.example.PDF.chatbot.using.Spring.AI.service.PdfProcessingService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import reactor.core.Disposable;
 
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api")
@@ -19,13 +37,18 @@ import java.util.Map;
 public class PdfChatController {
 
     private final PdfProcessingService pdfProcessingService;
+    private final IngestionJobService ingestionJobService;
     private final ChatService chatService;
 
+    @Value("${chat.stream.timeout:PT2M}")
+    private Duration streamTimeout = Duration.ofMinutes(2);
+
     /**
-     * Upload and process PDF file
+     * Upload a PDF file and queue it for processing; progress is available at /api/jobs/{jobId}
      */
     @PostMapping("/upload")
-    public ResponseEntity<Map<String, Object>> uploadPdf(@RequestParam("file") MultipartFile file) {
+    public ResponseEntity<Map<String, Object>> uploadPdf(@RequestParam("file") MultipartFile file,
+                                                         @RequestParam(value = "collection", required = false) String collection) {
         try {
             // Validate file
             if (file.isEmpty()) {
@@ -33,26 +56,32 @@ public class PdfChatController {
                         .body(Map.of("error", "Please select a file to upload"));
             }
 
-            if (!file.getContentType().equals("application/pdf")) {
+            if (!"application/pdf".equals(file.getContentType())) {
                 return ResponseEntity.badRequest()
                         .body(Map.of("error", "Only PDF files are allowed"));
             }
 
-            // Process PDF
-            pdfProcessingService.processPdf(file);
+            // Queue PDF processing
+            IngestionJob job = ingestionJobService.submit(file, collection);
 
-            return ResponseEntity.ok(Map.of(
-                    "message", "PDF uploaded and processed successfully",
+            return ResponseEntity.accepted().body(Map.of(
+                    "message", "PDF uploaded and queued for processing",
+                    "jobId", job.getId(),
+                    "statusUrl", "/api/jobs/" + job.getId(),
                     "fileName", file.getOriginalFilename(),
                     "fileSize", file.getSize()
             ));
 
+        } catch (RejectedExecutionException e) {
+            log.warn("Ingestion queue is full, rejecting {}", file.getOriginalFilename());
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                    .body(Map.of("error", "Too many PDFs are being processed, please try again later"));
         } catch (IOException e) {
-            log.error("Error processing PDF file", e);
+            log.error("Error storing uploaded PDF file", e);
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "Failed to process PDF file: " + e.getMessage()));
         } catch (Exception e) {
-            log.error("Unexpected error during PDF processing", e);
+            log.error("Unexpected error during PDF upload", e);
             return ResponseEntity.internalServerError()
                     .body(Map.of("error", "An unexpected error occurred: " + e.getMessage()));
         }
@@ -71,14 +100,25 @@ public class PdfChatController {
                         .body(Map.of("error", "Message cannot be empty"));
             }
 
-            // Get answer from chat service
-            String answer = chatService.answerQuery(userQuery.trim());
+            // Get answer from chat service, optionally restricted to one file and/or collection
+            ChatService.ChatAnswer answer = chatService.answer(userQuery.trim(),
+                    buildFilter(request.get("fileName"), request.get("collection")), buildWeights(request));
 
             return ResponseEntity.ok(Map.of(
-                    "answer", answer,
-                    "question", userQuery
+                    "answer", answer.answer(),
+                    "question", userQuery,
+                    "timings", answer.timings()
             ));
 
+        } catch (NumberFormatException e) {
+            return ResponseEntity.badRequest()
+                    .body(Map.of("error", "vectorWeight and lexicalWeight must be numbers"));
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Map.of("error", "Too many questions are being answered, please try again later"));
+        } catch (ChatService.GenerationTimeoutException e) {
+            return ResponseEntity.status(HttpStatus.GATEWAY_TIMEOUT)
+                    .body(Map.of("error", e.getMessage()));
         } catch (Exception e) {
             log.error("Error during chat", e);
             return ResponseEntity.internalServerError()
@@ -86,6 +126,117 @@ public class PdfChatController {
         }
     }
 
+    /**
+     * Chat with the PDF content, streaming the answer as server-sent events:
+     * a "sources" event with the retrieved chunks, then one "token" event per generated fragment, then
+     * "timings" (ms per stage) and "done".
+     * A client disconnect or timeout cancels the upstream generation.
+     */
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter chatStream(@RequestBody Map<String, String> request) {
+        SseEmitter emitter = new SseEmitter(streamTimeout.toMillis());
+        String userQuery = request.get("message");
+        if (userQuery == null || userQuery.trim().isEmpty()) {
+            sendError(emitter, "Message cannot be empty");
+            return emitter;
+        }
+
+        ChatService.StreamingAnswer answer;
+        try {
+            answer = chatService.streamAnswer(userQuery.trim(),
+                    buildFilter(request.get("fileName"), request.get("collection")), buildWeights(request));
+            emitter.send(SseEmitter.event().name("sources").data(toSources(answer.sources()), MediaType.APPLICATION_JSON));
+        } catch (Exception e) {
+            log.error("Error preparing streaming chat", e);
+            sendError(emitter, "Failed to process chat request: " + e.getMessage());
+            return emitter;
+        }
+
+        Disposable subscription = answer.tokens().subscribe(
+                token -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("token").data(Map.of("text", token), MediaType.APPLICATION_JSON));
+                    } catch (IOException e) {
+                        // Client went away; the error propagates and cancels the upstream generation
+                        throw new UncheckedIOException(e);
+                    }
+                },
+                error -> {
+                    log.warn("Streaming chat ended with error: {}", error.getMessage());
+                    sendError(emitter, "Failed to generate answer");
+                },
+                () -> {
+                    try {
+                        emitter.send(SseEmitter.event().name("timings").data(answer.timings(), MediaType.APPLICATION_JSON));
+                        emitter.send(SseEmitter.event().name("done").data(""));
+                        emitter.complete();
+                    } catch (IOException e) {
+                        log.debug("Client disconnected before the end of the stream");
+                    }
+                });
+
+        emitter.onCompletion(subscription::dispose);
+        emitter.onTimeout(subscription::dispose);
+        emitter.onError(error -> subscription.dispose());
+        return emitter;
+    }
+
+    private static List<Map<String, Object>> toSources(List<Document> documents) {
+        List<Map<String, Object>> sources = new ArrayList<>(documents.size());
+        for (Document document : documents) {
+            Map<String, Object> source = new HashMap<>();
+            source.put("fileName", document.getMetadata().get(ChunkVectorStore.FILE_NAME));
+            source.put("chunkIndex", document.getMetadata().get(ChunkVectorStore.CHUNK_INDEX));
+            source.put("score", document.getScore());
+            source.put("vectorRank", document.getMetadata().get(ChunkVectorStore.VECTOR_RANK));
+            source.put("lexicalRank", document.getMetadata().get(ChunkVectorStore.LEXICAL_RANK));
+            sources.add(source);
+        }
+        return sources;
+    }
+
+    private static void sendError(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("error", message), MediaType.APPLICATION_JSON));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
+    }
+
+    /**
+     * Optional per-request fusion weights of hybrid retrieval
+     */
+    private static FusionWeights buildWeights(Map<String, String> request) {
+        return new FusionWeights(parseWeight(request.get("vectorWeight")), parseWeight(request.get("lexicalWeight")));
+    }
+
+    private static Double parseWeight(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        double weight = Double.parseDouble(value.trim());
+        if (!(weight >= 0) || Double.isInfinite(weight)) {
+            throw new NumberFormatException("Invalid weight: " + value);
+        }
+        return weight;
+    }
+
+    private static Filter.Expression buildFilter(String fileName, String collection) {
+        FilterExpressionBuilder b = new FilterExpressionBuilder();
+        FilterExpressionBuilder.Op fileOp = fileName == null || fileName.isBlank()
+                ? null : b.eq(ChunkVectorStore.FILE_NAME, fileName);
+        FilterExpressionBuilder.Op collectionOp = collection == null || collection.isBlank()
+                ? null : b.eq(ChunkVectorStore.COLLECTION, collection);
+        if (fileOp != null && collectionOp != null) {
+            return b.and(fileOp, collectionOp).build();
+        }
+        if (fileOp != null) {
+            return fileOp.build();
+        }
+        return collectionOp != null ? collectionOp.build() : null;
+    }
+
     /**
      * Health check endpoint
      */
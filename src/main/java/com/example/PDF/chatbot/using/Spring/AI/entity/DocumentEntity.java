@@ -4,11 +4,15 @@ import jakarta.persistence.*;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import lombok.AllArgsConstructor;
+import org.hibernate.annotations.Type;
 
 import java.util.UUID;
 
 @Entity
-@Table(name = "document_chunks")
+@Table(name = "document_chunks", indexes = {
+        @Index(name = "document_chunks_file_name_idx", columnList = "file_name"),
+        @Index(name = "document_chunks_collection_idx", columnList = "collection")
+})
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
@@ -24,19 +28,48 @@ public class DocumentEntity {
     @Column(name = "file_name")
     private String fileName;
 
+    @Column(name = "collection")
+    private String collection;
+
     @Column(name = "chunk_index")
     private Integer chunkIndex;
 
     @Column(name = "total_chunks")
     private Integer totalChunks;
 
+    /**
+     * SHA-256 of the chunk text, used to keep the embedding of unchanged chunks when a file is re-ingested
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Type(PgVectorType.class)
     @Column(name = "embedding_vector", columnDefinition = "vector(384)")
-    private String embeddingVector;
+    private float[] embeddingVector;
 
     @Column(name = "created_at")
     @Temporal(TemporalType.TIMESTAMP)
     private java.util.Date createdAt;
 
+    /**
+     * Distance to the query vector; only set on results of a similarity search
+     */
+    @Transient
+    private Double distance;
+
+    /**
+     * Reciprocal-rank fusion score and the ranks it was computed from (null when the chunk was not in that
+     * result list); only set on results of a hybrid search
+     */
+    @Transient
+    private Double fusedScore;
+
+    @Transient
+    private Integer vectorRank;
+
+    @Transient
+    private Integer lexicalRank;
+
     @PrePersist
     protected void onCreate() {
         createdAt = new java.util.Date();
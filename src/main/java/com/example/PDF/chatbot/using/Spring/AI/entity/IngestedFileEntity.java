@@ -0,0 +1,40 @@
+package com.example.PDF.chatbot.using.Spring.AI.entity;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * The last successful ingestion of a file: what was ingested, and with which embedding model
+ */
+@Entity
+@Table(name = "ingested_files")
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class IngestedFileEntity {
+
+    @Id
+    @Column(name = "file_name")
+    private String fileName;
+
+    @Column(name = "collection")
+    private String collection;
+
+    /**
+     * SHA-256 of the uploaded file
+     */
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
+
+    @Column(name = "embedding_model")
+    private String embeddingModel;
+
+    @Column(name = "total_chunks")
+    private Integer totalChunks;
+
+    @Column(name = "ingested_at")
+    @Temporal(TemporalType.TIMESTAMP)
+    private java.util.Date ingestedAt;
+}
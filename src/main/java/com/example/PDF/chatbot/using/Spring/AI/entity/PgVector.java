@@ -0,0 +1,184 @@
+package com.example.PDF.chatbot.using.Spring.AI.entity;
+
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.core.QueryExecutor;
+import org.postgresql.util.PGBinaryObject;
+import org.postgresql.util.PGobject;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Arrays;
+
+/**
+ * JDBC value for a pgvector {@code vector} column.
+ * Uses pgvector's binary send/receive format (int16 dimensions, int16 unused, float4 values in network byte order)
+ * once {@link #register(Connection)} has enabled binary transfer for the type on the connection.
+ * The text methods only exist as the PGobject fallback for drivers that deliver text anyway.
+ */
+public class PgVector extends PGobject implements PGBinaryObject {
+
+    private static final String TYPE_NAME = "vector";
+    private static final int HEADER_BYTES = 4;
+    private static final int MAX_DIMENSIONS = 16000;
+
+    private float[] values;
+
+    public PgVector() {
+        type = TYPE_NAME;
+    }
+
+    public PgVector(float[] values) {
+        this();
+        this.values = values;
+    }
+
+    public float[] toArray() {
+        return values;
+    }
+
+    /**
+     * Register this class for the vector type and switch the type to binary send and receive on this connection.
+     * Cheap to call repeatedly: the type OID is cached by the driver and the OID sets are only updated once.
+     * Fails when the database has no vector type, i.e. the pgvector extension is not installed.
+     */
+    // getBinaryReceiveOids() is deprecated without a replacement for reading the registered OIDs
+    @SuppressWarnings("deprecation")
+    public static void register(Connection connection) throws SQLException {
+        if (!connection.isWrapperFor(BaseConnection.class)) {
+            return;
+        }
+        BaseConnection pgConnection = connection.unwrap(BaseConnection.class);
+        int oid = pgConnection.getTypeInfo().getPGType(TYPE_NAME);
+        if (oid == Oid.UNSPECIFIED) {
+            throw new SQLException("Type \"" + TYPE_NAME + "\" does not exist; run CREATE EXTENSION vector");
+        }
+        QueryExecutor queryExecutor = pgConnection.getQueryExecutor();
+        if (!queryExecutor.getBinaryReceiveOids().contains(oid)) {
+            pgConnection.addDataType(TYPE_NAME, PgVector.class);
+            queryExecutor.addBinaryReceiveOid(oid);
+            queryExecutor.addBinarySendOid(oid);
+        }
+    }
+
+    /**
+     * Convert a value returned by {@code ResultSet.getObject} for a vector column into a float array
+     */
+    public static float[] toArray(Object value) throws SQLException {
+        if (value == null) {
+            return null;
+        }
+        if (value instanceof PgVector vector) {
+            return vector.toArray();
+        }
+        if (value instanceof PGobject object) {
+            PgVector vector = new PgVector();
+            vector.setValue(object.getValue());
+            return vector.toArray();
+        }
+        throw new SQLException("Unsupported vector value type: " + value.getClass());
+    }
+
+    @Override
+    public void setByteValue(byte[] bytes, int offset) throws SQLException {
+        int dimensions = ((bytes[offset] & 0xFF) << 8) | (bytes[offset + 1] & 0xFF);
+        if (bytes.length - offset != HEADER_BYTES + dimensions * Float.BYTES) {
+            throw new SQLException("Vector header declares " + dimensions + " dimensions but "
+                    + (bytes.length - offset - HEADER_BYTES) + " value bytes follow");
+        }
+        float[] result = new float[dimensions];
+        int position = offset + HEADER_BYTES;
+        for (int i = 0; i < dimensions; i++, position += Float.BYTES) {
+            int bits = ((bytes[position] & 0xFF) << 24)
+                    | ((bytes[position + 1] & 0xFF) << 16)
+                    | ((bytes[position + 2] & 0xFF) << 8)
+                    | (bytes[position + 3] & 0xFF);
+            result[i] = Float.intBitsToFloat(bits);
+        }
+        values = result;
+    }
+
+    @Override
+    public int lengthInBytes() {
+        return values == null ? 0 : HEADER_BYTES + values.length * Float.BYTES;
+    }
+
+    @Override
+    public void toBytes(byte[] bytes, int offset) {
+        if (values == null) {
+            return;
+        }
+        if (values.length > MAX_DIMENSIONS) {
+            throw new IllegalArgumentException("Vector has " + values.length + " dimensions, pgvector allows "
+                    + MAX_DIMENSIONS);
+        }
+        bytes[offset] = (byte) (values.length >>> 8);
+        bytes[offset + 1] = (byte) values.length;
+        bytes[offset + 2] = 0;
+        bytes[offset + 3] = 0;
+        int position = offset + HEADER_BYTES;
+        for (float value : values) {
+            int bits = Float.floatToIntBits(value);
+            bytes[position++] = (byte) (bits >>> 24);
+            bytes[position++] = (byte) (bits >>> 16);
+            bytes[position++] = (byte) (bits >>> 8);
+            bytes[position++] = (byte) bits;
+        }
+    }
+
+    @Override
+    public void setValue(String value) {
+        if (value == null) {
+            values = null;
+            return;
+        }
+        int start = value.indexOf('[') + 1;
+        int end = value.lastIndexOf(']');
+        if (end < 0) {
+            end = value.length();
+        }
+        int dimensions = start < end ? 1 : 0;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == ',') dimensions++;
+        }
+        float[] result = new float[dimensions];
+        for (int i = 0, from = start; i < dimensions; i++) {
+            int to = value.indexOf(',', from);
+            if (to < 0 || to > end) to = end;
+            result[i] = Float.parseFloat(value.substring(from, to).trim());
+            from = to + 1;
+        }
+        values = result;
+    }
+
+    @Override
+    public String getValue() {
+        if (values == null) {
+            return null;
+        }
+        StringBuilder sb = new StringBuilder(values.length * 12);
+        sb.append('[');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(',');
+            sb.append(values[i]);
+        }
+        return sb.append(']').toString();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof PgVector other && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(values);
+    }
+
+    @Override
+    public PgVector clone() throws CloneNotSupportedException {
+        PgVector copy = (PgVector) super.clone();
+        copy.values = values == null ? null : values.clone();
+        return copy;
+    }
+}
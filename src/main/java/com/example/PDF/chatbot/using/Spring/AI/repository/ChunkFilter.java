@@ -0,0 +1,96 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * SQL predicate over document_chunks metadata columns, built from a Spring AI filter expression
+ * so filters are pushed down into the similarity query instead of being applied to its results.
+ * Supported keys are fileName, collection and chunkIndex.
+ *
+ * @param sql        predicate with ? placeholders, or null for no filter
+ * @param parameters values for the placeholders, in order
+ */
+public record ChunkFilter(String sql, List<Object> parameters) {
+
+    private static final Map<String, String> COLUMNS = Map.of(
+            "fileName", "file_name",
+            "collection", "collection",
+            "chunkIndex", "chunk_index"
+    );
+
+    public static ChunkFilter none() {
+        return new ChunkFilter(null, List.of());
+    }
+
+    public boolean isEmpty() {
+        return sql == null;
+    }
+
+    public static ChunkFilter from(Filter.Expression expression) {
+        if (expression == null) {
+            return none();
+        }
+        List<Object> parameters = new ArrayList<>();
+        String sql = toSql(expression, parameters);
+        return new ChunkFilter(sql, List.copyOf(parameters));
+    }
+
+    private static String toSql(Filter.Operand operand, List<Object> parameters) {
+        if (operand instanceof Filter.Group group) {
+            return "(" + toSql(group.content(), parameters) + ")";
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Unsupported filter operand: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> toSql(expression.left(), parameters) + " AND " + toSql(expression.right(), parameters);
+            case OR -> "(" + toSql(expression.left(), parameters) + " OR " + toSql(expression.right(), parameters) + ")";
+            case NOT -> "NOT (" + toSql(expression.left(), parameters) + ")";
+            case EQ -> comparison(expression, "=", parameters);
+            case NE -> comparison(expression, "<>", parameters);
+            case GT -> comparison(expression, ">", parameters);
+            case GTE -> comparison(expression, ">=", parameters);
+            case LT -> comparison(expression, "<", parameters);
+            case LTE -> comparison(expression, "<=", parameters);
+            case IN -> membership(expression, "IN", parameters);
+            case NIN -> membership(expression, "NOT IN", parameters);
+        };
+    }
+
+    private static String comparison(Filter.Expression expression, String operator, List<Object> parameters) {
+        parameters.add(value(expression));
+        return column(expression) + " " + operator + " ?";
+    }
+
+    private static String membership(Filter.Expression expression, String operator, List<Object> parameters) {
+        if (!(value(expression) instanceof Collection<?> values) || values.isEmpty()) {
+            throw new IllegalArgumentException("IN / NIN filters need a non-empty list: " + expression);
+        }
+        parameters.addAll(values);
+        return column(expression) + " " + operator + " (" + String.join(", ", Collections.nCopies(values.size(), "?")) + ")";
+    }
+
+    private static String column(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key)) {
+            throw new IllegalArgumentException("Filter must compare a metadata key: " + expression);
+        }
+        String column = COLUMNS.get(key.key());
+        if (column == null) {
+            throw new IllegalArgumentException("Unsupported filter key '" + key.key() + "', expected one of " + COLUMNS.keySet());
+        }
+        return column;
+    }
+
+    private static Object value(Filter.Expression expression) {
+        if (!(expression.right() instanceof Filter.Value value)) {
+            throw new IllegalArgumentException("Filter must compare against a value: " + expression);
+        }
+        return value.value();
+    }
+}
@@ -0,0 +1,238 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.entity.PgVector;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.postgresql.core.BaseConnection;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+import org.springframework.stereotype.Repository;
+
+import javax.sql.DataSource;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Bulk writer for document_chunks using PostgreSQL COPY ... FROM STDIN (FORMAT BINARY).
+ * Rows are encoded in PostgreSQL's binary COPY format and streamed to the server in slices of
+ * {@code ingest.copy.flush-rows}, so only one slice is buffered in memory at a time. A {@link CopyStream} keeps
+ * one COPY open across many calls, so rows can be streamed as they are produced.
+ * The connection is obtained through {@link DataSourceUtils}, so a surrounding Spring transaction is joined.
+ */
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentBulkWriter {
+
+    private static final String COPY_SQL = "COPY document_chunks " +
+            "(id, content, file_name, collection, chunk_index, total_chunks, content_hash, embedding_vector, created_at) " +
+            "FROM STDIN (FORMAT BINARY)";
+
+    private static final byte[] COPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+    private static final short FIELD_COUNT = 9;
+    private static final LocalDateTime POSTGRES_EPOCH = LocalDateTime.of(2000, 1, 1, 0, 0);
+
+    private final DataSource dataSource;
+
+    @Value("${ingest.copy.flush-rows:500}")
+    private int flushRows = 500;
+
+    private volatile Boolean supported;
+
+    /**
+     * Whether the configured database is PostgreSQL, i.e. whether COPY can be used at all
+     */
+    public boolean isSupported() {
+        if (supported == null) {
+            Connection connection = DataSourceUtils.getConnection(dataSource);
+            try {
+                supported = connection.isWrapperFor(BaseConnection.class);
+            } catch (SQLException e) {
+                log.warn("Could not determine whether COPY is supported, falling back to JPA", e);
+                supported = false;
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+        return supported;
+    }
+
+    /**
+     * Write all documents with a single COPY statement. Ids and creation timestamps are assigned here
+     * when missing.
+     *
+     * @return the number of rows written
+     */
+    public long write(List<DocumentEntity> documents) throws SQLException, IOException {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        try (CopyStream copy = open()) {
+            copy.write(documents);
+            return copy.finish();
+        }
+    }
+
+    /**
+     * Start a COPY into document_chunks. No other statement can run on the connection until it is finished
+     * or closed.
+     */
+    public CopyStream open() throws SQLException, IOException {
+        Connection connection = DataSourceUtils.getConnection(dataSource);
+        try {
+            CopyManager copyManager = new CopyManager(connection.unwrap(BaseConnection.class));
+            return new CopyStream(connection, copyManager.copyIn(COPY_SQL));
+        } catch (SQLException | IOException | RuntimeException e) {
+            DataSourceUtils.releaseConnection(connection, dataSource);
+            throw e;
+        }
+    }
+
+    /**
+     * One open COPY statement; closing it without {@link #finish()} cancels the COPY, so nothing is written
+     */
+    public final class CopyStream implements AutoCloseable {
+
+        private final Connection connection;
+        private final CopyIn copyIn;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(buffer);
+        private int pending;
+        private boolean closed;
+
+        private CopyStream(Connection connection, CopyIn copyIn) throws IOException {
+            this.connection = connection;
+            this.copyIn = copyIn;
+            out.write(COPY_SIGNATURE);
+            out.writeInt(0); // flags
+            out.writeInt(0); // header extension length
+        }
+
+        /**
+         * Encode the documents, sending a slice to the server every {@code ingest.copy.flush-rows} rows.
+         * Ids and creation timestamps are assigned here when missing.
+         */
+        public void write(List<DocumentEntity> documents) throws SQLException, IOException {
+            for (DocumentEntity document : documents) {
+                writeRow(out, document);
+                if (++pending >= flushRows) {
+                    flush(copyIn, buffer);
+                    pending = 0;
+                }
+            }
+        }
+
+        /**
+         * @return the number of rows written
+         */
+        public long finish() throws SQLException, IOException {
+            out.writeShort(-1); // trailer
+            flush(copyIn, buffer);
+            long rows = copyIn.endCopy();
+            log.debug("Copied {} rows into document_chunks", rows);
+            return rows;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (copyIn.isActive()) {
+                    copyIn.cancelCopy();
+                }
+            } finally {
+                DataSourceUtils.releaseConnection(connection, dataSource);
+            }
+        }
+    }
+
+    private void writeRow(DataOutputStream out, DocumentEntity document) throws IOException {
+        if (document.getId() == null) {
+            document.setId(UUID.randomUUID());
+        }
+        if (document.getCreatedAt() == null) {
+            document.setCreatedAt(new Date());
+        }
+
+        out.writeShort(FIELD_COUNT);
+        writeUuid(out, document.getId());
+        writeText(out, document.getContent());
+        writeText(out, document.getFileName());
+        writeText(out, document.getCollection());
+        writeInt(out, document.getChunkIndex());
+        writeInt(out, document.getTotalChunks());
+        writeText(out, document.getContentHash());
+        writeVector(out, document.getEmbeddingVector());
+        writeTimestamp(out, document.getCreatedAt());
+    }
+
+    private static void writeUuid(DataOutputStream out, UUID value) throws IOException {
+        out.writeInt(16);
+        out.writeLong(value.getMostSignificantBits());
+        out.writeLong(value.getLeastSignificantBits());
+    }
+
+    private static void writeText(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static void writeInt(DataOutputStream out, Integer value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(4);
+        out.writeInt(value);
+    }
+
+    private static void writeVector(DataOutputStream out, float[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        PgVector vector = new PgVector(value);
+        byte[] bytes = new byte[vector.lengthInBytes()];
+        vector.toBytes(bytes, 0);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    /**
+     * timestamp without time zone: int64 microseconds since 2000-01-01, in the JVM's local time like JDBC writes it
+     */
+    private static void writeTimestamp(DataOutputStream out, Date value) throws IOException {
+        LocalDateTime local = LocalDateTime.ofInstant(value.toInstant(), ZoneId.systemDefault());
+        out.writeInt(8);
+        out.writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, local));
+    }
+
+    private static void flush(CopyIn copyIn, ByteArrayOutputStream buffer) throws SQLException {
+        if (buffer.size() > 0) {
+            byte[] bytes = buffer.toByteArray();
+            copyIn.writeToCopy(bytes, 0, bytes.length);
+            buffer.reset();
+        }
+    }
+}
@@ -10,25 +10,21 @@ import java.util.List;
 import java.util.UUID;
 
 @Repository
-public interface DocumentRepository extends JpaRepository<DocumentEntity, UUID> {
-
-    @Query(value = "SELECT *, embedding_vector <-> :queryEmbedding AS distance " +
-                   "FROM document_chunks " +
-                   "ORDER BY distance " +
-                   "LIMIT :limit", nativeQuery = true)
-    List<DocumentEntity> findSimilarDocuments(@Param("queryEmbedding") String queryEmbedding, 
-                                             @Param("limit") int limit);
-
-    @Query(value = "SELECT *, embedding_vector <-> :queryEmbedding AS distance " +
-                   "FROM document_chunks " +
-                   "WHERE embedding_vector <-> :queryEmbedding < :threshold " +
-                   "ORDER BY distance " +
-                   "LIMIT :limit", nativeQuery = true)
-    List<DocumentEntity> findSimilarDocumentsWithThreshold(@Param("queryEmbedding") String queryEmbedding, 
-                                                          @Param("threshold") double threshold,
-                                                          @Param("limit") int limit);
+public interface DocumentRepository extends JpaRepository<DocumentEntity, UUID>, DocumentRepositoryCustom {
 
     void deleteByFileName(String fileName);
 
     List<DocumentEntity> findByFileName(String fileName);
+
+    long countByFileName(String fileName);
+
+    /**
+     * Files with chunks that were not embedded with {@code modelVersion}. A file without an ingested_files row
+     * (ingested before that table existed) counts as stale, since the model of its chunks is unknown.
+     */
+    @Query(value = "SELECT DISTINCT c.file_name FROM document_chunks c " +
+            "LEFT JOIN ingested_files f ON f.file_name = c.file_name " +
+            "WHERE c.file_name IS NOT NULL AND (f.embedding_model IS NULL OR f.embedding_model <> :modelVersion)",
+            nativeQuery = true)
+    List<String> findFileNamesNotEmbeddedWith(@Param("modelVersion") String modelVersion);
 } 
\ No newline at end of file
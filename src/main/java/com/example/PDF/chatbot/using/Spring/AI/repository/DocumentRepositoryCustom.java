@@ -0,0 +1,93 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Vector similarity queries, implemented over JDBC so the query vector is bound in pgvector's binary format
+ * and the ANN recall settings can be applied per query
+ */
+public interface DocumentRepositoryCustom {
+
+    /**
+     * Nearest chunks to the query vector, ordered by distance, with {@link DocumentEntity#getDistance()} set.
+     *
+     * @param maxDistance only return chunks closer than this, or null for no threshold
+     * @param filter      metadata predicate evaluated in the same query
+     */
+    List<DocumentEntity> searchSimilarDocuments(float[] queryEmbedding, int limit, Double maxDistance,
+                                                ChunkFilter filter, VectorSearchOptions options);
+
+    /**
+     * Hybrid search in one statement: the ANN and full-text candidate lists are computed as CTEs and merged by
+     * reciprocal-rank fusion, ordered by {@link DocumentEntity#getFusedScore()} with distance and both ranks set.
+     * {@code maxDistance} only applies to the ANN list, so exact term matches are kept regardless of distance.
+     */
+    List<DocumentEntity> hybridSearch(float[] queryEmbedding, String queryText, int limit, Double maxDistance,
+                                      ChunkFilter filter, VectorSearchOptions options, FusionWeights weights);
+
+    /**
+     * Run the hybrid search statement under EXPLAIN ANALYZE and report the time spent in each stage, in ms:
+     * the vector and lexical CTEs, fusion and fetching the chunks (the rest of the execution), and planning
+     */
+    Map<String, Double> profileHybridSearch(float[] queryEmbedding, String queryText, int limit, ChunkFilter filter,
+                                            VectorSearchOptions options, FusionWeights weights);
+
+    default List<DocumentEntity> findSimilarDocuments(float[] queryEmbedding, int limit) {
+        return searchSimilarDocuments(queryEmbedding, limit, null, ChunkFilter.none(), VectorSearchOptions.defaults());
+    }
+
+    default List<DocumentEntity> findSimilarDocumentsWithThreshold(float[] queryEmbedding, double threshold, int limit) {
+        return searchSimilarDocuments(queryEmbedding, limit, threshold, ChunkFilter.none(), VectorSearchOptions.defaults());
+    }
+
+    /**
+     * Delete all chunks matching the filter
+     *
+     * @return the number of deleted rows
+     * @throws IllegalArgumentException if the filter is empty, which would match every chunk
+     */
+    int deleteByFilter(ChunkFilter filter);
+
+    /**
+     * Set total_chunks on the given rows, for ingestion that only knows the count once all chunks are written
+     *
+     * @return the number of updated rows
+     */
+    int updateTotalChunks(List<UUID> ids, int totalChunks);
+
+    /**
+     * Content hash of every chunk stored for a file, by row id
+     */
+    Map<UUID, String> findContentHashes(String fileName);
+
+    /**
+     * Move existing rows to new positions on re-ingestion: sets chunk_index and collection from the given
+     * entities, matched by id
+     *
+     * @return the number of updated rows
+     */
+    int updateChunkPositions(List<DocumentEntity> documents);
+
+    /**
+     * Replace the embedding of each row, matched by id, for re-embedding with a changed model or pooling
+     *
+     * @return the number of updated rows
+     */
+    int updateEmbeddings(List<UUID> ids, List<float[]> embeddings);
+
+    /**
+     * Delete the rows of a file that are not in {@code keepIds}
+     *
+     * @return the number of deleted rows
+     */
+    int deleteByFileNameExcept(String fileName, List<UUID> keepIds);
+
+    /**
+     * File name of every chunk, by row id, for stores that mirror document_chunks to check they are in sync
+     */
+    Map<UUID, String> findChunkFileNames();
+}
@@ -0,0 +1,472 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.entity.PgVector;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+public class DocumentRepositoryCustomImpl implements DocumentRepositoryCustom {
+
+    static final RowMapper<DocumentEntity> DOCUMENT_ROW_MAPPER = (rs, rowNum) -> {
+        DocumentEntity document = new DocumentEntity();
+        document.setId(rs.getObject("id", UUID.class));
+        document.setContent(rs.getString("content"));
+        document.setFileName(rs.getString("file_name"));
+        document.setCollection(rs.getString("collection"));
+        document.setChunkIndex(rs.getObject("chunk_index", Integer.class));
+        document.setTotalChunks(rs.getObject("total_chunks", Integer.class));
+        document.setContentHash(rs.getString("content_hash"));
+        document.setEmbeddingVector(PgVector.toArray(rs.getObject("embedding_vector")));
+        document.setCreatedAt(rs.getTimestamp("created_at"));
+        document.setDistance(rs.getDouble("distance"));
+        return document;
+    };
+
+    static final RowMapper<DocumentEntity> HYBRID_ROW_MAPPER = (rs, rowNum) -> {
+        DocumentEntity document = DOCUMENT_ROW_MAPPER.mapRow(rs, rowNum);
+        document.setFusedScore(rs.getDouble("fused_score"));
+        document.setVectorRank(rs.getObject("vector_rank", Integer.class));
+        document.setLexicalRank(rs.getObject("lexical_rank", Integer.class));
+        return document;
+    };
+
+    /**
+     * Generated tsvector column maintained by FullTextIndexService
+     */
+    public static final String FULL_TEXT_COLUMN = "content_tsv";
+
+    /**
+     * Upper bound of the hnsw.ef_search setting
+     */
+    private static final int MAX_EF_SEARCH = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate readOnlyTransaction;
+
+    @Value("${vector.search.hnsw.ef-search:40}")
+    private int defaultEfSearch = 40;
+
+    @Value("${vector.search.ivfflat.probes:1}")
+    private int defaultProbes = 1;
+
+    @Value("${vector.quantization.mode:none}")
+    private String quantizationMode = "none";
+
+    @Value("${vector.search.distance:inner-product}")
+    private String distanceMetric = "inner-product";
+
+    @Value("${vector.quantization.oversampling:4}")
+    private int defaultOversampling = 4;
+
+    @Value("${search.hybrid.text-search-config:english}")
+    private String textSearchConfig = "english";
+
+    @Value("${search.hybrid.candidates:40}")
+    private int hybridCandidates = 40;
+
+    @Value("${search.hybrid.rrf-k:60}")
+    private double rrfK = 60;
+
+    @Value("${search.hybrid.vector-weight:1.0}")
+    private double defaultVectorWeight = 1.0;
+
+    @Value("${search.hybrid.lexical-weight:1.0}")
+    private double defaultLexicalWeight = 1.0;
+
+    public DocumentRepositoryCustomImpl(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+    }
+
+    @Override
+    public List<DocumentEntity> searchSimilarDocuments(float[] queryEmbedding, int limit, Double maxDistance,
+                                                       ChunkFilter filter, VectorSearchOptions options) {
+        VectorQuantization quantization = VectorQuantization.from(quantizationMode);
+        int candidates = candidates(quantization, limit, options);
+        String staleModel = staleModel(options);
+        String sql = similaritySql(quantization, VectorDistance.from(distanceMetric), maxDistance != null, filter,
+                staleModel != null);
+        return readOnlyTransaction.execute(status -> {
+            applySearchOptions(options, candidates);
+            return jdbcTemplate.query(connection -> {
+                PgVector.register(connection);
+                PreparedStatement ps = connection.prepareStatement(sql);
+                bindSimilarity(ps, 1, new PgVector(queryEmbedding), filter, quantization, candidates, limit, maxDistance,
+                        staleModel);
+                return ps;
+            }, DOCUMENT_ROW_MAPPER);
+        });
+    }
+
+    @Override
+    public List<DocumentEntity> hybridSearch(float[] queryEmbedding, String queryText, int limit, Double maxDistance,
+                                             ChunkFilter filter, VectorSearchOptions options, FusionWeights weights) {
+        VectorQuantization quantization = VectorQuantization.from(quantizationMode);
+        String sql = hybridSql(quantization, maxDistance != null, filter, staleModel(options) != null);
+        return readOnlyTransaction.execute(status -> {
+            applySearchOptions(options, candidates(quantization, hybridCandidates, options));
+            return jdbcTemplate.query(connection -> {
+                PgVector.register(connection);
+                PreparedStatement ps = connection.prepareStatement(sql);
+                bindHybrid(ps, queryEmbedding, queryText, limit, maxDistance, filter, options, weights, quantization);
+                return ps;
+            }, HYBRID_ROW_MAPPER);
+        });
+    }
+
+    @Override
+    public Map<String, Double> profileHybridSearch(float[] queryEmbedding, String queryText, int limit,
+                                                   ChunkFilter filter, VectorSearchOptions options,
+                                                   FusionWeights weights) {
+        VectorQuantization quantization = VectorQuantization.from(quantizationMode);
+        String sql = "EXPLAIN (ANALYZE, FORMAT JSON) "
+                + hybridSql(quantization, false, filter, staleModel(options) != null);
+        String plan = readOnlyTransaction.execute(status -> {
+            applySearchOptions(options, candidates(quantization, hybridCandidates, options));
+            return jdbcTemplate.query(connection -> {
+                PgVector.register(connection);
+                PreparedStatement ps = connection.prepareStatement(sql);
+                bindHybrid(ps, queryEmbedding, queryText, limit, null, filter, options, weights, quantization);
+                return ps;
+            }, rs -> rs.next() ? rs.getString(1) : null);
+        });
+        JSONObject root = new JSONArray(plan).getJSONObject(0);
+        Map<String, Double> stages = new LinkedHashMap<>();
+        collectCteTimes(root.getJSONObject("Plan"), stages);
+        double execution = root.getDouble("Execution Time");
+        double ctes = stages.values().stream().mapToDouble(Double::doubleValue).sum();
+        stages.put("fusionAndFetch", Math.max(0, execution - ctes));
+        stages.put("planning", root.getDouble("Planning Time"));
+        stages.put("execution", execution);
+        return stages;
+    }
+
+    /**
+     * Time of each CTE scan node, e.g. "CTE vector_hits", as actual total time times loops
+     */
+    private static void collectCteTimes(JSONObject node, Map<String, Double> stages) {
+        String subplan = node.optString("Subplan Name", "");
+        if (subplan.startsWith("CTE ")) {
+            stages.merge(subplan.substring(4),
+                    node.getDouble("Actual Total Time") * node.optInt("Actual Loops", 1), Double::sum);
+        }
+        JSONArray children = node.optJSONArray("Plans");
+        if (children != null) {
+            for (int i = 0; i < children.length(); i++) {
+                collectCteTimes(children.getJSONObject(i), stages);
+            }
+        }
+    }
+
+    @Override
+    public int deleteByFilter(ChunkFilter filter) {
+        if (filter.isEmpty()) {
+            throw new IllegalArgumentException("Refusing to delete all document chunks with an empty filter");
+        }
+        return jdbcTemplate.update("DELETE FROM document_chunks WHERE " + filter.sql(), filter.parameters().toArray());
+    }
+
+    @Override
+    public int updateTotalChunks(List<UUID> ids, int totalChunks) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE document_chunks SET total_chunks = ? WHERE id = ANY(?)");
+            ps.setInt(1, totalChunks);
+            ps.setArray(2, connection.createArrayOf("uuid", ids.toArray()));
+            return ps;
+        });
+    }
+
+    @Override
+    public Map<UUID, String> findContentHashes(String fileName) {
+        Map<UUID, String> hashes = new HashMap<>();
+        jdbcTemplate.query("SELECT id, content_hash FROM document_chunks WHERE file_name = ?",
+                (RowCallbackHandler) rs -> hashes.put(rs.getObject("id", UUID.class), rs.getString("content_hash")),
+                fileName);
+        return hashes;
+    }
+
+    @Override
+    public Map<UUID, String> findChunkFileNames() {
+        Map<UUID, String> fileNames = new HashMap<>();
+        jdbcTemplate.query("SELECT id, file_name FROM document_chunks",
+                (RowCallbackHandler) rs -> fileNames.put(rs.getObject("id", UUID.class), rs.getString("file_name")));
+        return fileNames;
+    }
+
+    @Override
+    public int updateChunkPositions(List<DocumentEntity> documents) {
+        if (documents.isEmpty()) {
+            return 0;
+        }
+        UUID[] ids = new UUID[documents.size()];
+        Integer[] chunkIndexes = new Integer[documents.size()];
+        String[] collections = new String[documents.size()];
+        for (int i = 0; i < documents.size(); i++) {
+            ids[i] = documents.get(i).getId();
+            chunkIndexes[i] = documents.get(i).getChunkIndex();
+            collections[i] = documents.get(i).getCollection();
+        }
+        // One statement for the whole batch: the arrays are unnested into a joined row set
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE document_chunks d SET chunk_index = v.chunk_index, collection = v.collection " +
+                    "FROM unnest(?, ?, ?) AS v(id, chunk_index, collection) WHERE d.id = v.id");
+            ps.setArray(1, connection.createArrayOf("uuid", ids));
+            ps.setArray(2, connection.createArrayOf("int4", chunkIndexes));
+            ps.setArray(3, connection.createArrayOf("text", collections));
+            return ps;
+        });
+    }
+
+    @Override
+    public int updateEmbeddings(List<UUID> ids, List<float[]> embeddings) {
+        if (ids.size() != embeddings.size()) {
+            throw new IllegalArgumentException(ids.size() + " ids for " + embeddings.size() + " embeddings");
+        }
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        Integer updated = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            PgVector.register(connection);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "UPDATE document_chunks SET embedding_vector = ? WHERE id = ?")) {
+                for (int i = 0; i < ids.size(); i++) {
+                    ps.setObject(1, new PgVector(embeddings.get(i)));
+                    ps.setObject(2, ids.get(i));
+                    ps.addBatch();
+                }
+                int count = 0;
+                for (int rows : ps.executeBatch()) {
+                    count += Math.max(rows, 0);
+                }
+                return count;
+            }
+        });
+        return updated != null ? updated : 0;
+    }
+
+    @Override
+    public int deleteByFileNameExcept(String fileName, List<UUID> keepIds) {
+        return jdbcTemplate.update(connection -> {
+            PreparedStatement ps = connection.prepareStatement(
+                    "DELETE FROM document_chunks WHERE file_name = ? AND id <> ALL(?)");
+            ps.setString(1, fileName);
+            ps.setArray(2, connection.createArrayOf("uuid", keepIds.toArray()));
+            return ps;
+        });
+    }
+
+    /**
+     * The inner query orders by the distance expression itself with a LIMIT, so the planner can use the
+     * HNSW/IVFFlat index; the metadata filter is part of that scan. A distance threshold is applied to the
+     * index-ordered candidates in the outer query, since a WHERE on the distance would force a full scan.
+     * With quantization, the index scan runs on the compact column and fetches {@code limit * oversampling}
+     * candidates, and only those are ordered by the exact distance.
+     * With {@code splitStale}, the index scan only keeps chunks of files embedded with the current model, and the
+     * chunks of stale files are ranked by cosine distance in a second, exact scan; both lists are merged by distance.
+     */
+    private static String similaritySql(VectorQuantization quantization, VectorDistance distance,
+                                        boolean withThreshold, ChunkFilter filter, boolean splitStale) {
+        String where = where(filter, splitStale ? currentModel("document_chunks.file_name") : null);
+        String candidates;
+        if (quantization == VectorQuantization.NONE) {
+            candidates = "SELECT *, " + distance.distanceExpression("embedding_vector") + " AS distance " +
+                    "FROM document_chunks " +
+                    where +
+                    "ORDER BY embedding_vector " + distance.operator() + " ? " +
+                    "LIMIT ?";
+        } else {
+            candidates = "SELECT *, " + distance.distanceExpression("embedding_vector") + " AS distance " +
+                    "FROM (SELECT * FROM document_chunks " +
+                    where +
+                    "ORDER BY " + quantization.orderBy(distance) + " " +
+                    "LIMIT ?) approximate " +
+                    "ORDER BY distance " +
+                    "LIMIT ?";
+        }
+        if (splitStale) {
+            candidates = "SELECT * FROM ((" + candidates + ") UNION ALL (" +
+                    "SELECT *, embedding_vector <=> ? AS distance " +
+                    "FROM document_chunks " +
+                    where(filter, "NOT " + currentModel("document_chunks.file_name")) +
+                    "ORDER BY distance " +
+                    "LIMIT ?)) merged " +
+                    "ORDER BY distance " +
+                    "LIMIT ?";
+        }
+        if (!withThreshold) {
+            return candidates;
+        }
+        return "SELECT * FROM (" + candidates + ") candidates " +
+                "WHERE distance < ? " +
+                "ORDER BY distance";
+    }
+
+    /**
+     * ANN candidate list of the hybrid search ranked by distance, full-text candidate list ranked by ts_rank_cd,
+     * merged with a full outer join so a chunk found by both searches is scored once with both ranks.
+     * Both CTEs are materialized so each search runs exactly once, through its own index.
+     */
+    private String hybridSql(VectorQuantization quantization, boolean withThreshold, ChunkFilter filter,
+                             boolean splitStale) {
+        VectorDistance distance = VectorDistance.from(distanceMetric);
+        String and = filter.isEmpty() ? "" : "AND " + filter.sql() + " ";
+        String reportedDistance = splitStale
+                ? "CASE WHEN " + currentModel("d.file_name") + " " +
+                "THEN " + distance.distanceExpression("d.embedding_vector") + " " +
+                "ELSE d.embedding_vector <=> ? END"
+                : distance.distanceExpression("d.embedding_vector");
+        return "WITH vector_hits AS MATERIALIZED (" +
+                "SELECT id, row_number() OVER (ORDER BY distance) AS rank " +
+                "FROM (" + similaritySql(quantization, distance, withThreshold, filter, splitStale) + ") ranked" +
+                "), lexical_hits AS MATERIALIZED (" +
+                "SELECT id, row_number() OVER (ORDER BY text_rank DESC) AS rank " +
+                "FROM (SELECT id, ts_rank_cd(" + FULL_TEXT_COLUMN + ", query) AS text_rank " +
+                "FROM document_chunks, websearch_to_tsquery(?::regconfig, ?) query " +
+                "WHERE " + FULL_TEXT_COLUMN + " @@ query " + and +
+                "ORDER BY text_rank DESC " +
+                "LIMIT ?) ranked" +
+                "), fused AS (" +
+                "SELECT coalesce(v.id, l.id) AS id, " +
+                "coalesce(?::float8 / (?::float8 + v.rank), 0) + coalesce(?::float8 / (?::float8 + l.rank), 0) AS fused_score, " +
+                "v.rank::int AS vector_rank, l.rank::int AS lexical_rank " +
+                "FROM vector_hits v FULL OUTER JOIN lexical_hits l ON v.id = l.id " +
+                "ORDER BY fused_score DESC " +
+                "LIMIT ?" +
+                ") " +
+                "SELECT d.*, " + reportedDistance + " AS distance, " +
+                "f.fused_score, f.vector_rank, f.lexical_rank " +
+                "FROM fused f JOIN document_chunks d ON d.id = f.id " +
+                "ORDER BY f.fused_score DESC, distance";
+    }
+
+    private static String where(ChunkFilter filter, String condition) {
+        if (condition == null) {
+            return filter.isEmpty() ? "" : "WHERE " + filter.sql() + " ";
+        }
+        return "WHERE " + (filter.isEmpty() ? "" : filter.sql() + " AND ") + condition + " ";
+    }
+
+    /**
+     * The chunk's file was embedded with the bound model version; a per-row lookup in ingested_files by primary key
+     */
+    private static String currentModel(String fileNameColumn) {
+        return "EXISTS (SELECT 1 FROM ingested_files i " +
+                "WHERE i.file_name = " + fileNameColumn + " AND i.embedding_model = ?)";
+    }
+
+    /**
+     * Model version to split stale chunks off by, or null. Under L2 every vector ranks by its real distance, so
+     * chunks of stale files stay in the index scan.
+     */
+    private String staleModel(VectorSearchOptions options) {
+        return VectorDistance.from(distanceMetric) == VectorDistance.INNER_PRODUCT ? options.embeddingModel() : null;
+    }
+
+    /**
+     * A search with weight 0 keeps its CTE but fetches no candidates
+     */
+    private void bindHybrid(PreparedStatement ps, float[] queryEmbedding, String queryText, int limit,
+                            Double maxDistance, ChunkFilter filter, VectorSearchOptions options,
+                            FusionWeights weights, VectorQuantization quantization) throws SQLException {
+        double vectorWeight = weights.vector() != null ? weights.vector() : defaultVectorWeight;
+        double lexicalWeight = weights.lexical() != null ? weights.lexical() : defaultLexicalWeight;
+        int vectorCandidates = vectorWeight > 0 ? hybridCandidates : 0;
+        PgVector vector = new PgVector(queryEmbedding);
+        String staleModel = staleModel(options);
+        int index = bindSimilarity(ps, 1, vector, filter, quantization,
+                candidates(quantization, vectorCandidates, options), vectorCandidates, maxDistance, staleModel);
+        ps.setString(index++, textSearchConfig);
+        ps.setString(index++, queryText);
+        for (Object parameter : filter.parameters()) {
+            ps.setObject(index++, parameter);
+        }
+        ps.setInt(index++, lexicalWeight > 0 ? hybridCandidates : 0);
+        ps.setDouble(index++, vectorWeight);
+        ps.setDouble(index++, rrfK);
+        ps.setDouble(index++, lexicalWeight);
+        ps.setDouble(index++, rrfK);
+        ps.setInt(index++, limit);
+        if (staleModel != null) {
+            ps.setString(index++, staleModel);
+            ps.setObject(index++, vector);
+        }
+        ps.setObject(index, vector);
+    }
+
+    /**
+     * Bind the parameters of {@link #similaritySql}, starting at {@code index}
+     *
+     * @return the index of the next parameter
+     */
+    private static int bindSimilarity(PreparedStatement ps, int index, PgVector vector, ChunkFilter filter,
+                                      VectorQuantization quantization, int candidates, int limit,
+                                      Double maxDistance, String staleModel) throws SQLException {
+        ps.setObject(index++, vector);
+        for (Object parameter : filter.parameters()) {
+            ps.setObject(index++, parameter);
+        }
+        if (staleModel != null) {
+            ps.setString(index++, staleModel);
+        }
+        ps.setObject(index++, vector);
+        ps.setInt(index++, candidates);
+        if (quantization != VectorQuantization.NONE) {
+            ps.setInt(index++, limit);
+        }
+        if (staleModel != null) {
+            ps.setObject(index++, vector);
+            for (Object parameter : filter.parameters()) {
+                ps.setObject(index++, parameter);
+            }
+            ps.setString(index++, staleModel);
+            ps.setInt(index++, limit);
+            ps.setInt(index++, limit);
+        }
+        if (maxDistance != null) {
+            ps.setDouble(index++, maxDistance);
+        }
+        return index;
+    }
+
+    /**
+     * Rows fetched by the ANN scan: with quantization, {@code limit} times the oversampling factor
+     */
+    private int candidates(VectorQuantization quantization, int limit, VectorSearchOptions options) {
+        int oversampling = options.oversampling() != null ? options.oversampling() : defaultOversampling;
+        return quantization == VectorQuantization.NONE ? limit : limit * Math.max(1, oversampling);
+    }
+
+    /**
+     * Equivalent of SET LOCAL for both index types; scoped to the surrounding transaction.
+     * An HNSW scan returns at most ef_search rows, so it is raised to the number of candidates when needed.
+     */
+    private void applySearchOptions(VectorSearchOptions options, int candidates) {
+        int efSearch = Math.min(MAX_EF_SEARCH,
+                Math.max(candidates, options.efSearch() != null ? options.efSearch() : defaultEfSearch));
+        int probes = options.probes() != null ? options.probes() : defaultProbes;
+        jdbcTemplate.queryForList(
+                "SELECT set_config('hnsw.ef_search', ?, true), set_config('ivfflat.probes', ?, true)",
+                String.valueOf(efSearch), String.valueOf(probes));
+    }
+}
@@ -0,0 +1,16 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+/**
+ * Per-query weights of the reciprocal-rank fusion in hybrid search: a chunk scores weight / (k + rank) for each
+ * result list (vector, full-text) it appears in. A null weight keeps the configured default
+ * ({@code search.hybrid.vector-weight} / {@code search.hybrid.lexical-weight}); 0 turns that search off.
+ *
+ * @param vector  weight of the ANN ranking
+ * @param lexical weight of the full-text ranking
+ */
+public record FusionWeights(Double vector, Double lexical) {
+
+    public static FusionWeights defaults() {
+        return new FusionWeights(null, null);
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.IngestedFileEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface IngestedFileRepository extends JpaRepository<IngestedFileEntity, String> {
+}
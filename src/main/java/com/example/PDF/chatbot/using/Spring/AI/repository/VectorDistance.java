@@ -0,0 +1,61 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import java.util.Locale;
+
+/**
+ * Distance searches are ranked by ({@code vector.search.distance}).
+ * Inner product only ranks correctly on unit vectors, so it requires {@code onnx.embedding.normalize=true};
+ * it is then cheaper than L2 and orders exactly like cosine distance. Switching recreates the ANN index with the
+ * matching operator class.
+ */
+public enum VectorDistance {
+
+    /**
+     * Euclidean distance, {@code <->}
+     */
+    L2("<->", "l2"),
+
+    /**
+     * Negative inner product, {@code <#>}; reported as {@code 1 + (a <#> b)}, the cosine distance of unit vectors,
+     * clamped to [0, 2] for vectors that are not unit length
+     */
+    INNER_PRODUCT("<#>", "ip");
+
+    private final String operator;
+    private final String operatorClassName;
+
+    VectorDistance(String operator, String operatorClassName) {
+        this.operator = operator;
+        this.operatorClassName = operatorClassName;
+    }
+
+    /**
+     * Parse a {@code vector.search.distance} value (l2 or inner-product)
+     */
+    public static VectorDistance from(String distance) {
+        return valueOf(distance.trim().replace('-', '_').toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Operator the ANN index orders by
+     */
+    public String operator() {
+        return operator;
+    }
+
+    /**
+     * Operator class of a {@code vector} or {@code halfvec} index for this distance, e.g. vector_ip_ops
+     */
+    public String operatorClass(String type) {
+        return type + "_" + operatorClassName + "_ops";
+    }
+
+    /**
+     * The reported distance between {@code column} and the bound query vector: non-negative, smaller is closer
+     */
+    String distanceExpression(String column) {
+        return this == INNER_PRODUCT
+                ? "least(greatest((" + column + " <#> ?) + 1, 0), 2)"
+                : column + " <-> ?";
+    }
+}
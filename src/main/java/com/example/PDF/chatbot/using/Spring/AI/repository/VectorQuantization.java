@@ -0,0 +1,77 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import java.util.Locale;
+
+/**
+ * Compact companion representation of embedding_vector ({@code vector.quantization.mode}).
+ * The companion column is generated by PostgreSQL from embedding_vector on every write, so all write paths
+ * (COPY, JPA, the vector store API) store it without converting anything themselves. When enabled, the ANN
+ * index is built on the companion column and searches run in two phases: a wide candidate set by the compact
+ * distance, re-ranked by the exact distance on embedding_vector. Requires pgvector 0.7 or later.
+ */
+public enum VectorQuantization {
+
+    /**
+     * Full-precision vectors only; the index is built on embedding_vector
+     */
+    NONE(null, "vector", "?"),
+
+    /**
+     * 16-bit floats: half the size, near-identical distances
+     */
+    HALFVEC("embedding_half", "halfvec", "?::halfvec"),
+
+    /**
+     * One sign bit per dimension, compared by Hamming distance whatever the search distance: 1/32 of the size
+     */
+    BINARY("embedding_bits", "bit", "binary_quantize(?)");
+
+    private final String column;
+    private final String type;
+    private final String queryExpression;
+
+    VectorQuantization(String column, String type, String queryExpression) {
+        this.column = column;
+        this.type = type;
+        this.queryExpression = queryExpression;
+    }
+
+    /**
+     * Parse a {@code vector.quantization.mode} value (none, halfvec or binary)
+     */
+    public static VectorQuantization from(String mode) {
+        return valueOf(mode.trim().toUpperCase(Locale.ROOT));
+    }
+
+    /**
+     * Column the ANN index is built on and phase one orders by
+     */
+    public String indexColumn() {
+        return column != null ? column : "embedding_vector";
+    }
+
+    public String operatorClass(VectorDistance distance) {
+        return this == BINARY ? "bit_hamming_ops" : distance.operatorClass(type);
+    }
+
+    /**
+     * Definition of the generated companion column, or null for {@link #NONE}
+     */
+    public String columnDefinition(int dimensions) {
+        if (column == null) {
+            return null;
+        }
+        String columnType = type + "(" + dimensions + ")";
+        String expression = this == BINARY
+                ? "binary_quantize(embedding_vector)::" + columnType
+                : "embedding_vector::" + columnType;
+        return column + " " + columnType + " GENERATED ALWAYS AS (" + expression + ") STORED";
+    }
+
+    /**
+     * ORDER BY expression of phase one; the query vector is bound as the single parameter
+     */
+    String orderBy(VectorDistance distance) {
+        return indexColumn() + " " + (this == BINARY ? "<~>" : distance.operator()) + " " + queryExpression;
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+/**
+ * Per-query ANN recall knobs, applied with SET LOCAL for the duration of one search.
+ * A null value keeps the configured default ({@code vector.search.hnsw.ef-search} / {@code vector.search.ivfflat.probes}
+ * / {@code vector.quantization.oversampling}).
+ *
+ * @param efSearch       size of the HNSW candidate list (hnsw.ef_search)
+ * @param probes         number of IVFFlat lists to probe (ivfflat.probes)
+ * @param oversampling   with quantization, candidates fetched by compact distance per requested result
+ * @param embeddingModel when set, chunks of files whose ingested_files.embedding_model differs (not migrated yet)
+ *                       are ranked by cosine distance in a separate scan under inner product, since their vectors
+ *                       may not be unit length; null when no file is stale
+ */
+public record VectorSearchOptions(Integer efSearch, Integer probes, Integer oversampling, String embeddingModel) {
+
+    public static VectorSearchOptions defaults() {
+        return new VectorSearchOptions(null, null, null, null);
+    }
+
+    public VectorSearchOptions withEmbeddingModel(String embeddingModel) {
+        return new VectorSearchOptions(efSearch, probes, oversampling, embeddingModel);
+    }
+}
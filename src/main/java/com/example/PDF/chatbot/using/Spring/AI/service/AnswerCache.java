@@ -0,0 +1,192 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Semantic cache of generated answers.
+ * Entries are grouped by the exact set of retrieved chunk ids; within a group an answer is reused when the new
+ * question's embedding is within {@code answer.cache.max-cosine-distance} of the cached question.
+ * The cache is bounded by an approximate memory budget and a TTL, and evicts by Caffeine's size policy.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AnswerCache {
+
+    private static final int MAX_ENTRIES_PER_CHUNK_SET = 8;
+
+    private final StageMetrics metrics;
+
+    @Value("${answer.cache.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${answer.cache.max-cosine-distance:0.05}")
+    private double maxCosineDistance = 0.05;
+
+    @Value("${answer.cache.max-memory:16MB}")
+    private DataSize maxMemory = DataSize.ofMegabytes(16);
+
+    @Value("${answer.cache.ttl:PT30M}")
+    private Duration ttl = Duration.ofMinutes(30);
+
+    private Cache<SortedSet<String>, List<Entry>> cache;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private record Entry(float[] unitQuery, Set<String> fileNames, String answer) {
+
+        long weight() {
+            long ids = 0;
+            for (String fileName : fileNames) {
+                ids += 48 + 2L * fileName.length();
+            }
+            return 64 + 4L * unitQuery.length + 2L * answer.length() + ids;
+        }
+    }
+
+    @PostConstruct
+    void initCache() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxMemory.toBytes())
+                .weigher((SortedSet<String> chunkIds, List<Entry> entries) -> weigh(chunkIds, entries))
+                .expireAfterWrite(ttl)
+                .recordStats()
+                .build();
+        registerMetrics();
+        log.info("Answer cache enabled (max memory {}, ttl {}, max cosine distance {})", maxMemory, ttl, maxCosineDistance);
+    }
+
+    /**
+     * Hits and misses of the semantic match, which Caffeine's own statistics cannot see
+     */
+    private void registerMetrics() {
+        FunctionCounter.builder("cache.gets", hits, LongAdder::sum)
+                .description("Answer cache lookups")
+                .tags("cache", "answers", "result", "hit")
+                .register(metrics.getRegistry());
+        FunctionCounter.builder("cache.gets", misses, LongAdder::sum)
+                .description("Answer cache lookups")
+                .tags("cache", "answers", "result", "miss")
+                .register(metrics.getRegistry());
+        Gauge.builder("cache.size", cache, Cache::estimatedSize)
+                .description("Cached chunk sets")
+                .tag("cache", "answers")
+                .register(metrics.getRegistry());
+        FunctionCounter.builder("cache.evictions", cache, c -> c.stats().evictionCount())
+                .description("Answer cache evictions")
+                .tag("cache", "answers")
+                .register(metrics.getRegistry());
+    }
+
+    /**
+     * Cached answer for a question whose retrieval returned exactly {@code chunkIds}, or null
+     */
+    public String find(float[] queryEmbedding, SortedSet<String> chunkIds) {
+        if (cache == null) {
+            return null;
+        }
+        List<Entry> entries = cache.getIfPresent(chunkIds);
+        if (entries != null) {
+            float[] unitQuery = normalize(queryEmbedding);
+            for (Entry entry : entries) {
+                if (1.0 - dot(unitQuery, entry.unitQuery()) <= maxCosineDistance) {
+                    hits.increment();
+                    return entry.answer();
+                }
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    public void put(float[] queryEmbedding, SortedSet<String> chunkIds, Set<String> fileNames, String answer) {
+        if (cache == null || chunkIds.isEmpty()) {
+            return;
+        }
+        Entry entry = new Entry(normalize(queryEmbedding), Set.copyOf(fileNames), answer);
+        cache.asMap().merge(chunkIds, List.of(entry), (existing, added) -> {
+            List<Entry> merged = new ArrayList<>(added);
+            merged.addAll(existing.subList(0, Math.min(existing.size(), MAX_ENTRIES_PER_CHUNK_SET - 1)));
+            return List.copyOf(merged);
+        });
+    }
+
+    /**
+     * Drop every answer that was generated from chunks of the given file
+     */
+    public void invalidateFile(String fileName) {
+        if (cache != null) {
+            cache.asMap().values().removeIf(entries -> entries.get(0).fileNames().contains(fileName));
+        }
+    }
+
+    public void invalidateAll() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    public Map<String, Object> getStats() {
+        if (cache == null) {
+            return Map.of("enabled", false);
+        }
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        return Map.of(
+                "enabled", true,
+                "chunkSets", cache.estimatedSize(),
+                "hits", hitCount,
+                "misses", lookups - hitCount,
+                "hitRate", lookups == 0 ? 0.0 : (double) hitCount / lookups,
+                "evictions", cache.stats().evictionCount()
+        );
+    }
+
+    private static int weigh(SortedSet<String> chunkIds, List<Entry> entries) {
+        long weight = 120L * chunkIds.size();
+        for (Entry entry : entries) {
+            weight += entry.weight();
+        }
+        return (int) Math.min(Integer.MAX_VALUE, weight);
+    }
+
+    private static float[] normalize(float[] vector) {
+        double norm = Math.sqrt(dot(vector, vector));
+        float[] unit = new float[vector.length];
+        if (norm > 0) {
+            for (int i = 0; i < vector.length; i++) {
+                unit[i] = (float) (vector[i] / norm);
+            }
+        }
+        return unit;
+    }
+
+    private static double dot(float[] a, float[] b) {
+        double sum = 0;
+        for (int i = 0; i < a.length; i++) {
+            sum += a[i] * b[i];
+        }
+        return sum;
+    }
+}
@@ -1,32 +1,71 @@
 package com.example.PDF.chatbot.using.Spring.AI.service;
 
-import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
-import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.FusionWeights;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.chat.prompt.PromptTemplate;
 import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
 import org.springframework.ai.vectorstore.SearchRequest;
-import org.springframework.ai.vectorstore.VectorStore;
-import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 
+import java.nio.file.Path;
+import java.time.Duration;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-
-import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class ChatService {
 
-    private final CustomOnnxService onnxService;
-    private final DocumentRepository documentRepository;
     private final ChatModel chatModel;
-    private final VectorStore vectorStore;
+    private final EmbeddingModel embeddingModel;
+    private final ChunkVectorStore vectorStore;
+    private final AnswerCache answerCache;
+    private final ContextAssembler contextAssembler;
+    private final StageMetrics metrics;
+
+    @Value("${spring.ai.groq.chat.options.model:llama2-70b-4096}")
+    private String chatModelName = "llama2-70b-4096";
+
+    @Value("${onnx.model.path:onnx-output-folder/model.onnx}")
+    private String embeddingModelPath = "onnx-output-folder/model.onnx";
+
+    /**
+     * Longest blocking chat model call, and longest gap between two streamed tokens
+     */
+    @Value("${chat.llm.timeout:PT60S}")
+    private Duration llmTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Runs blocking chat model calls so they can be abandoned and interrupted on timeout; a virtual thread per
+     * call, since the call only waits on the network
+     */
+    private final ExecutorService llmExecutor = Executors.newThreadPerTaskExecutor(
+            Thread.ofVirtual().name("llm-", 0).factory());
 
     private final String PROMPT_TEMPLATE = """
             You are a helpful assistant that answers questions based on the provided documents.
@@ -44,55 +83,210 @@ public class ChatService {
      * Answer user query using RAG (Retrieval Augmented Generation)
      */
     public String answerQuery(String userQuery) {
+        return answerQuery(userQuery, null);
+    }
+
+    /**
+     * Answer user query using RAG, restricted to the chunks matching the filter (fileName, collection, chunkIndex)
+     */
+    public String answerQuery(String userQuery, Filter.Expression filter) {
+        return answer(userQuery, filter, FusionWeights.defaults()).answer();
+    }
+
+    /**
+     * Answer user query using RAG with hybrid retrieval, reporting the time spent in each stage
+     */
+    public ChatAnswer answer(String userQuery, Filter.Expression filter, FusionWeights weights) {
         log.info("Processing user query: {}", userQuery);
-        
+        long start = System.nanoTime();
+
         try {
-            // Search for relevant documents
-            List<Document> relevantDocs = vectorStore.similaritySearch(
-                SearchRequest.query(userQuery)
-                    .withTopK(5)
-                    .build()
-            );
-
-            // Prepare prompt template and parameters
-            PromptTemplate promptTemplate = new PromptTemplate(PROMPT_TEMPLATE);
-            Map<String, Object> promptParameters = new HashMap<>();
-            promptParameters.put("input", userQuery);
-            promptParameters.put("documents", relevantDocs.stream()
-                    .map(doc -> doc.getContent())
-                    .reduce("", (a, b) -> a + "\n" + b));
+            Retrieval retrieval = retrieve(userQuery, filter, weights);
+
+            // Reuse the answer of a near-identical question that was answered from the same chunks
+            String cachedAnswer = answerCache.find(retrieval.queryEmbedding(), retrieval.chunkIds());
+            if (cachedAnswer != null) {
+                log.info("Answered from answer cache");
+                retrieval.timings().put("total", elapsedMillis(start));
+                return new ChatAnswer(cachedAnswer, retrieval.documents(), retrieval.timings());
+            }
 
             // Generate response using the chat model
-            String answer = chatModel.call(promptTemplate.create(promptParameters))
+            Prompt prompt = createPrompt(userQuery, retrieval.documents());
+            long generationStart = System.nanoTime();
+            String answer = callChatModel(prompt)
                     .getResult()
                     .getOutput()
-                    .getContent();
+                    .getText();
+            retrieval.timings().put("generation", elapsedMillis(generationStart));
 
-            log.info("Generated answer using RAG");
-            return answer;
+            answerCache.put(retrieval.queryEmbedding(), retrieval.chunkIds(), retrieval.fileNames(), answer);
 
+            retrieval.timings().put("total", elapsedMillis(start));
+            log.info("Generated answer using RAG from {} documents, timings (ms): {}", retrieval.documents().size(),
+                    retrieval.timings());
+            return new ChatAnswer(answer, retrieval.documents(), retrieval.timings());
+
+        } catch (RejectedExecutionException | GenerationTimeoutException e) {
+            // Overload, not failure: let the caller answer 503/504 rather than an apology
+            log.warn("Could not answer in time: {}", e.getMessage());
+            throw e;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while generating the answer", e);
         } catch (Exception e) {
             log.error("Error generating answer with RAG", e);
-            return "I encountered an error while trying to answer your question. Please try again later.";
+            return new ChatAnswer("I encountered an error while trying to answer your question. Please try again later.",
+                    List.of(), Map.of());
+        }
+    }
+
+    /**
+     * Retrieve eagerly and return the answer as a lazy token stream.
+     * Nothing is sent to the chat model until the stream is subscribed, and cancelling the subscription
+     * cancels the upstream generation. Only fully streamed answers are added to the answer cache.
+     */
+    public StreamingAnswer streamAnswer(String userQuery, Filter.Expression filter) {
+        return streamAnswer(userQuery, filter, FusionWeights.defaults());
+    }
+
+    /**
+     * Streaming variant of {@link #answer}; the timings map gains "generation" once the stream completes
+     */
+    public StreamingAnswer streamAnswer(String userQuery, Filter.Expression filter, FusionWeights weights) {
+        log.info("Processing streaming user query: {}", userQuery);
+        Retrieval retrieval = retrieve(userQuery, filter, weights);
+
+        String cachedAnswer = answerCache.find(retrieval.queryEmbedding(), retrieval.chunkIds());
+        if (cachedAnswer != null) {
+            log.info("Answered from answer cache");
+            return new StreamingAnswer(retrieval.documents(), Flux.just(cachedAnswer), retrieval.timings());
         }
+
+        StringBuilder answer = new StringBuilder();
+        Timer.Sample[] generation = new Timer.Sample[1];
+        Flux<String> tokens = chatModel.stream(createPrompt(userQuery, retrieval.documents()))
+                .timeout(llmTimeout)
+                .doOnSubscribe(subscription -> generation[0] = metrics.start())
+                .mapNotNull(response -> response.getResult() == null ? null : response.getResult().getOutput().getText())
+                .doOnNext(answer::append)
+                .doOnError(e -> metrics.stop(generation[0], StageMetrics.LLM, chatModelName, false))
+                // The client went away mid-answer: the generation neither failed nor completed
+                .doOnCancel(() -> metrics.stop(generation[0], StageMetrics.LLM, chatModelName, StageMetrics.CANCELLED))
+                .doOnComplete(() -> {
+                    long nanos = metrics.stop(generation[0], StageMetrics.LLM, chatModelName, true);
+                    retrieval.timings().put("generation", TimeUnit.NANOSECONDS.toMillis(nanos));
+                    answerCache.put(retrieval.queryEmbedding(), retrieval.chunkIds(),
+                            retrieval.fileNames(), answer.toString());
+                });
+        return new StreamingAnswer(retrieval.documents(), tokens, retrieval.timings());
     }
 
     /**
-     * Search for relevant documents using ONNX embeddings
+     * Call the chat model, giving up after {@code chat.llm.timeout}; the abandoned call is interrupted, which
+     * aborts its HTTP request
      */
-    private List<DocumentEntity> searchRelevantDocuments(String query) {
+    private ChatResponse callChatModel(Prompt prompt) throws InterruptedException {
+        Timer.Sample sample = metrics.start();
+        boolean success = false;
+        Future<ChatResponse> call = llmExecutor.submit(() -> chatModel.call(prompt));
         try {
-            // Generate embedding for the query
-            List<Float> queryEmbedding = onnxService.generateEmbedding(query);
-            String queryEmbeddingString = onnxService.embeddingToString(queryEmbedding);
-            
-            // Search for similar documents
-            return documentRepository.findSimilarDocumentsWithThreshold(
-                queryEmbeddingString, 0.8, 5);
-                
-        } catch (Exception e) {
-            log.error("Error searching for relevant documents", e);
-            return List.of();
+            ChatResponse response = call.get(llmTimeout.toNanos(), TimeUnit.NANOSECONDS);
+            success = true;
+            return response;
+        } catch (TimeoutException e) {
+            metrics.count("rag.llm.timeouts", 1, "model", chatModelName);
+            throw new GenerationTimeoutException("The chat model did not answer within " + llmTimeout);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Chat model call failed", e.getCause());
+        } finally {
+            call.cancel(true);
+            metrics.stop(sample, StageMetrics.LLM, chatModelName, success);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        llmExecutor.shutdownNow();
+    }
+
+    /**
+     * The chat model did not answer within {@code chat.llm.timeout}
+     */
+    public static class GenerationTimeoutException extends RuntimeException {
+        public GenerationTimeoutException(String message) {
+            super(message);
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Answer, the chunks it was generated from, and milliseconds spent per stage
+     * (embedding, retrieval, generation, total)
+     */
+    public record ChatAnswer(String answer, List<Document> sources, Map<String, Long> timings) {
+    }
+
+    /**
+     * Retrieved source chunks and the answer tokens generated from them
+     */
+    public record StreamingAnswer(List<Document> sources, Flux<String> tokens, Map<String, Long> timings) {
+    }
+
+    private record Retrieval(float[] queryEmbedding, List<Document> documents, SortedSet<String> chunkIds,
+                             Map<String, Long> timings) {
+
+        Set<String> fileNames() {
+            return documents.stream()
+                    .map(doc -> (String) doc.getMetadata().get(ChunkVectorStore.FILE_NAME))
+                    .filter(Objects::nonNull)
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    /**
+     * Search for relevant documents by vector and full-text rank; the query is embedded once and reused for
+     * the answer cache
+     */
+    private Retrieval retrieve(String userQuery, Filter.Expression filter, FusionWeights weights) {
+        Map<String, Long> timings = new ConcurrentHashMap<>();
+        long start = System.nanoTime();
+        float[] queryEmbedding = metrics.time(StageMetrics.QUERY_EMBEDDING,
+                Path.of(embeddingModelPath).getFileName().toString(), () -> embeddingModel.embed(userQuery));
+        timings.put("embedding", elapsedMillis(start));
+
+        SearchRequest.Builder searchRequest = SearchRequest.builder()
+                .query(userQuery)
+                .topK(5);
+        if (filter != null) {
+            searchRequest.filterExpression(filter);
+        }
+        long retrievalStart = System.nanoTime();
+        List<Document> relevantDocs = metrics.time(StageMetrics.RETRIEVAL, StageMetrics.NO_MODEL,
+                () -> vectorStore.hybridSearch(queryEmbedding, searchRequest.build(), weights));
+        timings.put("retrieval", elapsedMillis(retrievalStart));
+        SortedSet<String> chunkIds = relevantDocs.stream()
+                .map(Document::getId)
+                .collect(Collectors.toCollection(TreeSet::new));
+        return new Retrieval(queryEmbedding, relevantDocs, chunkIds, timings);
+    }
+
+    private static long elapsedMillis(long startNanos) {
+        return TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos);
+    }
+
+    private Prompt createPrompt(String userQuery, List<Document> documents) {
+        ContextAssembler.Context context = metrics.time(StageMetrics.CONTEXT_ASSEMBLY, StageMetrics.NO_MODEL,
+                () -> contextAssembler.assemble(documents));
+        metrics.count("rag.tokens", context.tokens(), "stage", "context", "model", chatModelName);
+        log.debug("Prompt context: {} tokens in {} passages from {} of {} chunks", context.tokens(),
+                context.passages(), context.chunksUsed(), documents.size());
+        PromptTemplate promptTemplate = new PromptTemplate(PROMPT_TEMPLATE);
+        Map<String, Object> promptParameters = new HashMap<>();
+        promptParameters.put("input", userQuery);
+        promptParameters.put("documents", context.text());
+        return promptTemplate.create(promptParameters);
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import com.example.PDF.chatbot.using.Spring.AI.repository.FusionWeights;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.VectorStore;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Vector store over ingested PDF chunks, selected with {@code vector.store.type}.
+ * Results carry the fileName, collection, chunkIndex, totalChunks and distance metadata keys, and the
+ * vectorRank / lexicalRank of hybrid search results.
+ */
+public interface ChunkVectorStore extends VectorStore {
+
+    String FILE_NAME = "fileName";
+    String COLLECTION = "collection";
+    String CHUNK_INDEX = "chunkIndex";
+    String TOTAL_CHUNKS = "totalChunks";
+    String DISTANCE = "distance";
+    String VECTOR_RANK = "vectorRank";
+    String LEXICAL_RANK = "lexicalRank";
+
+    /**
+     * Search with a query vector that was already computed by the caller
+     */
+    List<Document> similaritySearch(float[] queryEmbedding, SearchRequest request);
+
+    /**
+     * Search by vector and by the terms of the request query, fused by reciprocal rank; stores without
+     * full-text search answer with a vector search
+     */
+    default List<Document> hybridSearch(float[] queryEmbedding, SearchRequest request, FusionWeights weights) {
+        return similaritySearch(queryEmbedding, request);
+    }
+
+    /**
+     * Implementation and size of the store, for the admin API
+     */
+    Map<String, Object> getStatus();
+}
@@ -0,0 +1,254 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import ai.djl.huggingface.tokenizers.jni.CharSpan;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Builds the DOCUMENTS section of the prompt from retrieved chunks.
+ * Chunks of the same file with consecutive chunkIndex values are merged into one passage, and the text the
+ * chunker repeated at the start of the next chunk (the overlap) is kept only once. Passages are ordered by the
+ * retrieval rank of their best chunk and added until {@code chat.context.max-tokens} is reached; the passage
+ * that crosses the budget is cut at a token boundary.
+ * Tokens are counted with {@code chat.context.tokenizer.path} (the chat model's tokenizer.json) when set, and
+ * with the embedding model's tokenizer otherwise.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class ContextAssembler {
+
+    /**
+     * Shortest suffix / prefix match treated as chunk overlap rather than a coincidence
+     */
+    private static final int MIN_OVERLAP_CHARS = 16;
+
+    /**
+     * A passage is only cut to fit when at least this many tokens of budget are left
+     */
+    private static final int MIN_PARTIAL_TOKENS = 32;
+
+    private static final String SEPARATOR = "\n\n";
+
+    private final CustomOnnxService onnxService;
+
+    @Value("${chat.context.max-tokens:1500}")
+    private int maxTokens = 1500;
+
+    @Value("${chat.context.tokenizer.path:}")
+    private String tokenizerPath = "";
+
+    private HuggingFaceTokenizer chatTokenizer;
+
+    /**
+     * Prompt context and what went into it
+     *
+     * @param text       passages separated by blank lines
+     * @param tokens     token count of {@code text}
+     * @param passages   number of passages
+     * @param chunksUsed number of retrieved chunks that are (at least partly) in the context
+     */
+    public record Context(String text, int tokens, int passages, int chunksUsed) {
+    }
+
+    private record Passage(int lastIndex, int rank, List<Document> chunks) {
+    }
+
+    @PostConstruct
+    void initTokenizer() throws IOException {
+        if (tokenizerPath == null || tokenizerPath.isBlank()) {
+            return;
+        }
+        chatTokenizer = HuggingFaceTokenizer.builder()
+                .optTokenizerPath(CustomOnnxService.tokenizerDirectory(Path.of(tokenizerPath).toAbsolutePath()))
+                .optPadding(false)
+                .optTruncation(false)
+                .optAddSpecialTokens(false)
+                .build();
+        log.info("Counting prompt context tokens with {}", tokenizerPath);
+    }
+
+    /**
+     * @param documents retrieved chunks, most relevant first
+     */
+    public Context assemble(List<Document> documents) {
+        List<Passage> passages = mergeNeighbours(documents);
+        List<String> texts = new ArrayList<>(passages.size());
+        for (Passage passage : passages) {
+            texts.add(passageText(passage));
+        }
+        Encoding[] encodings = texts.isEmpty() ? new Encoding[0] : tokenize(texts);
+        int separatorTokens = texts.isEmpty() ? 0 : tokenize(List.of(SEPARATOR))[0].getIds().length;
+
+        StringBuilder context = new StringBuilder();
+        int tokens = 0;
+        int included = 0;
+        int chunksUsed = 0;
+        for (int i = 0; i < passages.size(); i++) {
+            int separator = included > 0 ? separatorTokens : 0;
+            int remaining = maxTokens - tokens - separator;
+            String text = texts.get(i);
+            int cost = encodings[i].getIds().length;
+            boolean cut = cost > remaining;
+            if (cut) {
+                if (remaining < MIN_PARTIAL_TOKENS) {
+                    break;
+                }
+                text = truncate(text, encodings[i], remaining);
+                cost = remaining;
+            }
+            if (included > 0) {
+                context.append(SEPARATOR);
+            }
+            context.append(text);
+            tokens += separator + cost;
+            included++;
+            chunksUsed += passages.get(i).chunks().size();
+            if (cut) {
+                break;
+            }
+        }
+        return new Context(context.toString(), tokens, included, chunksUsed);
+    }
+
+    /**
+     * Group chunks into runs of consecutive chunkIndex values per file, ordered by the best rank in each run.
+     * Chunks without a file name or index stay on their own.
+     */
+    private static List<Passage> mergeNeighbours(List<Document> documents) {
+        Map<String, List<Integer>> ranksByFile = new LinkedHashMap<>();
+        List<Passage> passages = new ArrayList<>();
+        for (int rank = 0; rank < documents.size(); rank++) {
+            Document document = documents.get(rank);
+            if (document.getMetadata().get(ChunkVectorStore.FILE_NAME) instanceof String fileName
+                    && document.getMetadata().get(ChunkVectorStore.CHUNK_INDEX) instanceof Number) {
+                ranksByFile.computeIfAbsent(fileName, f -> new ArrayList<>()).add(rank);
+            } else {
+                passages.add(new Passage(-1, rank, List.of(document)));
+            }
+        }
+        ranksByFile.forEach((fileName, ranks) -> {
+            ranks.sort(Comparator.comparingInt(rank -> chunkIndex(documents.get(rank))));
+            Passage current = null;
+            for (int rank : ranks) {
+                Document document = documents.get(rank);
+                int index = chunkIndex(document);
+                if (current != null && index == current.lastIndex()) {
+                    // The same chunk retrieved twice
+                    continue;
+                }
+                if (current != null && index == current.lastIndex() + 1) {
+                    current.chunks().add(document);
+                    current = new Passage(index, Math.min(current.rank(), rank), current.chunks());
+                } else {
+                    if (current != null) {
+                        passages.add(current);
+                    }
+                    List<Document> chunks = new ArrayList<>();
+                    chunks.add(document);
+                    current = new Passage(index, rank, chunks);
+                }
+            }
+            passages.add(current);
+        });
+        passages.sort(Comparator.comparingInt(Passage::rank));
+        return passages;
+    }
+
+    private static String passageText(Passage passage) {
+        StringBuilder text = new StringBuilder(Objects.requireNonNullElse(passage.chunks().get(0).getText(), ""));
+        for (int i = 1; i < passage.chunks().size(); i++) {
+            String next = Objects.requireNonNullElse(passage.chunks().get(i).getText(), "");
+            int overlap = overlap(text, next);
+            if (overlap == 0) {
+                text.append(' ').append(next);
+            } else {
+                text.append(next, overlap, next.length());
+            }
+        }
+        return text.toString();
+    }
+
+    /**
+     * Length of the longest suffix of {@code previous} that is also a prefix of {@code next} on word
+     * boundaries, or 0 when shorter than {@link #MIN_OVERLAP_CHARS}. Prefix function of next + \0 + tail of
+     * previous, so linear in the chunk length.
+     */
+    static int overlap(CharSequence previous, String next) {
+        int tailLength = Math.min(previous.length(), next.length());
+        int offset = previous.length() - tailLength;
+        int length = next.length() + 1 + tailLength;
+        int[] prefix = new int[length];
+        for (int i = 1; i < length; i++) {
+            char c = charAt(previous, next, offset, i);
+            int k = prefix[i - 1];
+            while (k > 0 && c != charAt(previous, next, offset, k)) {
+                k = prefix[k - 1];
+            }
+            if (c == charAt(previous, next, offset, k)) {
+                k++;
+            }
+            prefix[i] = k;
+        }
+        int k = prefix[length - 1];
+        while (k >= MIN_OVERLAP_CHARS) {
+            int start = previous.length() - k;
+            if ((start == 0 || previous.charAt(start - 1) == ' ') && (k == next.length() || next.charAt(k) == ' ')) {
+                return k;
+            }
+            k = prefix[k - 1];
+        }
+        return 0;
+    }
+
+    private static char charAt(CharSequence previous, String next, int offset, int i) {
+        if (i < next.length()) {
+            return next.charAt(i);
+        }
+        return i == next.length() ? '\0' : previous.charAt(offset + i - next.length() - 1);
+    }
+
+    /**
+     * Keep the first {@code tokens} tokens of the text
+     */
+    private static String truncate(String text, Encoding encoding, int tokens) {
+        CharSpan[] spans = encoding.getCharTokenSpans();
+        for (int i = Math.min(tokens, spans.length) - 1; i >= 0; i--) {
+            if (spans[i] != null) {
+                return text.substring(0, spans[i].getEnd());
+            }
+        }
+        return "";
+    }
+
+    private Encoding[] tokenize(List<String> texts) {
+        return chatTokenizer != null ? chatTokenizer.batchEncode(texts) : onnxService.tokenizeSegments(texts);
+    }
+
+    private static int chunkIndex(Document document) {
+        return ((Number) document.getMetadata().get(ChunkVectorStore.CHUNK_INDEX)).intValue();
+    }
+
+    @PreDestroy
+    void closeTokenizer() {
+        if (chatTokenizer != null) {
+            chatTokenizer.close();
+        }
+    }
+}
@@ -1,31 +1,117 @@
 package com.example.PDF.chatbot.using.Spring.AI.service;
 
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import ai.onnxruntime.*;
+import ai.djl.huggingface.tokenizers.Encoding;
 import ai.djl.huggingface.tokenizers.HuggingFaceTokenizer;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorDistance;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.beans.factory.annotation.Value;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.LongBuffer;
+import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
 
 @Service
 @Slf4j
 public class CustomOnnxService {
 
     private OrtEnvironment env;
-    private OrtSession session;
+    private OnnxSessionPool sessionPool;
     private HuggingFaceTokenizer tokenizer;
+    private HuggingFaceTokenizer segmentTokenizer;
+    private long[] prefixTokens;
+    private long[] suffixTokens;
     private boolean modelsLoaded = false;
+    private String modelVersion = "unloaded";
+
+    /**
+     * Input buffers of each session; a session runs one inference at a time, so its buffers are never shared.
+     * Per session rather than per thread, so virtual request threads do not each allocate direct buffers.
+     */
+    private final Map<OrtSession, InputBuffers> inputBuffers = new ConcurrentHashMap<>();
+
+    @Value("${onnx.embedding.batch-size:32}")
+    private int batchSize = 32;
+
+    @Value("${onnx.embedding.max-sequence-length:256}")
+    private int maxSequenceLength = 256;
+
+    @Value("${onnx.embedding.pooling:MEAN}")
+    private Pooling pooling = Pooling.MEAN;
+
+    /**
+     * Scale every embedding to unit length, as inner-product search requires
+     */
+    @Value("${onnx.embedding.normalize:true}")
+    private boolean normalize = true;
+
+    @Value("${vector.search.distance:inner-product}")
+    private String distanceMetric = "inner-product";
+
+    @Value("${onnx.model.path:onnx-output-folder/model.onnx}")
+    private String modelLocation = "onnx-output-folder/model.onnx";
+
+    @Value("${onnx.tokenizer.path:onnx-output-folder/tokenizer.json}")
+    private String tokenizerLocation = "onnx-output-folder/tokenizer.json";
+
+    @Value("${onnx.runtime.sessions:1}")
+    private int sessionCount = 1;
+
+    @Value("${onnx.runtime.intra-op-threads:0}")
+    private int intraOpThreads = 0;
+
+    @Value("${onnx.runtime.inter-op-threads:0}")
+    private int interOpThreads = 0;
+
+    @Value("${onnx.runtime.optimization-level:ALL_OPT}")
+    private OrtSession.SessionOptions.OptLevel optimizationLevel = OrtSession.SessionOptions.OptLevel.ALL_OPT;
+
+    @Value("${onnx.runtime.execution-mode:SEQUENTIAL}")
+    private OrtSession.SessionOptions.ExecutionMode executionMode = OrtSession.SessionOptions.ExecutionMode.SEQUENTIAL;
+
+    @Value("${onnx.runtime.memory-arena:true}")
+    private boolean memoryArena = true;
+
+    @Value("${onnx.runtime.warmup:true}")
+    private boolean warmup = true;
+
+    /**
+     * Longest wait of a query embedding for a free session; ingestion batches wait as long as it takes
+     */
+    @Value("${onnx.inference.max-wait:PT5S}")
+    private Duration inferenceMaxWait = Duration.ofSeconds(5);
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads = false;
     
     @Autowired
     private ChatClient chatClient;
 
-    public CustomOnnxService() {
+    @Autowired
+    private StageMetrics metrics = StageMetrics.noop();
+
+    /**
+     * Model file name, the model tag of inference and tokenization metrics
+     */
+    private String modelName = "unloaded";
+
+    @PostConstruct
+    public void init() {
         try {
             initializeModels();
         } catch (Exception e) {
@@ -36,100 +122,360 @@ public class CustomOnnxService {
 
     private void initializeModels() throws Exception {
         log.info("Initializing ONNX models...");
+        if (VectorDistance.from(distanceMetric) == VectorDistance.INNER_PRODUCT && !normalize) {
+            throw new IllegalStateException("vector.search.distance=inner-product requires onnx.embedding.normalize=true");
+        }
         // Use absolute paths to avoid issues with backslashes in Windows paths
-        Path modelPath = Paths.get("onnx-output-folder", "model.onnx").toAbsolutePath();
-        Path tokenizerPath = Paths.get("onnx-output-folder", "tokenizer.json").toAbsolutePath();
+        Path modelPath = Paths.get(modelLocation).toAbsolutePath();
+        Path tokenizerPath = Paths.get(tokenizerLocation).toAbsolutePath();
+        Path tokenizerDirectory = tokenizerDirectory(tokenizerPath);
         
         log.info("Model path: {}", modelPath);
         log.info("Tokenizer path: {}", tokenizerPath);
         
         if (modelPath.toFile().exists() && tokenizerPath.toFile().exists()) {
             env = OrtEnvironment.getEnvironment();
-            session = env.createSession(modelPath.toString(), new OrtSession.SessionOptions());
+            OnnxSessionPool.Settings settings = new OnnxSessionPool.Settings(intraOpThreads, interOpThreads,
+                    optimizationLevel, executionMode, memoryArena);
+            sessionPool = new OnnxSessionPool(env, modelPath.toString(), settings, sessionCount);
+            if (virtualThreads && sessionPool.size() >= Runtime.getRuntime().availableProcessors()) {
+                // A virtual thread in session.run pins its carrier; leave carriers for the other requests
+                log.warn("{} ONNX Runtime sessions with virtual threads on {} cores: concurrent inferences can pin "
+                        + "every carrier thread, lower onnx.runtime.sessions", sessionPool.size(),
+                        Runtime.getRuntime().availableProcessors());
+            }
             
-            // Use the tokenizer path as a string with forward slashes
-            String tokenizerPathStr = tokenizerPath.toString().replace("\\", "/");
-            log.info("Using tokenizer path: {}", tokenizerPathStr);
-            tokenizer = HuggingFaceTokenizer.newInstance(tokenizerPathStr);
+            // Padding is done per batch in generateEmbeddings, so keep the raw sequence lengths here
+            tokenizer = HuggingFaceTokenizer.builder()
+                    .optTokenizerPath(tokenizerDirectory)
+                    .optPadding(false)
+                    .optTruncation(true)
+                    .optMaxLength(maxSequenceLength)
+                    .build();
+            // Used by the chunker: exact token counts of text pieces, without [CLS]/[SEP] and without truncation
+            segmentTokenizer = HuggingFaceTokenizer.builder()
+                    .optTokenizerPath(tokenizerDirectory)
+                    .optPadding(false)
+                    .optTruncation(false)
+                    .optAddSpecialTokens(false)
+                    .build();
+            // The special tokens the template adds around a single sequence, e.g. [CLS] ... [SEP]
+            long[] empty = tokenizer.encode("").getIds();
+            prefixTokens = Arrays.copyOf(empty, empty.length > 0 ? 1 : 0);
+            suffixTokens = Arrays.copyOfRange(empty, prefixTokens.length, empty.length);
             
+            modelName = modelPath.getFileName().toString();
+            Gauge.builder("onnx.inference.in.flight", sessionPool, pool -> pool.size() - pool.available())
+                    .description("ONNX Runtime sessions currently running an inference")
+                    .tag("model", modelName)
+                    .register(metrics.getRegistry());
+            modelVersion = modelPath.getFileName() + "@" + Files.size(modelPath) + "-"
+                    + Files.getLastModifiedTime(modelPath).toMillis()
+                    + "+" + pooling.name().toLowerCase(Locale.ROOT) + (normalize ? "+l2" : "");
             modelsLoaded = true;
-            log.info("✅ ONNX model and tokenizer loaded.");
+            log.info("✅ ONNX model and tokenizer loaded ({} pooling, normalize {}).", pooling, normalize);
+            if (warmup) {
+                warmUp();
+            }
         } else {
             throw new IllegalStateException("ONNX model or tokenizer not found. Embedding generation will not work.");
         }
     }
 
-    public List<Float> generateEmbedding(String text) {
-        if (!modelsLoaded) {
-            throw new IllegalStateException("ONNX model or tokenizer not loaded. Cannot generate embeddings.");
+    /**
+     * Run the largest batch shape once on every session, so the first requests do not pay for memory arena
+     * growth, kernel selection and JIT compilation of the input path
+     */
+    private void warmUp() throws OrtException {
+        long started = System.nanoTime();
+        long filler = segmentTokenizer.encode("warm").getIds()[0];
+        long[] ids = new long[maxSequenceLength];
+        Arrays.fill(ids, filler);
+        System.arraycopy(prefixTokens, 0, ids, 0, prefixTokens.length);
+        System.arraycopy(suffixTokens, 0, ids, ids.length - suffixTokens.length, suffixTokens.length);
+        int rows = Math.max(1, batchSize);
+        List<long[]> inputIds = Collections.nCopies(rows, ids);
+        Integer[] order = new Integer[rows];
+        Arrays.fill(order, 0);
+        float[][] embeddings = new float[rows][];
+        for (OrtSession session : sessionPool.sessions()) {
+            runBatch(session, inputIds, order, 0, rows, embeddings);
+            runBatch(session, inputIds, order, 0, 1, embeddings);
         }
-        try {
-            // Tokenize input
-            var encoding = tokenizer.encode(text);
-            long[] inputIds = convertToLongArray(encoding.getIds());
-            long[] attentionMask = convertToLongArray(encoding.getAttentionMask());
+        log.info("Warmed up {} ONNX Runtime session(s) in {} ms", sessionPool.size(),
+                (System.nanoTime() - started) / 1_000_000);
+    }
 
-            // Prepare input tensors
-            OnnxTensor inputIdsTensor = OnnxTensor.createTensor(env, new long[][]{inputIds});
-            OnnxTensor attentionMaskTensor = OnnxTensor.createTensor(env, new long[][]{attentionMask});
+    /**
+     * The tokenizer builder reads tokenizer.json from a directory, while the setting may name the file itself
+     */
+    static Path tokenizerDirectory(Path tokenizerPath) {
+        return Files.isDirectory(tokenizerPath) ? tokenizerPath : tokenizerPath.getParent();
+    }
 
-            Map<String, OnnxTensor> inputs = new HashMap<>();
-            inputs.put("input_ids", inputIdsTensor);
-            inputs.put("attention_mask", attentionMaskTensor);
+    /**
+     * Maximum number of text tokens per input, excluding the special tokens added around it
+     */
+    public int getMaxContentTokens() {
+        return maxSequenceLength - prefixTokens.length - suffixTokens.length;
+    }
 
-            // Run inference
-            OrtSession.Result result = session.run(inputs);
+    /**
+     * Tokenize text pieces without special tokens and without truncation
+     */
+    public Encoding[] tokenizeSegments(List<String> texts) {
+        return metrics.time(StageMetrics.TOKENIZE, modelName, () -> segmentTokenizer.batchEncode(texts));
+    }
 
-            // Extract [CLS] embedding (first token)
-            float[][][] embeddings = (float[][][]) result.get(0).getValue();
-            float[] clsEmbedding = embeddings[0][0];
+    public float[] generateEmbedding(String text) {
+        return generateEmbeddings(List.of(text)).get(0);
+    }
 
-            List<Float> embeddingList = new ArrayList<>();
-            for (float f : clsEmbedding) embeddingList.add(f);
+    /**
+     * Generate embeddings for many texts with batched inference.
+     * Texts are sorted by token length and split into batches of {@code onnx.embedding.batch-size},
+     * each padded only to its own longest sequence. Results are returned in input order.
+     *
+     * @throws RejectedExecutionException when no session frees up within {@code onnx.inference.max-wait}
+     */
+    public List<float[]> generateEmbeddings(List<String> texts) {
+        if (!modelsLoaded) {
+            throw new IllegalStateException("ONNX model or tokenizer not loaded. Cannot generate embeddings.");
+        }
+        if (texts.isEmpty()) {
+            return List.of();
+        }
+        // Tokenize input
+        Encoding[] encodings = metrics.time(StageMetrics.TOKENIZE, modelName, () -> tokenizer.batchEncode(texts));
+        List<long[]> inputIds = new ArrayList<>(encodings.length);
+        for (Encoding encoding : encodings) {
+            inputIds.add(convertToLongArray(encoding.getIds()));
+        }
+        return runInference(inputIds, inferenceMaxWait);
+    }
+
+    /**
+     * Generate embeddings for already tokenized texts (as returned by {@link #tokenizeSegments}, at most
+     * {@link #getMaxContentTokens()} tokens each), so chunk text is not tokenized a second time
+     */
+    public List<float[]> generateEmbeddingsForTokens(List<long[]> tokenIds) {
+        if (!modelsLoaded) {
+            throw new IllegalStateException("ONNX model or tokenizer not loaded. Cannot generate embeddings.");
+        }
+        List<long[]> inputIds = new ArrayList<>(tokenIds.size());
+        for (long[] ids : tokenIds) {
+            if (ids.length > getMaxContentTokens()) {
+                throw new IllegalArgumentException("Input of " + ids.length + " tokens exceeds the maximum of "
+                        + getMaxContentTokens());
+            }
+            long[] withSpecialTokens = new long[prefixTokens.length + ids.length + suffixTokens.length];
+            System.arraycopy(prefixTokens, 0, withSpecialTokens, 0, prefixTokens.length);
+            System.arraycopy(ids, 0, withSpecialTokens, prefixTokens.length, ids.length);
+            System.arraycopy(suffixTokens, 0, withSpecialTokens, prefixTokens.length + ids.length, suffixTokens.length);
+            inputIds.add(withSpecialTokens);
+        }
+        return runInference(inputIds, null);
+    }
 
-            // Clean up
-            inputIdsTensor.close();
-            attentionMaskTensor.close();
-            result.close();
+    /**
+     * @param maxWait longest wait for a free session, or null to wait as long as it takes
+     */
+    private List<float[]> runInference(List<long[]> inputIds, Duration maxWait) {
+        if (inputIds.isEmpty()) {
+            return List.of();
+        }
+        try {
+            // Bucket by length so short chunks are not padded up to the longest one in the document
+            Integer[] order = new Integer[inputIds.size()];
+            for (int i = 0; i < order.length; i++) order[i] = i;
+            Arrays.sort(order, Comparator.comparingInt(i -> inputIds.get(i).length));
 
-            return embeddingList;
+            float[][] embeddings = new float[inputIds.size()][];
+            long tokens = 0;
+            for (long[] ids : inputIds) {
+                tokens += ids.length;
+            }
+            metrics.count("rag.tokens", tokens, "stage", StageMetrics.INFERENCE, "model", modelName);
+            int size = Math.max(1, batchSize);
+            for (int start = 0; start < order.length; start += size) {
+                int end = Math.min(start + size, order.length);
+                runBatch(inputIds, order, start, end, embeddings, maxWait);
+            }
+            return Arrays.asList(embeddings);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for an ONNX Runtime session", e);
+        } catch (RejectedExecutionException e) {
+            metrics.count("onnx.inference.rejected", 1, "model", modelName);
+            throw e;
         } catch (Exception e) {
             log.error("Error generating embedding with ONNX model", e);
             throw new RuntimeException("Failed to generate embedding with ONNX model", e);
         }
     }
 
-    public String embeddingToString(List<Float> embedding) {
-        StringBuilder sb = new StringBuilder();
-        sb.append("[");
-        for (int i = 0; i < embedding.size(); i++) {
-            if (i > 0) sb.append(",");
-            sb.append(embedding.get(i));
+    /**
+     * Run one batch on whichever pooled session is free first
+     */
+    private void runBatch(List<long[]> inputIds, Integer[] order, int start, int end,
+                          float[][] embeddings, Duration maxWait) throws OrtException, InterruptedException {
+        OrtSession session = maxWait == null ? sessionPool.borrow() : sessionPool.borrow(maxWait);
+        try {
+            runBatch(session, inputIds, order, start, end, embeddings);
+        } finally {
+            sessionPool.release(session);
         }
-        sb.append("]");
-        return sb.toString();
     }
 
-    public List<Float> stringToEmbedding(String embeddingString) {
-        List<Float> embedding = new ArrayList<>();
-        String clean = embeddingString.replaceAll("[\\[\\]]", "");
-        String[] parts = clean.split(",");
-        for (String part : parts) {
+    /**
+     * Run one padded [batch, seq] inference and write each row's pooled embedding back to its input position.
+     * Inputs are written into the session's reusable direct buffers, which ONNX Runtime reads without copying.
+     */
+    private void runBatch(OrtSession session, List<long[]> inputIds, Integer[] order, int start, int end,
+                          float[][] embeddings) throws OrtException {
+        int rows = end - start;
+        int seqLength = inputIds.get(order[end - 1]).length;
+        long[] shape = {rows, seqLength};
+
+        InputBuffers buffers = inputBuffers.computeIfAbsent(session, s -> new InputBuffers())
+                .ensureCapacity(rows * seqLength);
+        LongBuffer idsBuffer = buffers.inputIds;
+        LongBuffer maskBuffer = buffers.attentionMask;
+        for (int row = 0; row < rows; row++) {
+            long[] ids = inputIds.get(order[start + row]);
+            idsBuffer.put(ids);
+            for (int i = 0; i < ids.length; i++) maskBuffer.put(1L);
+            for (int i = ids.length; i < seqLength; i++) {
+                idsBuffer.put(0L);
+                maskBuffer.put(0L);
+            }
+        }
+        idsBuffer.flip();
+        maskBuffer.flip();
+
+        // Prepare input tensors
+        try (OnnxTensor inputIdsTensor = OnnxTensor.createTensor(env, idsBuffer, shape);
+             OnnxTensor attentionMaskTensor = OnnxTensor.createTensor(env, maskBuffer, shape)) {
+
+            Map<String, OnnxTensor> inputs = new HashMap<>();
+            inputs.put("input_ids", inputIdsTensor);
+            inputs.put("attention_mask", attentionMaskTensor);
+
+            // Run inference
+            Timer.Sample sample = metrics.start();
+            OrtSession.Result inference;
             try {
-                embedding.add(Float.parseFloat(part.trim()));
-            } catch (NumberFormatException e) {
-                embedding.add(0.0f);
+                inference = session.run(inputs);
+            } catch (OrtException | RuntimeException e) {
+                metrics.stop(sample, StageMetrics.INFERENCE, modelName, false);
+                throw e;
+            }
+            metrics.stop(sample, StageMetrics.INFERENCE, modelName, true);
+            try (OrtSession.Result result = inference) {
+                // Pool straight from the flat [batch, seq, hidden] output, without copying it into arrays
+                OnnxTensor hiddenStates = (OnnxTensor) result.get(0);
+                int hiddenSize = (int) hiddenStates.getInfo().getShape()[2];
+                FloatBuffer output = hiddenStates.getFloatBuffer();
+                for (int row = 0; row < rows; row++) {
+                    int tokens = inputIds.get(order[start + row]).length;
+                    float[] embedding = pool(output, row * seqLength * hiddenSize, tokens, hiddenSize);
+                    if (normalize) {
+                        normalize(embedding);
+                    }
+                    embeddings[order[start + row]] = embedding;
+                }
             }
         }
+    }
+
+    /**
+     * [CLS] pooling reads the first token's row. Mean pooling averages the rows of the {@code tokens} real
+     * tokens, which are the rows the attention mask is 1 for; padding rows are never read.
+     */
+    private float[] pool(FloatBuffer output, int rowOffset, int tokens, int hiddenSize) {
+        float[] embedding = new float[hiddenSize];
+        if (pooling == Pooling.CLS) {
+            output.get(rowOffset, embedding);
+            return embedding;
+        }
+        int position = rowOffset;
+        for (int token = 0; token < tokens; token++) {
+            for (int i = 0; i < hiddenSize; i++) {
+                embedding[i] += output.get(position++);
+            }
+        }
+        float scale = 1f / Math.max(1, tokens);
+        for (int i = 0; i < hiddenSize; i++) {
+            embedding[i] *= scale;
+        }
         return embedding;
     }
 
+    private static void normalize(float[] vector) {
+        double sumOfSquares = 0;
+        for (float value : vector) {
+            sumOfSquares += value * value;
+        }
+        if (sumOfSquares == 0) {
+            return;
+        }
+        float scale = (float) (1 / Math.sqrt(sumOfSquares));
+        for (int i = 0; i < vector.length; i++) {
+            vector[i] *= scale;
+        }
+    }
+
+    /**
+     * How one vector is taken from the token embeddings of a sequence ({@code onnx.embedding.pooling})
+     */
+    public enum Pooling {
+        /**
+         * The first token, [CLS]
+         */
+        CLS,
+        /**
+         * The mean over the real tokens, as sentence-transformers models are trained for
+         */
+        MEAN
+    }
+
+    /**
+     * Name, size and modification time of the loaded model file, and the pooling and normalization applied to
+     * its output: embeddings are only comparable when all of these match
+     */
+    public String getModelVersion() {
+        return modelVersion;
+    }
+
     public boolean isModelsLoaded() {
         return modelsLoaded;
     }
 
+    /**
+     * Session pool size and how many sessions are idle right now
+     */
+    public Map<String, Object> getRuntimeStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("modelVersion", modelVersion);
+        status.put("pooling", pooling);
+        status.put("normalize", normalize);
+        status.put("sessions", sessionPool != null ? sessionPool.size() : 0);
+        status.put("availableSessions", sessionPool != null ? sessionPool.available() : 0);
+        status.put("intraOpThreads", sessionPool != null ? sessionPool.intraOpThreads() : 0);
+        status.put("interOpThreads", interOpThreads);
+        status.put("optimizationLevel", optimizationLevel);
+        status.put("executionMode", executionMode);
+        status.put("memoryArena", memoryArena);
+        return status;
+    }
+
+    @PreDestroy
     public void cleanup() {
         log.info("Cleaning up ONNX service resources");
+        if (sessionPool != null) {
+            sessionPool.close();
+            inputBuffers.clear();
+        }
     }
     
     /**
@@ -180,4 +526,29 @@ public class CustomOnnxService {
             throw new RuntimeException("Failed to generate text with AI model", e);
         }
     }
+
+    /**
+     * Direct buffers for input_ids and attention_mask, grown on demand and reused across batches
+     */
+    private static final class InputBuffers {
+        private LongBuffer inputIds = allocate(0);
+        private LongBuffer attentionMask = allocate(0);
+
+        InputBuffers ensureCapacity(int elements) {
+            if (inputIds.capacity() < elements) {
+                int capacity = Math.max(elements, inputIds.capacity() * 2);
+                inputIds = allocate(capacity);
+                attentionMask = allocate(capacity);
+            }
+            inputIds.clear();
+            attentionMask.clear();
+            return this;
+        }
+
+        private static LongBuffer allocate(int elements) {
+            return ByteBuffer.allocateDirect(elements * Long.BYTES)
+                    .order(ByteOrder.nativeOrder())
+                    .asLongBuffer();
+        }
+    }
 }
\ No newline at end of file
@@ -0,0 +1,174 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.entity.IngestedFileEntity;
+import com.example.PDF.chatbot.using.Spring.AI.repository.ChunkFilter;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.FusionWeights;
+import com.example.PDF.chatbot.using.Spring.AI.repository.IngestedFileRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorSearchOptions;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.util.Assert;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.UUID;
+
+/**
+ * VectorStore over the document_chunks table written by PdfProcessingService.
+ * The query is embedded exactly once and searched through the ANN index, with fileName / collection /
+ * chunkIndex filters pushed down into the same SQL statement.
+ * Scores are 1 / (1 + distance), so SearchRequest similarity thresholds map onto a distance cut-off;
+ * hybrid search results are scored by reciprocal-rank fusion instead.
+ * While files are still embedded with another model version, their chunks are ranked separately by cosine
+ * distance until the migration has re-embedded them.
+ */
+@RequiredArgsConstructor
+@Slf4j
+public class DocumentChunkVectorStore implements ChunkVectorStore {
+
+    private final DocumentRepository documentRepository;
+    private final EmbeddingModel embeddingModel;
+    private final FullTextIndexService fullTextIndexService;
+    private final EmbeddingMigrationService migrationService;
+    private final CustomOnnxService onnxService;
+    private final IngestedFileRepository ingestedFileRepository;
+
+    @Override
+    public void add(List<Document> documents) {
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+        List<DocumentEntity> entities = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            Map<String, Object> metadata = document.getMetadata();
+            DocumentEntity entity = new DocumentEntity();
+            entity.setContent(document.getText());
+            entity.setFileName((String) metadata.get(FILE_NAME));
+            entity.setCollection((String) metadata.get(COLLECTION));
+            entity.setChunkIndex(metadata.get(CHUNK_INDEX) instanceof Number n ? n.intValue() : null);
+            entity.setTotalChunks(metadata.get(TOTAL_CHUNKS) instanceof Number n ? n.intValue() : null);
+            entity.setEmbeddingVector(embeddings.get(i));
+            entities.add(entity);
+        }
+        List<IngestedFileEntity> newFiles = newFiles(entities);
+        documentRepository.saveAll(entities);
+        ingestedFileRepository.saveAll(newFiles);
+    }
+
+    /**
+     * ingested_files rows with the current model version for files that have no chunks or row yet, so the
+     * migration does not take them for files ingested before model versions were recorded. Without a content
+     * hash, uploading such a file later re-ingests it.
+     */
+    private List<IngestedFileEntity> newFiles(List<DocumentEntity> entities) {
+        String modelVersion = onnxService.getModelVersion();
+        Map<String, IngestedFileEntity> files = new LinkedHashMap<>();
+        for (DocumentEntity entity : entities) {
+            String fileName = entity.getFileName();
+            if (fileName != null && !files.containsKey(fileName)) {
+                files.put(fileName, new IngestedFileEntity(fileName, entity.getCollection(), null, modelVersion,
+                        null, new Date()));
+            }
+        }
+        files.keySet().removeIf(fileName -> ingestedFileRepository.existsById(fileName)
+                || documentRepository.countByFileName(fileName) > 0);
+        return List.copyOf(files.values());
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        documentRepository.deleteAllById(idList.stream().map(UUID::fromString).toList());
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        Assert.notNull(filterExpression, "Filter expression must not be null");
+        int deleted = documentRepository.deleteByFilter(ChunkFilter.from(filterExpression));
+        log.info("Deleted {} document chunks matching {}", deleted, filterExpression);
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return similaritySearch(embeddingModel.embed(request.getQuery()), request);
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, SearchRequest request) {
+        Double maxDistance = request.getSimilarityThreshold() > 0
+                ? 1.0 / request.getSimilarityThreshold() - 1.0
+                : null;
+        List<DocumentEntity> results = documentRepository.searchSimilarDocuments(
+                queryEmbedding,
+                request.getTopK(),
+                maxDistance,
+                ChunkFilter.from(request.getFilterExpression()),
+                searchOptions());
+        return results.stream().map(DocumentChunkVectorStore::toDocument).toList();
+    }
+
+    /**
+     * Ranks by fused score; the similarity threshold only filters the vector candidates
+     */
+    @Override
+    public List<Document> hybridSearch(float[] queryEmbedding, SearchRequest request, FusionWeights weights) {
+        if (!fullTextIndexService.isReady()) {
+            return similaritySearch(queryEmbedding, request);
+        }
+        Double maxDistance = request.getSimilarityThreshold() > 0
+                ? 1.0 / request.getSimilarityThreshold() - 1.0
+                : null;
+        List<DocumentEntity> results = documentRepository.hybridSearch(
+                queryEmbedding,
+                request.getQuery(),
+                request.getTopK(),
+                maxDistance,
+                ChunkFilter.from(request.getFilterExpression()),
+                searchOptions(),
+                weights);
+        return results.stream().map(DocumentChunkVectorStore::toDocument).toList();
+    }
+
+    @Override
+    public Map<String, Object> getStatus() {
+        return Map.of("type", "pgvector", "chunks", documentRepository.count());
+    }
+
+    /**
+     * Split off the chunks of stale files only while there are any, so a migrated corpus keeps the plain index scan
+     */
+    private VectorSearchOptions searchOptions() {
+        return migrationService.hasStaleFiles()
+                ? VectorSearchOptions.defaults().withEmbeddingModel(onnxService.getModelVersion())
+                : VectorSearchOptions.defaults();
+    }
+
+    private static Document toDocument(DocumentEntity entity) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(FILE_NAME, entity.getFileName());
+        metadata.put(CHUNK_INDEX, entity.getChunkIndex());
+        metadata.put(TOTAL_CHUNKS, entity.getTotalChunks());
+        metadata.put(COLLECTION, entity.getCollection());
+        metadata.put(DISTANCE, entity.getDistance());
+        metadata.put(VECTOR_RANK, entity.getVectorRank());
+        metadata.put(LEXICAL_RANK, entity.getLexicalRank());
+        metadata.values().removeIf(Objects::isNull);
+        return Document.builder()
+                .id(entity.getId().toString())
+                .text(entity.getContent())
+                .metadata(metadata)
+                .score(entity.getFusedScore() != null
+                        ? entity.getFusedScore()
+                        : 1.0 / (1.0 + Math.max(0.0, entity.getDistance())))
+                .build();
+    }
+}
@@ -0,0 +1,9 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+/**
+ * Published after the document_chunks rows of a file have changed and the change is committed
+ *
+ * @param fileName the changed file, or null when all documents were cleared
+ */
+public record DocumentsChangedEvent(String fileName) {
+}
@@ -0,0 +1,250 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.entity.IngestedFileEntity;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.IngestedFileRepository;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Re-embeds stored chunks whose embeddings no longer match the loaded model, e.g. after changing
+ * {@code onnx.embedding.pooling} or {@code onnx.embedding.normalize}, or replacing the model file.
+ * A file is stale when it has chunks and its ingested_files.embedding_model differs from
+ * {@link CustomOnnxService#getModelVersion()}, or it has no ingested_files row at all.
+ * Its chunks are re-embedded from their stored text, without the PDF, and written back together with the new
+ * model version in one transaction per file, holding the file's lock so a concurrent re-ingestion or deletion
+ * of the same file waits. The vectors of a stale file may not be unit length, so under inner product the pgvector
+ * store ranks their chunks by cosine distance in a separate scan until they are migrated or re-ingested; see
+ * {@link #hasStaleFiles()}. Runs in the background at startup and on demand.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class EmbeddingMigrationService {
+
+    private final CustomOnnxService onnxService;
+    private final DocumentRepository documentRepository;
+    private final IngestedFileRepository ingestedFileRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final AnswerCache answerCache;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StageMetrics metrics;
+    private final FileLocks fileLocks;
+
+    private final ExecutorService migrationExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "embedding-migration");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${embedding.migration.on-startup:true}")
+    private boolean onStartup = true;
+
+    /**
+     * Chunks embedded per inference call
+     */
+    @Value("${embedding.migration.batch-size:64}")
+    private int batchSize = 64;
+
+    private volatile String status = "NOT_STARTED";
+    private volatile String currentFile;
+    private final AtomicInteger staleFiles = new AtomicInteger();
+    private final AtomicInteger migratedFiles = new AtomicInteger();
+    private final AtomicLong migratedChunks = new AtomicLong();
+    private volatile Set<String> staleFileNames = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Find the stale files, and re-embed them unless {@code embedding.migration.on-startup=false}
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void migrateOnStartup() {
+        if (onStartup) {
+            migrate();
+            return;
+        }
+        migrationExecutor.submit(() -> {
+            try {
+                findStaleFiles(onnxService.getModelVersion());
+            } catch (RuntimeException e) {
+                log.error("Could not list files embedded with another model version", e);
+            }
+        });
+    }
+
+    /**
+     * A file leaves the stale set once it is re-ingested with the current model or deleted
+     */
+    @EventListener
+    public void onDocumentsChanged(DocumentsChangedEvent event) {
+        if (event.fileName() == null) {
+            staleFileNames.clear();
+        } else if (staleFileNames.contains(event.fileName()) && !isStale(event.fileName())) {
+            staleFileNames.remove(event.fileName());
+        }
+    }
+
+    /**
+     * Re-embed all stale files in the background
+     */
+    public Future<?> migrate() {
+        return migrationExecutor.submit(this::runMigration);
+    }
+
+    /**
+     * Whether some file's chunks are still embedded with another model version
+     */
+    public boolean hasStaleFiles() {
+        return !staleFileNames.isEmpty();
+    }
+
+    public Map<String, Object> getStatus() {
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("status", status);
+        result.put("modelVersion", onnxService.getModelVersion());
+        result.put("staleFiles", staleFiles.get());
+        result.put("migratedFiles", migratedFiles.get());
+        result.put("migratedChunks", migratedChunks.get());
+        if (currentFile != null) {
+            result.put("currentFile", currentFile);
+        }
+        return result;
+    }
+
+    private void runMigration() {
+        String modelVersion = onnxService.getModelVersion();
+        try {
+            List<String> stale = findStaleFiles(modelVersion);
+            migratedFiles.set(0);
+            migratedChunks.set(0);
+            if (stale.isEmpty()) {
+                status = "UP_TO_DATE";
+                return;
+            }
+            status = "RUNNING";
+            log.info("Re-embedding {} file(s) with {}", stale.size(), modelVersion);
+            for (String fileName : stale) {
+                if (Thread.currentThread().isInterrupted()) {
+                    status = "CANCELLED";
+                    return;
+                }
+                currentFile = fileName;
+                fileLocks.lock(fileName);
+                try {
+                    migrateFile(fileName, modelVersion);
+                } finally {
+                    fileLocks.unlock(fileName);
+                }
+                staleFileNames.remove(fileName);
+                migratedFiles.incrementAndGet();
+            }
+            status = "DONE";
+            log.info("Re-embedded {} chunks of {} file(s)", migratedChunks.get(), stale.size());
+        } catch (CancellationException e) {
+            status = "CANCELLED";
+        } catch (RuntimeException e) {
+            status = "FAILED";
+            log.error("Embedding migration failed", e);
+        } finally {
+            currentFile = null;
+        }
+    }
+
+    private List<String> findStaleFiles(String modelVersion) {
+        List<String> stale = documentRepository.findFileNamesNotEmbeddedWith(modelVersion);
+        Set<String> names = ConcurrentHashMap.newKeySet();
+        names.addAll(stale);
+        staleFileNames = names;
+        staleFiles.set(stale.size());
+        return stale;
+    }
+
+    private boolean isStale(String fileName) {
+        String modelVersion = onnxService.getModelVersion();
+        boolean current = ingestedFileRepository.findById(fileName)
+                .map(file -> modelVersion.equals(file.getEmbeddingModel()))
+                .orElse(false);
+        return !current && documentRepository.countByFileName(fileName) > 0;
+    }
+
+    private void migrateFile(String fileName, String modelVersion) {
+        IngestedFileEntity file = ingestedFileRepository.findById(fileName).orElse(null);
+        if (file != null && modelVersion.equals(file.getEmbeddingModel())) {
+            // Re-ingested with the current model while waiting for the lock
+            return;
+        }
+        List<DocumentEntity> rows = documentRepository.findByFileName(fileName);
+        if (rows.isEmpty()) {
+            return;
+        }
+        List<UUID> ids = new ArrayList<>(rows.size());
+        List<float[]> embeddings = new ArrayList<>(rows.size());
+        int maxTokens = onnxService.getMaxContentTokens();
+        for (int start = 0; start < rows.size(); start += Math.max(1, batchSize)) {
+            List<DocumentEntity> batch = rows.subList(start, Math.min(rows.size(), start + Math.max(1, batchSize)));
+            List<String> texts = batch.stream()
+                    .map(row -> row.getContent() != null ? row.getContent() : "")
+                    .toList();
+            // Same input as ingestion: the chunk's tokens between the special tokens, cut to the model's length
+            List<long[]> tokenIds = new ArrayList<>(batch.size());
+            for (Encoding encoding : onnxService.tokenizeSegments(texts)) {
+                long[] tokens = encoding.getIds();
+                tokenIds.add(tokens.length > maxTokens ? Arrays.copyOf(tokens, maxTokens) : tokens);
+            }
+            embeddings.addAll(onnxService.generateEmbeddingsForTokens(tokenIds));
+            batch.forEach(row -> ids.add(row.getId()));
+        }
+        transactionTemplate.executeWithoutResult(status -> {
+            if (documentRepository.updateEmbeddings(ids, embeddings) == 0) {
+                // All rows deleted meanwhile (deleting through the vector store does not take file locks)
+                return;
+            }
+            IngestedFileEntity updated = ingestedFileRepository.findById(fileName)
+                    .orElseGet(() -> untrackedFile(fileName, rows));
+            updated.setEmbeddingModel(modelVersion);
+            ingestedFileRepository.save(updated);
+        });
+        migratedChunks.addAndGet(ids.size());
+        metrics.count("rag.embeddings.migrated", ids.size());
+        answerCache.invalidateFile(fileName);
+        eventPublisher.publishEvent(new DocumentsChangedEvent(fileName));
+        log.info("Re-embedded {} chunks of {}", ids.size(), fileName);
+    }
+
+    /**
+     * Row for a file ingested before ingested_files existed. Without a content hash, uploading the file again
+     * re-ingests it instead of skipping it as unchanged.
+     */
+    private static IngestedFileEntity untrackedFile(String fileName, List<DocumentEntity> rows) {
+        DocumentEntity first = rows.get(0);
+        return new IngestedFileEntity(fileName, first.getCollection(), null, null, rows.size(), first.getCreatedAt());
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        migrationExecutor.shutdownNow();
+    }
+}
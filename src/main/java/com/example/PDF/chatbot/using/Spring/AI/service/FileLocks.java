@@ -0,0 +1,95 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * One lock per file name, so the work that rewrites a file's chunks (ingestion, deletion, embedding migration)
+ * runs for one file at a time while other files proceed. A lock is dropped once nobody holds or waits for it.
+ * File locks share one store-wide lock that {@link #lockAll()} takes exclusively, so clearing the whole store
+ * waits for the files being rewritten and holds off new ones.
+ * <pre>
+ * fileLocks.lock(fileName);
+ * try {
+ *     ...
+ * } finally {
+ *     fileLocks.unlock(fileName);
+ * }
+ * </pre>
+ */
+@Component
+public class FileLocks {
+
+    private static final class Entry {
+        private final ReentrantLock lock = new ReentrantLock();
+        // Threads holding or waiting for the lock, guarded by the map's compute
+        private int users;
+    }
+
+    private final Map<String, Entry> locks = new ConcurrentHashMap<>();
+    private final ReentrantReadWriteLock storeLock = new ReentrantReadWriteLock();
+
+    /**
+     * Wait for the file's lock
+     *
+     * @throws CancellationException when interrupted while waiting; the interrupt flag stays set
+     */
+    public void lock(String fileName) {
+        try {
+            storeLock.readLock().lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the lock of " + fileName);
+        }
+        Entry entry = locks.compute(fileName, (name, existing) -> {
+            Entry result = existing != null ? existing : new Entry();
+            result.users++;
+            return result;
+        });
+        try {
+            entry.lock.lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            release(fileName, false);
+            storeLock.readLock().unlock();
+            throw new CancellationException("Interrupted while waiting for the lock of " + fileName);
+        }
+    }
+
+    public void unlock(String fileName) {
+        release(fileName, true);
+        storeLock.readLock().unlock();
+    }
+
+    /**
+     * Wait until no file is locked, and keep every file locked until {@link #unlockAll()}
+     *
+     * @throws CancellationException when interrupted while waiting; the interrupt flag stays set
+     */
+    public void lockAll() {
+        try {
+            storeLock.writeLock().lockInterruptibly();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for the locks of all files");
+        }
+    }
+
+    public void unlockAll() {
+        storeLock.writeLock().unlock();
+    }
+
+    private void release(String fileName, boolean held) {
+        locks.computeIfPresent(fileName, (name, entry) -> {
+            if (held) {
+                entry.lock.unlock();
+            }
+            return --entry.users == 0 ? null : entry;
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepositoryCustomImpl.FULL_TEXT_COLUMN;
+
+/**
+ * Maintains the full-text side of hybrid search: a generated tsvector column over document_chunks.content and
+ * a GIN index on it. Both are created in the background at startup; the column is recreated when the text
+ * search configuration changes. Hybrid searches fall back to vector search until the index is ready.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class FullTextIndexService {
+
+    public static final String INDEX_NAME = "document_chunks_content_tsv_idx";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "full-text-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${search.hybrid.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${search.hybrid.text-search-config:english}")
+    private String textSearchConfig = "english";
+
+    private volatile String status = "NOT_STARTED";
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexOnStartup() {
+        if (!enabled) {
+            status = "DISABLED";
+            return;
+        }
+        if (!isPostgres()) {
+            log.info("Skipping full-text index management: database is not PostgreSQL");
+            status = "UNSUPPORTED";
+            return;
+        }
+        if (!textSearchConfig.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalStateException("Invalid search.hybrid.text-search-config: " + textSearchConfig);
+        }
+        indexExecutor.submit(this::runIndexTask);
+    }
+
+    /**
+     * Whether hybrid searches can use the full-text column and index
+     */
+    public boolean isReady() {
+        return "READY".equals(status);
+    }
+
+    public Map<String, Object> getIndexStatus() {
+        return Map.of(
+                "index", INDEX_NAME,
+                "column", FULL_TEXT_COLUMN,
+                "textSearchConfig", textSearchConfig,
+                "status", status
+        );
+    }
+
+    private void runIndexTask() {
+        try {
+            ensureColumn();
+            status = "BUILDING";
+            List<Boolean> valid = jdbcTemplate.queryForList(
+                    "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?",
+                    Boolean.class, INDEX_NAME);
+            if (!valid.isEmpty() && !valid.get(0)) {
+                log.info("Full-text index {} is invalid, recreating", INDEX_NAME);
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+            }
+            jdbcTemplate.execute("CREATE INDEX CONCURRENTLY IF NOT EXISTS " + INDEX_NAME +
+                    " ON document_chunks USING gin (" + FULL_TEXT_COLUMN + ")");
+            status = "READY";
+            log.info("Full-text index {} is ready", INDEX_NAME);
+        } catch (DataAccessException e) {
+            status = "FAILED";
+            log.error("Failed to build full-text index {}", INDEX_NAME, e);
+        }
+    }
+
+    /**
+     * Add the generated column (existing rows are indexed by the table rewrite), replacing it when its
+     * expression uses another text search configuration
+     */
+    private void ensureColumn() {
+        List<String> expressions = jdbcTemplate.queryForList(
+                "SELECT pg_get_expr(d.adbin, d.adrelid) FROM pg_attrdef d " +
+                        "JOIN pg_attribute a ON a.attrelid = d.adrelid AND a.attnum = d.adnum " +
+                        "WHERE d.adrelid = 'document_chunks'::regclass AND a.attname = ?",
+                String.class, FULL_TEXT_COLUMN);
+        if (!expressions.isEmpty() && expressions.get(0).contains("'" + textSearchConfig + "'::regconfig")) {
+            return;
+        }
+        status = "INDEXING";
+        if (!expressions.isEmpty()) {
+            log.info("Text search configuration changed, recreating {}: {}", FULL_TEXT_COLUMN, expressions.get(0));
+            jdbcTemplate.execute("ALTER TABLE document_chunks DROP COLUMN IF EXISTS " + FULL_TEXT_COLUMN);
+        }
+        log.info("Adding full-text column {} to document_chunks", FULL_TEXT_COLUMN);
+        jdbcTemplate.execute("ALTER TABLE document_chunks ADD COLUMN " + FULL_TEXT_COLUMN + " tsvector " +
+                "GENERATED ALWAYS AS (to_tsvector('" + textSearchConfig + "'::regconfig, coalesce(content, ''))) STORED");
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (DataAccessException e) {
+            log.warn("Could not determine database type", e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,584 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.PriorityQueue;
+import java.util.Queue;
+import java.util.Set;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntPredicate;
+
+/**
+ * HNSW graph (Malkov and Yashunin) over float vectors with L2 distance.
+ * Vectors and the layer-0 adjacency lists, which hold almost all of the data, live off-heap in memory-mapped
+ * files that grow in fixed segments; the sparse upper layers are kept on the heap. Inserts are serialized by
+ * a lock. Searches take no lock: a search only follows nodes below the published size, and a node is published
+ * (by a volatile write) only after its vector and links are written. Deleted nodes stay in the graph for
+ * navigation and are excluded from results.
+ * {@link #snapshot()} forces the mapped files to disk and atomically writes a small metadata file; opening an
+ * existing directory maps the files and reads that metadata, so nothing is rebuilt or re-embedded on startup.
+ */
+@Slf4j
+public final class HnswIndex implements AutoCloseable {
+
+    private static final int MAGIC = 0x484E5357;
+    private static final int FORMAT_VERSION = 1;
+    private static final int SEGMENT_NODES = 1 << 16;
+
+    private static final String VECTORS_FILE = "vectors.bin";
+    private static final String GRAPH_FILE = "graph.bin";
+    private static final String META_FILE = "index.meta";
+
+    /**
+     * Result of a search: node id and squared L2 distance
+     */
+    public record Neighbor(int node, float distance) {
+    }
+
+    /**
+     * Size, entry point and top level, published together
+     */
+    private record Published(int size, int entryPoint, int maxLevel) {
+    }
+
+    private final Path directory;
+    private final int dimensions;
+    private final int maxNeighbors;
+    private final int maxNeighbors0;
+    private final int efConstruction;
+    private final double levelMultiplier;
+
+    private final MappedSegments vectors;
+    private final MappedSegments layer0;
+    private final Map<Long, int[]> upperLayers = new ConcurrentHashMap<>();
+    private final Set<Integer> deleted = ConcurrentHashMap.newKeySet();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private final SplittableRandom random = new SplittableRandom(42);
+    /**
+     * Idle visited sets; pooled rather than thread-local, since searches run on virtual threads that would each
+     * allocate their own set and drop it after one request
+     */
+    private final Queue<Visited> visitedPool = new ConcurrentLinkedQueue<>();
+
+    private volatile Published published = new Published(0, -1, -1);
+    private byte[] levels = new byte[0];
+    private boolean dirty;
+
+    /**
+     * Open the index stored in {@code directory}, or create an empty one
+     *
+     * @param m maximum links per node on the upper layers (twice as many on layer 0)
+     */
+    public HnswIndex(Path directory, int dimensions, int m, int efConstruction) throws IOException {
+        this.directory = directory;
+        this.dimensions = dimensions;
+        this.maxNeighbors = m;
+        this.maxNeighbors0 = 2 * m;
+        this.efConstruction = efConstruction;
+        this.levelMultiplier = 1 / Math.log(m);
+        Files.createDirectories(directory);
+        this.vectors = new MappedSegments(directory.resolve(VECTORS_FILE), (long) SEGMENT_NODES * dimensions * Float.BYTES);
+        this.layer0 = new MappedSegments(directory.resolve(GRAPH_FILE), (long) SEGMENT_NODES * (1 + maxNeighbors0) * Integer.BYTES);
+        try {
+            Path meta = directory.resolve(META_FILE);
+            if (Files.exists(meta)) {
+                load(meta);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    public int size() {
+        return published.size();
+    }
+
+    public int deletedCount() {
+        return deleted.size();
+    }
+
+    public int dimensions() {
+        return dimensions;
+    }
+
+    public boolean isDeleted(int node) {
+        return deleted.contains(node);
+    }
+
+    /**
+     * Insert a vector and link it into the graph
+     *
+     * @return the new node id; ids are assigned consecutively from 0
+     */
+    public int add(float[] vector) throws IOException {
+        if (vector.length != dimensions) {
+            throw new IllegalArgumentException("Expected " + dimensions + " dimensions, got " + vector.length);
+        }
+        writeLock.lock();
+        try {
+            Published current = published;
+            int node = current.size();
+            vectors.ensureCapacity(node / SEGMENT_NODES + 1);
+            layer0.ensureCapacity(node / SEGMENT_NODES + 1);
+            writeVector(node, vector);
+            setLayer0(node, new int[0]);
+            int level = randomLevel();
+            if (levels.length <= node) {
+                levels = Arrays.copyOf(levels, Math.max(node + 1, levels.length * 2));
+            }
+            levels[node] = (byte) level;
+            dirty = true;
+
+            if (current.entryPoint() < 0) {
+                published = new Published(node + 1, node, level);
+                return node;
+            }
+
+            int entryPoint = current.entryPoint();
+            for (int layer = current.maxLevel(); layer > level; layer--) {
+                entryPoint = greedyClosest(vector, entryPoint, layer, node);
+            }
+            for (int layer = Math.min(level, current.maxLevel()); layer >= 0; layer--) {
+                List<Neighbor> candidates = searchLayer(vector, entryPoint, efConstruction, layer, node, n -> true);
+                int[] links = selectNeighbors(candidates, layer == 0 ? maxNeighbors0 : maxNeighbors);
+                setNeighbors(node, layer, links);
+                for (int link : links) {
+                    addLink(link, node, layer);
+                }
+                entryPoint = candidates.get(0).node();
+            }
+            published = level > current.maxLevel()
+                    ? new Published(node + 1, node, level)
+                    : new Published(node + 1, current.entryPoint(), current.maxLevel());
+            return node;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Exclude a node from search results
+     */
+    public void delete(int node) {
+        writeLock.lock();
+        try {
+            if (node >= 0 && node < size() && deleted.add(node)) {
+                dirty = true;
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * The {@code k} nearest live nodes accepted by {@code filter}, closest first.
+     * A selective filter makes the search visit more of the graph before it has {@code k} results.
+     */
+    public List<Neighbor> search(float[] query, int k, int ef, IntPredicate filter) {
+        Published current = published;
+        if (current.entryPoint() < 0 || k <= 0) {
+            return List.of();
+        }
+        int entryPoint = current.entryPoint();
+        for (int layer = current.maxLevel(); layer > 0; layer--) {
+            entryPoint = greedyClosest(query, entryPoint, layer, current.size());
+        }
+        List<Neighbor> results = searchLayer(query, entryPoint, Math.max(ef, k), 0, current.size(),
+                node -> !deleted.contains(node) && filter.test(node));
+        return results.size() > k ? results.subList(0, k) : results;
+    }
+
+    /**
+     * Copy of a stored vector
+     */
+    public float[] vector(int node) {
+        float[] vector = new float[dimensions];
+        ByteBuffer segment = vectors.segment(node / SEGMENT_NODES);
+        int base = (node % SEGMENT_NODES) * dimensions * Float.BYTES;
+        for (int d = 0; d < dimensions; d++) {
+            vector[d] = segment.getFloat(base + d * Float.BYTES);
+        }
+        return vector;
+    }
+
+    /**
+     * Flush the mapped files and write the metadata that makes them loadable. Searches continue meanwhile;
+     * inserts wait.
+     */
+    public void snapshot() throws IOException {
+        writeLock.lock();
+        try {
+            if (!dirty) {
+                return;
+            }
+            vectors.force();
+            layer0.force();
+            Published current = published;
+            Path temp = directory.resolve(META_FILE + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+                out.writeInt(MAGIC);
+                out.writeInt(FORMAT_VERSION);
+                out.writeInt(dimensions);
+                out.writeInt(maxNeighbors);
+                out.writeInt(current.size());
+                out.writeInt(current.entryPoint());
+                out.writeInt(current.maxLevel());
+                out.write(levels, 0, current.size());
+                out.writeInt(deleted.size());
+                for (int node : deleted) {
+                    out.writeInt(node);
+                }
+                out.writeInt(upperLayers.size());
+                for (Map.Entry<Long, int[]> entry : upperLayers.entrySet()) {
+                    out.writeLong(entry.getKey());
+                    out.writeInt(entry.getValue().length);
+                    for (int link : entry.getValue()) {
+                        out.writeInt(link);
+                    }
+                }
+            }
+            Files.move(temp, directory.resolve(META_FILE), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+            log.debug("Snapshot of HNSW index in {}: {} nodes, {} deleted", directory, current.size(), deleted.size());
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void load(Path meta) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(meta)))) {
+            if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+                throw new IOException("Not an HNSW index metadata file: " + meta);
+            }
+            int storedDimensions = in.readInt();
+            int storedM = in.readInt();
+            if (storedDimensions != dimensions || storedM != maxNeighbors) {
+                throw new IOException("Index in " + directory + " has " + storedDimensions + " dimensions and m="
+                        + storedM + ", expected " + dimensions + " and m=" + maxNeighbors);
+            }
+            int size = in.readInt();
+            int entryPoint = in.readInt();
+            int maxLevel = in.readInt();
+            levels = new byte[Math.max(size, 16)];
+            in.readFully(levels, 0, size);
+            int deletedCount = in.readInt();
+            for (int i = 0; i < deletedCount; i++) {
+                deleted.add(in.readInt());
+            }
+            int upperCount = in.readInt();
+            for (int i = 0; i < upperCount; i++) {
+                long key = in.readLong();
+                int[] links = new int[in.readInt()];
+                for (int j = 0; j < links.length; j++) {
+                    links[j] = in.readInt();
+                }
+                upperLayers.put(key, links);
+            }
+            int segments = (size + SEGMENT_NODES - 1) / SEGMENT_NODES;
+            vectors.ensureCapacity(segments);
+            layer0.ensureCapacity(segments);
+            published = new Published(size, entryPoint, maxLevel);
+            log.info("Loaded HNSW index from {}: {} nodes, {} deleted", directory, size, deletedCount);
+        }
+    }
+
+    private int randomLevel() {
+        double uniform = 1.0 - random.nextDouble();
+        return Math.min(Byte.MAX_VALUE, (int) (-Math.log(uniform) * levelMultiplier));
+    }
+
+    private int greedyClosest(float[] query, int entryPoint, int layer, int visibleSize) {
+        int closest = entryPoint;
+        float closestDistance = distance(query, closest);
+        boolean improved = true;
+        while (improved) {
+            improved = false;
+            for (int neighbor : neighbors(closest, layer)) {
+                if (neighbor >= visibleSize) {
+                    continue;
+                }
+                float d = distance(query, neighbor);
+                if (d < closestDistance) {
+                    closest = neighbor;
+                    closestDistance = d;
+                    improved = true;
+                }
+            }
+        }
+        return closest;
+    }
+
+    /**
+     * Best-first search of one layer. Every reachable node is explored as usual, but only nodes accepted by
+     * {@code accept} enter the result list, which is returned closest first.
+     */
+    private List<Neighbor> searchLayer(float[] query, int entryPoint, int ef, int layer, int visibleSize,
+                                       IntPredicate accept) {
+        Visited seen = Objects.requireNonNullElseGet(visitedPool.poll(), Visited::new).reset(visibleSize);
+        try {
+            return searchLayer(query, entryPoint, ef, layer, visibleSize, accept, seen);
+        } finally {
+            visitedPool.offer(seen);
+        }
+    }
+
+    private List<Neighbor> searchLayer(float[] query, int entryPoint, int ef, int layer, int visibleSize,
+                                       IntPredicate accept, Visited seen) {
+        PriorityQueue<Neighbor> candidates = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::distance));
+        PriorityQueue<Neighbor> results = new PriorityQueue<>(Comparator.comparingDouble(Neighbor::distance).reversed());
+
+        Neighbor start = new Neighbor(entryPoint, distance(query, entryPoint));
+        seen.add(entryPoint);
+        candidates.add(start);
+        if (accept.test(entryPoint)) {
+            results.add(start);
+        }
+        while (!candidates.isEmpty()) {
+            Neighbor current = candidates.poll();
+            if (results.size() >= ef && current.distance() > results.peek().distance()) {
+                break;
+            }
+            for (int neighbor : neighbors(current.node(), layer)) {
+                if (neighbor >= visibleSize || !seen.add(neighbor)) {
+                    continue;
+                }
+                float d = distance(query, neighbor);
+                if (results.size() < ef || d < results.peek().distance()) {
+                    candidates.add(new Neighbor(neighbor, d));
+                    if (accept.test(neighbor)) {
+                        results.add(new Neighbor(neighbor, d));
+                        if (results.size() > ef) {
+                            results.poll();
+                        }
+                    }
+                }
+            }
+        }
+        List<Neighbor> ordered = new ArrayList<>(results);
+        ordered.sort(Comparator.comparingDouble(Neighbor::distance));
+        return ordered;
+    }
+
+    /**
+     * Neighbor selection heuristic: keep a candidate only if it is closer to the base node than to every
+     * neighbor kept so far, which spreads links across directions instead of into one cluster
+     */
+    private int[] selectNeighbors(List<Neighbor> candidates, int max) {
+        List<Neighbor> sorted = new ArrayList<>(candidates);
+        sorted.sort(Comparator.comparingDouble(Neighbor::distance));
+        List<float[]> keptVectors = new ArrayList<>(max);
+        int[] kept = new int[Math.min(max, sorted.size())];
+        int count = 0;
+        for (Neighbor candidate : sorted) {
+            if (count == kept.length) {
+                break;
+            }
+            float[] vector = vector(candidate.node());
+            boolean diverse = true;
+            for (float[] other : keptVectors) {
+                if (distance(vector, other) < candidate.distance()) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                kept[count++] = candidate.node();
+                keptVectors.add(vector);
+            }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    private void addLink(int node, int link, int layer) {
+        int[] current = neighbors(node, layer);
+        int max = layer == 0 ? maxNeighbors0 : maxNeighbors;
+        int[] updated;
+        if (current.length < max) {
+            updated = Arrays.copyOf(current, current.length + 1);
+            updated[current.length] = link;
+        } else {
+            float[] base = vector(node);
+            List<Neighbor> candidates = new ArrayList<>(current.length + 1);
+            for (int existing : current) {
+                candidates.add(new Neighbor(existing, distance(base, existing)));
+            }
+            candidates.add(new Neighbor(link, distance(base, link)));
+            updated = selectNeighbors(candidates, max);
+        }
+        setNeighbors(node, layer, updated);
+    }
+
+    private int[] neighbors(int node, int layer) {
+        if (layer > 0) {
+            int[] links = upperLayers.get(upperKey(node, layer));
+            return links != null ? links : new int[0];
+        }
+        ByteBuffer segment = layer0.segment(node / SEGMENT_NODES);
+        int base = (node % SEGMENT_NODES) * (1 + maxNeighbors0) * Integer.BYTES;
+        int count = Math.min(segment.getInt(base), maxNeighbors0);
+        int[] links = new int[count];
+        for (int i = 0; i < count; i++) {
+            links[i] = segment.getInt(base + (1 + i) * Integer.BYTES);
+        }
+        return links;
+    }
+
+    private void setNeighbors(int node, int layer, int[] links) {
+        if (layer > 0) {
+            upperLayers.put(upperKey(node, layer), links);
+        } else {
+            setLayer0(node, links);
+        }
+    }
+
+    /**
+     * Links are written before the count, so a concurrent reader sees either the old count or a list whose
+     * entries are all valid node ids
+     */
+    private void setLayer0(int node, int[] links) {
+        ByteBuffer segment = layer0.segment(node / SEGMENT_NODES);
+        int base = (node % SEGMENT_NODES) * (1 + maxNeighbors0) * Integer.BYTES;
+        for (int i = 0; i < links.length; i++) {
+            segment.putInt(base + (1 + i) * Integer.BYTES, links[i]);
+        }
+        segment.putInt(base, links.length);
+    }
+
+    private void writeVector(int node, float[] vector) {
+        ByteBuffer segment = vectors.segment(node / SEGMENT_NODES);
+        int base = (node % SEGMENT_NODES) * dimensions * Float.BYTES;
+        for (int d = 0; d < dimensions; d++) {
+            segment.putFloat(base + d * Float.BYTES, vector[d]);
+        }
+    }
+
+    private static long upperKey(int node, int layer) {
+        return ((long) node << 8) | layer;
+    }
+
+    private float distance(float[] query, int node) {
+        ByteBuffer segment = vectors.segment(node / SEGMENT_NODES);
+        int base = (node % SEGMENT_NODES) * dimensions * Float.BYTES;
+        float sum = 0;
+        for (int d = 0; d < dimensions; d++) {
+            float diff = query[d] - segment.getFloat(base + d * Float.BYTES);
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    private static float distance(float[] a, float[] b) {
+        float sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            float diff = a[d] - b[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            vectors.close();
+        } finally {
+            layer0.close();
+        }
+    }
+
+    /**
+     * Visited marks stamped with a generation number, so they are cleared in O(1) between searches
+     */
+    private static final class Visited {
+        private int[] marks = new int[0];
+        private int generation;
+
+        Visited reset(int size) {
+            if (marks.length < size) {
+                marks = new int[Math.max(size, marks.length * 2)];
+                generation = 0;
+            }
+            if (++generation == 0) {
+                Arrays.fill(marks, 0);
+                generation = 1;
+            }
+            return this;
+        }
+
+        boolean add(int node) {
+            if (marks[node] == generation) {
+                return false;
+            }
+            marks[node] = generation;
+            return true;
+        }
+    }
+
+    /**
+     * A file mapped in fixed-size segments, extended one segment at a time. The segment array is replaced,
+     * never modified, so readers need no lock.
+     */
+    private static final class MappedSegments implements AutoCloseable {
+
+        private final FileChannel channel;
+        private final long segmentBytes;
+        private volatile MappedByteBuffer[] segments = new MappedByteBuffer[0];
+
+        MappedSegments(Path file, long segmentBytes) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            this.segmentBytes = segmentBytes;
+        }
+
+        void ensureCapacity(int count) throws IOException {
+            MappedByteBuffer[] current = segments;
+            if (current.length >= count) {
+                return;
+            }
+            MappedByteBuffer[] grown = Arrays.copyOf(current, count);
+            for (int i = current.length; i < count; i++) {
+                grown[i] = channel.map(FileChannel.MapMode.READ_WRITE, i * segmentBytes, segmentBytes);
+                grown[i].order(ByteOrder.LITTLE_ENDIAN);
+            }
+            segments = grown;
+        }
+
+        ByteBuffer segment(int index) {
+            return segments[index];
+        }
+
+        void force() {
+            for (MappedByteBuffer segment : segments) {
+                segment.force();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,678 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.repository.ChunkFilter;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorDistance;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.util.Assert;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+/**
+ * In-process vector store: an {@link HnswIndex} over memory-mapped files plus a side file with each chunk's
+ * id, metadata and text, so a search needs no database round trip.
+ * document_chunks remains the source of truth when a repository is given: files are re-synchronized from it
+ * (with their stored vectors, nothing is re-embedded) when ingestion publishes a {@link DocumentsChangedEvent},
+ * and the whole store is reconciled against it at startup. Without a repository the store is self-contained,
+ * which also makes the retrieval path testable without a database.
+ * The index and side file are snapshotted every {@code vector.store.hnsw.snapshot-interval} and on shutdown;
+ * chunks added after the last snapshot are recovered by the startup reconciliation. Deleted and replaced chunks
+ * stay in the graph as tombstones until they make up {@code compactRatio} of it; the next snapshot then
+ * rebuilds the store from its live chunks instead.
+ */
+@Slf4j
+public final class HnswVectorStore implements ChunkVectorStore, AutoCloseable {
+
+    private static final String CHUNKS_FILE = "chunks.dat";
+    private static final String COMPACTING_SUFFIX = ".compacting";
+    private static final String RETIRED_SUFFIX = ".retired";
+    private static final int NULL_INT = Integer.MIN_VALUE;
+
+    /**
+     * Metadata of one node, and where its text is in the side file
+     */
+    private record StoredChunk(UUID id, String fileName, String collection, Integer chunkIndex,
+                               Integer totalChunks, long textOffset, int textLength) {
+
+        Object get(String key) {
+            return switch (key) {
+                case FILE_NAME -> fileName;
+                case COLLECTION -> collection;
+                case CHUNK_INDEX -> chunkIndex;
+                case TOTAL_CHUNKS -> totalChunks;
+                default -> null;
+            };
+        }
+    }
+
+    private final DocumentRepository documentRepository;
+    private final EmbeddingModel embeddingModel;
+    private final Path directory;
+    private final int dimensions;
+    private final int m;
+    private final int efConstruction;
+    private final int efSearch;
+    private final VectorDistance distance;
+    private final double compactRatio;
+    private final ReentrantLock writeLock = new ReentrantLock();
+    // Searches hold the read lock, so compaction can swap the files underneath them
+    private final ReentrantReadWriteLock swapLock = new ReentrantReadWriteLock();
+    private final Map<UUID, Integer> nodesById = new ConcurrentHashMap<>();
+    private final Map<String, Set<Integer>> nodesByFile = new HashMap<>();
+    private final ScheduledExecutorService snapshotExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "hnsw-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private volatile HnswIndex index;
+    private volatile FileChannel chunkFile;
+    private volatile StoredChunk[] chunks = new StoredChunk[1024];
+
+    /**
+     * @param documentRepository source of truth to synchronize from, or null for a self-contained store
+     * @param distance           distance reported with the results; the graph itself is built on L2, which
+     *                           ranks unit vectors exactly like inner product
+     * @param compactRatio       share of tombstones in the graph that triggers a compaction, 0 to never compact
+     */
+    public HnswVectorStore(DocumentRepository documentRepository, EmbeddingModel embeddingModel, Path directory,
+                           int m, int efConstruction, int efSearch, VectorDistance distance,
+                           Duration snapshotInterval, double compactRatio) throws IOException {
+        this.documentRepository = documentRepository;
+        this.embeddingModel = embeddingModel;
+        this.directory = directory;
+        this.dimensions = embeddingModel.dimensions();
+        this.m = m;
+        this.efConstruction = efConstruction;
+        this.efSearch = efSearch;
+        this.distance = distance;
+        this.compactRatio = compactRatio;
+        recoverCompaction();
+        open();
+        long interval = snapshotInterval.toMillis();
+        snapshotExecutor.scheduleWithFixedDelay(this::snapshotQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Embed and index the documents; with a repository they are written to document_chunks first, so the
+     * node and the row share an id
+     */
+    @Override
+    public void add(List<Document> documents) {
+        List<float[]> embeddings = embeddingModel.embed(documents.stream().map(Document::getText).toList());
+        List<DocumentEntity> entities = new ArrayList<>(documents.size());
+        for (int i = 0; i < documents.size(); i++) {
+            Document document = documents.get(i);
+            Map<String, Object> metadata = document.getMetadata();
+            DocumentEntity entity = new DocumentEntity();
+            entity.setId(documentRepository == null ? parseId(document.getId()) : null);
+            entity.setContent(document.getText());
+            entity.setFileName((String) metadata.get(FILE_NAME));
+            entity.setCollection((String) metadata.get(COLLECTION));
+            entity.setChunkIndex(metadata.get(CHUNK_INDEX) instanceof Number n ? n.intValue() : null);
+            entity.setTotalChunks(metadata.get(TOTAL_CHUNKS) instanceof Number n ? n.intValue() : null);
+            entity.setEmbeddingVector(embeddings.get(i));
+            entities.add(entity);
+        }
+        if (documentRepository != null) {
+            entities = documentRepository.saveAll(entities);
+        }
+        writeLock.lock();
+        try {
+            for (DocumentEntity entity : entities) {
+                insert(entity);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to add documents to the HNSW store", e);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(List<String> idList) {
+        List<UUID> ids = idList.stream().map(UUID::fromString).toList();
+        if (documentRepository != null) {
+            documentRepository.deleteAllById(ids);
+        }
+        writeLock.lock();
+        try {
+            for (UUID id : ids) {
+                Integer node = nodesById.get(id);
+                if (node != null) {
+                    deleteNode(node);
+                }
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public void delete(Filter.Expression filterExpression) {
+        // MetadataFilter.from(null) accepts every node
+        Assert.notNull(filterExpression, "Filter expression must not be null");
+        if (documentRepository != null) {
+            documentRepository.deleteByFilter(ChunkFilter.from(filterExpression));
+        }
+        Predicate<Function<String, Object>> filter = MetadataFilter.from(filterExpression);
+        writeLock.lock();
+        try {
+            int deleted = 0;
+            for (int node : List.copyOf(nodesById.values())) {
+                StoredChunk chunk = chunks[node];
+                if (filter.test(chunk::get)) {
+                    deleteNode(node);
+                    deleted++;
+                }
+            }
+            log.info("Deleted {} chunks matching {} from the HNSW store", deleted, filterExpression);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    @Override
+    public List<Document> similaritySearch(SearchRequest request) {
+        return similaritySearch(embeddingModel.embed(request.getQuery()), request);
+    }
+
+    @Override
+    public List<Document> similaritySearch(float[] queryEmbedding, SearchRequest request) {
+        swapLock.readLock().lock();
+        try {
+            return search(queryEmbedding, request);
+        } finally {
+            swapLock.readLock().unlock();
+        }
+    }
+
+    private List<Document> search(float[] queryEmbedding, SearchRequest request) {
+        Predicate<Function<String, Object>> filter = MetadataFilter.from(request.getFilterExpression());
+        // publishChunk writes chunks before the index publishes the node, so reading chunks after the index
+        // (per node in the filter, and once the search returns) always finds the chunk of a node it reached
+        List<HnswIndex.Neighbor> neighbors = index.search(queryEmbedding, request.getTopK(), efSearch,
+                node -> filter.test(chunks[node]::get));
+        StoredChunk[] current = chunks;
+        Double maxDistance = request.getSimilarityThreshold() > 0
+                ? 1.0 / request.getSimilarityThreshold() - 1.0
+                : null;
+        List<Document> documents = new ArrayList<>(neighbors.size());
+        for (HnswIndex.Neighbor neighbor : neighbors) {
+            // For unit vectors, 1 - a·b is half the squared L2 distance
+            double distance = this.distance == VectorDistance.INNER_PRODUCT
+                    ? neighbor.distance() / 2
+                    : Math.sqrt(neighbor.distance());
+            if (maxDistance != null && distance >= maxDistance) {
+                break;
+            }
+            documents.add(toDocument(current[neighbor.node()], distance));
+        }
+        return documents;
+    }
+
+    @Override
+    public Map<String, Object> getStatus() {
+        return Map.of(
+                "type", "hnsw",
+                "nodes", index.size(),
+                "deleted", index.deletedCount(),
+                "chunks", nodesById.size()
+        );
+    }
+
+    /**
+     * Bring the store in line with document_chunks in the background: files whose set of row ids differs
+     * from the store are re-synchronized, files that no longer exist are deleted
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcileOnStartup() {
+        if (documentRepository == null) {
+            return;
+        }
+        snapshotExecutor.execute(() -> {
+            try {
+                Map<String, Set<UUID>> stored = documentRepository.findChunkFileNames().entrySet().stream()
+                        .collect(Collectors.groupingBy(Map.Entry::getValue,
+                                Collectors.mapping(Map.Entry::getKey, Collectors.toSet())));
+                Set<String> files = new HashSet<>(stored.keySet());
+                synchronized (nodesByFile) {
+                    files.addAll(nodesByFile.keySet());
+                }
+                int synced = 0;
+                for (String fileName : files) {
+                    if (!stored.getOrDefault(fileName, Set.of()).equals(idsOf(fileName))) {
+                        syncFile(fileName);
+                        synced++;
+                    }
+                }
+                log.info("HNSW store reconciled with document_chunks: {} of {} files re-synchronized", synced,
+                        files.size());
+            } catch (RuntimeException e) {
+                log.error("Failed to reconcile the HNSW store with document_chunks", e);
+            }
+        });
+    }
+
+    @EventListener
+    public void onDocumentsChanged(DocumentsChangedEvent event) {
+        if (documentRepository == null) {
+            return;
+        }
+        if (event.fileName() != null) {
+            syncFile(event.fileName());
+            return;
+        }
+        writeLock.lock();
+        try {
+            for (int node : List.copyOf(nodesById.values())) {
+                deleteNode(node);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Bring the chunks of a file in line with its current rows in document_chunks. Rows whose node already
+     * holds the same vector, text and metadata are left alone, so re-ingesting a mostly unchanged file only
+     * touches the chunks that changed.
+     */
+    private void syncFile(String fileName) {
+        List<DocumentEntity> rows = documentRepository.findByFileName(fileName);
+        int replaced = 0;
+        int removed = 0;
+        writeLock.lock();
+        try {
+            Set<Integer> stale;
+            synchronized (nodesByFile) {
+                stale = new HashSet<>(nodesByFile.getOrDefault(fileName, Set.of()));
+            }
+            for (DocumentEntity row : rows) {
+                Integer node = nodesById.get(row.getId());
+                if (node != null) {
+                    stale.remove(node);
+                    if (isCurrent(node, row)) {
+                        continue;
+                    }
+                }
+                insert(row);
+                replaced++;
+            }
+            for (int node : stale) {
+                deleteNode(node);
+                removed++;
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to synchronize " + fileName + " into the HNSW store", e);
+        } finally {
+            writeLock.unlock();
+        }
+        log.debug("Synchronized {} of {}: {} chunks replaced, {} removed", rows.size(), fileName, replaced, removed);
+    }
+
+    /**
+     * Whether the node already holds this row: cheap metadata checks first, then the vector and the text
+     */
+    private boolean isCurrent(int node, DocumentEntity row) {
+        StoredChunk chunk = chunks[node];
+        String content = row.getContent() != null ? row.getContent() : "";
+        return Objects.equals(chunk.fileName(), row.getFileName())
+                && Objects.equals(chunk.collection(), row.getCollection())
+                && Objects.equals(chunk.chunkIndex(), row.getChunkIndex())
+                && Objects.equals(chunk.totalChunks(), row.getTotalChunks())
+                && Arrays.equals(index.vector(node), row.getEmbeddingVector())
+                && readText(chunk).equals(content);
+    }
+
+    private Set<UUID> idsOf(String fileName) {
+        writeLock.lock();
+        try {
+            Set<UUID> ids = new HashSet<>();
+            for (int node : nodesByFile.getOrDefault(fileName, Set.of())) {
+                ids.add(chunks[node].id());
+            }
+            return ids;
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Append the chunk to the side file and make its metadata visible before the index publishes the node.
+     * Called with the write lock held, so node ids are assigned in append order.
+     */
+    private void insert(DocumentEntity entity) throws IOException {
+        UUID id = entity.getId();
+        Integer existing = nodesById.get(id);
+        if (existing != null) {
+            deleteNode(existing);
+        }
+        String text = entity.getContent();
+        StoredChunk chunk = appendRecord(chunkFile, new StoredChunk(id, entity.getFileName(), entity.getCollection(),
+                entity.getChunkIndex(), entity.getTotalChunks(), 0, 0), text != null ? text : "");
+        int node = index.size();
+        publishChunk(node, chunk);
+        int added = index.add(entity.getEmbeddingVector());
+        if (added != node) {
+            throw new IllegalStateException("HNSW index assigned node " + added + ", expected " + node);
+        }
+    }
+
+    /**
+     * Append the record of a chunk to a side file
+     *
+     * @return the chunk with the offset and length of its text in that file
+     */
+    private static StoredChunk appendRecord(FileChannel file, StoredChunk chunk, String text) throws IOException {
+        byte[] textBytes = text.getBytes(StandardCharsets.UTF_8);
+        ByteArrayOutputStream header = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(header);
+        out.writeLong(chunk.id().getMostSignificantBits());
+        out.writeLong(chunk.id().getLeastSignificantBits());
+        writeString(out, chunk.fileName());
+        writeString(out, chunk.collection());
+        out.writeInt(chunk.chunkIndex() != null ? chunk.chunkIndex() : NULL_INT);
+        out.writeInt(chunk.totalChunks() != null ? chunk.totalChunks() : NULL_INT);
+
+        long position = file.size();
+        ByteBuffer record = ByteBuffer.allocate(2 * Integer.BYTES + header.size() + textBytes.length);
+        record.putInt(header.size()).putInt(textBytes.length).put(header.toByteArray()).put(textBytes).flip();
+        while (record.hasRemaining()) {
+            file.write(record, position + record.position());
+        }
+        return new StoredChunk(chunk.id(), chunk.fileName(), chunk.collection(), chunk.chunkIndex(),
+                chunk.totalChunks(), position + 2 * Integer.BYTES + header.size(), textBytes.length);
+    }
+
+    private void publishChunk(int node, StoredChunk chunk) {
+        StoredChunk[] current = chunks;
+        if (node >= current.length) {
+            current = Arrays.copyOf(current, Math.max(node + 1, current.length * 2));
+        }
+        current[node] = chunk;
+        chunks = current;
+        nodesById.put(chunk.id(), node);
+        if (chunk.fileName() != null) {
+            synchronized (nodesByFile) {
+                nodesByFile.computeIfAbsent(chunk.fileName(), f -> new HashSet<>()).add(node);
+            }
+        }
+    }
+
+    private void deleteNode(int node) {
+        StoredChunk chunk = chunks[node];
+        index.delete(node);
+        nodesById.remove(chunk.id(), node);
+        if (chunk.fileName() != null) {
+            synchronized (nodesByFile) {
+                Set<Integer> nodes = nodesByFile.get(chunk.fileName());
+                if (nodes != null) {
+                    nodes.remove(node);
+                    if (nodes.isEmpty()) {
+                        nodesByFile.remove(chunk.fileName());
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Map the index and side file in the store directory and load the chunk metadata
+     */
+    private void open() throws IOException {
+        HnswIndex opened = new HnswIndex(directory, dimensions, m, efConstruction);
+        try {
+            index = opened;
+            chunkFile = FileChannel.open(directory.resolve(CHUNKS_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            chunks = new StoredChunk[Math.max(1024, opened.size())];
+            nodesById.clear();
+            synchronized (nodesByFile) {
+                nodesByFile.clear();
+            }
+            loadChunks(directory.resolve(CHUNKS_FILE));
+        } catch (IOException | RuntimeException e) {
+            if (chunkFile != null) {
+                chunkFile.close();
+            }
+            opened.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Rebuild the index and side file from the live chunks only, dropping all tombstones. The copy is built
+     * next to the store directory while searches continue on the current files, then swapped in; inserts and
+     * deletes wait until it is done. Nothing is re-embedded: the stored vectors are copied.
+     */
+    public void compact() throws IOException {
+        writeLock.lock();
+        try {
+            HnswIndex current = index;
+            StoredChunk[] currentChunks = chunks;
+            int before = current.size();
+            int live = 0;
+            Path staging = sibling(COMPACTING_SUFFIX);
+            FileSystemUtils.deleteRecursively(staging);
+            try (HnswIndex compacted = new HnswIndex(staging, dimensions, m, efConstruction);
+                 FileChannel compactedChunks = FileChannel.open(staging.resolve(CHUNKS_FILE),
+                         StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                for (int node = 0; node < before; node++) {
+                    if (current.isDeleted(node)) {
+                        continue;
+                    }
+                    StoredChunk chunk = currentChunks[node];
+                    appendRecord(compactedChunks, chunk, readText(chunk));
+                    compacted.add(current.vector(node));
+                    live++;
+                }
+                compactedChunks.force(false);
+                compacted.snapshot();
+            }
+            swapLock.writeLock().lock();
+            try {
+                chunkFile.close();
+                current.close();
+                Files.move(directory, sibling(RETIRED_SUFFIX), StandardCopyOption.ATOMIC_MOVE);
+                Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                try {
+                    recoverCompaction();
+                    open();
+                } finally {
+                    swapLock.writeLock().unlock();
+                }
+            }
+            log.info("Compacted the HNSW store: {} nodes, {} of them live", before, live);
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    /**
+     * Finish or discard a compaction interrupted by a crash. The staging copy is complete once the store
+     * directory has been moved aside, so it only replaces a missing store directory.
+     */
+    private void recoverCompaction() throws IOException {
+        Path staging = sibling(COMPACTING_SUFFIX);
+        if (!Files.exists(directory) && Files.exists(staging)) {
+            Files.move(staging, directory, StandardCopyOption.ATOMIC_MOVE);
+        }
+        FileSystemUtils.deleteRecursively(staging);
+        FileSystemUtils.deleteRecursively(sibling(RETIRED_SUFFIX));
+    }
+
+    private Path sibling(String suffix) {
+        return directory.resolveSibling(directory.getFileName() + suffix);
+    }
+
+    private boolean needsCompaction() {
+        HnswIndex current = index;
+        return compactRatio > 0 && current.deletedCount() > 0
+                && current.deletedCount() >= compactRatio * current.size();
+    }
+
+    /**
+     * Read the metadata of the records the index snapshot covers; records appended after it are dropped
+     */
+    private void loadChunks(Path file) throws IOException {
+        int size = index.size();
+        long position = 0;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            for (int node = 0; node < size; node++) {
+                int headerLength = in.readInt();
+                int textLength = in.readInt();
+                UUID id = new UUID(in.readLong(), in.readLong());
+                String fileName = readString(in);
+                String collection = readString(in);
+                int chunkIndex = in.readInt();
+                int totalChunks = in.readInt();
+                in.skipNBytes(textLength);
+                long textOffset = position + 2 * Integer.BYTES + headerLength;
+                publishChunk(node, new StoredChunk(id, fileName, collection, chunkIndex == NULL_INT ? null : chunkIndex,
+                        totalChunks == NULL_INT ? null : totalChunks, textOffset, textLength));
+                if (index.isDeleted(node)) {
+                    deleteNode(node);
+                }
+                position = textOffset + textLength;
+            }
+        }
+        chunkFile.truncate(position);
+        log.info("HNSW store loaded: {} chunks, {} deleted nodes", nodesById.size(), index.deletedCount());
+    }
+
+    private String readText(StoredChunk chunk) {
+        ByteBuffer buffer = ByteBuffer.allocate(chunk.textLength());
+        try {
+            while (buffer.hasRemaining()) {
+                if (chunkFile.read(buffer, chunk.textOffset() + buffer.position()) < 0) {
+                    throw new IOException("Unexpected end of " + CHUNKS_FILE);
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read chunk text", e);
+        }
+        return new String(buffer.array(), StandardCharsets.UTF_8);
+    }
+
+    private Document toDocument(StoredChunk chunk, double distance) {
+        Map<String, Object> metadata = new HashMap<>();
+        metadata.put(FILE_NAME, chunk.fileName());
+        metadata.put(CHUNK_INDEX, chunk.chunkIndex());
+        metadata.put(TOTAL_CHUNKS, chunk.totalChunks());
+        metadata.put(COLLECTION, chunk.collection());
+        metadata.put(DISTANCE, distance);
+        metadata.values().removeIf(Objects::isNull);
+        return Document.builder()
+                .id(chunk.id().toString())
+                .text(readText(chunk))
+                .metadata(metadata)
+                .score(1.0 / (1.0 + distance))
+                .build();
+    }
+
+    /**
+     * Write the side file and then the index metadata, so the snapshot never refers to unwritten records
+     */
+    public void snapshot() throws IOException {
+        writeLock.lock();
+        try {
+            chunkFile.force(false);
+            index.snapshot();
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void snapshotQuietly() {
+        try {
+            if (needsCompaction()) {
+                compact();
+                return;
+            }
+            snapshot();
+        } catch (IOException | RuntimeException e) {
+            log.error("Failed to snapshot the HNSW store", e);
+        }
+    }
+
+    private static UUID parseId(String id) {
+        try {
+            return id != null ? UUID.fromString(id) : UUID.randomUUID();
+        } catch (IllegalArgumentException e) {
+            return UUID.nameUUIDFromBytes(id.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        return new String(in.readNBytes(length), StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void close() throws IOException {
+        snapshotExecutor.shutdownNow();
+        try {
+            snapshot();
+        } finally {
+            try {
+                chunkFile.close();
+            } finally {
+                index.close();
+            }
+        }
+    }
+}
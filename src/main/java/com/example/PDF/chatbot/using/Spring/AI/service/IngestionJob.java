@@ -0,0 +1,104 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import lombok.Getter;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Progress and state of one asynchronous PDF ingestion, updated by the pipeline stages as they run
+ */
+@Getter
+public class IngestionJob {
+
+    public enum Status { QUEUED, RUNNING, COMPLETED, FAILED, CANCELLED }
+
+    private final String id = UUID.randomUUID().toString();
+    private final String fileName;
+    private final String collection;
+    private final Instant createdAt = Instant.now();
+
+    private final AtomicInteger totalPages = new AtomicInteger();
+    private final AtomicInteger pagesExtracted = new AtomicInteger();
+    private final AtomicInteger chunksCreated = new AtomicInteger();
+    private final AtomicInteger chunksEmbedded = new AtomicInteger();
+    private final AtomicInteger chunksReused = new AtomicInteger();
+    private final AtomicInteger rowsStored = new AtomicInteger();
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String error;
+    private volatile Instant finishedAt;
+    private volatile Future<?> future;
+    private volatile boolean unchanged;
+
+    public IngestionJob(String fileName, String collection) {
+        this.fileName = fileName;
+        this.collection = collection;
+    }
+
+    public boolean isFinished() {
+        return finishedAt != null;
+    }
+
+    void setFuture(Future<?> future) {
+        this.future = future;
+    }
+
+    /**
+     * Mark the file as identical to what is already stored, so nothing was processed
+     */
+    void markUnchanged() {
+        this.unchanged = true;
+    }
+
+    void start() {
+        status = Status.RUNNING;
+    }
+
+    void finish(Status status, String error) {
+        this.status = status;
+        this.error = error;
+        this.finishedAt = Instant.now();
+    }
+
+    /**
+     * Request cancellation; a running pipeline is interrupted and its transaction rolled back
+     */
+    boolean cancel() {
+        if (isFinished()) {
+            return false;
+        }
+        Future<?> running = future;
+        if (running != null) {
+            running.cancel(true);
+        }
+        // A job still in the executor queue never starts, so it is finished here
+        if (status == Status.QUEUED) {
+            finish(Status.CANCELLED, null);
+        }
+        return true;
+    }
+
+    public Map<String, Object> toStatus() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("jobId", id);
+        status.put("fileName", fileName);
+        status.put("collection", collection);
+        status.put("status", this.status);
+        status.put("totalPages", totalPages.get());
+        status.put("pagesExtracted", pagesExtracted.get());
+        status.put("chunksCreated", chunksCreated.get());
+        status.put("chunksEmbedded", chunksEmbedded.get());
+        status.put("chunksReused", chunksReused.get());
+        status.put("rowsStored", rowsStored.get());
+        status.put("unchanged", unchanged);
+        status.put("createdAt", createdAt);
+        status.put("finishedAt", finishedAt);
+        status.put("error", error);
+        return status;
+    }
+}
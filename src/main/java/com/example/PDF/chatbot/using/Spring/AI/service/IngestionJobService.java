@@ -0,0 +1,155 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import io.micrometer.core.instrument.Gauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs PDF ingestion in the background. At most {@code ingest.jobs.max-concurrent} jobs run at once and at most
+ * {@code ingest.jobs.max-queued} wait; further uploads are rejected, so bulk uploads cannot monopolise the
+ * embedding model that chat queries share. Finished jobs are kept for {@code ingest.jobs.retention}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class IngestionJobService {
+
+    private final PdfProcessingService pdfProcessingService;
+    private final StageMetrics metrics;
+
+    private final Map<String, IngestionJob> jobs = new ConcurrentHashMap<>();
+
+    @Value("${ingest.jobs.max-concurrent:1}")
+    private int maxConcurrent = 1;
+
+    @Value("${ingest.jobs.max-queued:10}")
+    private int maxQueued = 10;
+
+    @Value("${ingest.jobs.retention:PT1H}")
+    private Duration retention = Duration.ofHours(1);
+
+    private ThreadPoolExecutor jobExecutor;
+
+    @PostConstruct
+    void initExecutor() {
+        jobExecutor = new ThreadPoolExecutor(maxConcurrent, maxConcurrent, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, maxQueued)), r -> {
+                    Thread thread = new Thread(r, "ingest-job");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Gauge.builder("rag.ingest.jobs.queued", jobExecutor, executor -> executor.getQueue().size())
+                .description("Ingestion jobs waiting for a worker")
+                .register(metrics.getRegistry());
+        Gauge.builder("rag.ingest.jobs.active", jobExecutor, ThreadPoolExecutor::getActiveCount)
+                .description("Ingestion jobs running")
+                .register(metrics.getRegistry());
+    }
+
+    /**
+     * Copy the upload to a temporary file and queue its ingestion
+     *
+     * @throws RejectedExecutionException when the job queue is full
+     */
+    public IngestionJob submit(MultipartFile file, String collection) throws IOException {
+        purgeExpiredJobs();
+        Path pdf = Files.createTempFile("ingest-", ".pdf");
+        try {
+            file.transferTo(pdf);
+            IngestionJob job = new IngestionJob(file.getOriginalFilename(), collection);
+            jobs.put(job.getId(), job);
+            try {
+                job.setFuture(jobExecutor.submit(() -> run(job, pdf)));
+            } catch (RejectedExecutionException e) {
+                jobs.remove(job.getId());
+                throw e;
+            }
+            log.info("Queued ingestion job {} for {}", job.getId(), job.getFileName());
+            return job;
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(pdf);
+            throw e;
+        }
+    }
+
+    public Optional<IngestionJob> getJob(String id) {
+        return Optional.ofNullable(jobs.get(id));
+    }
+
+    public Collection<IngestionJob> getJobs() {
+        return jobs.values();
+    }
+
+    /**
+     * @return false when the job does not exist or has already finished
+     */
+    public boolean cancel(String id) {
+        IngestionJob job = jobs.get(id);
+        boolean cancelled = job != null && job.cancel();
+        if (cancelled) {
+            log.info("Cancellation requested for ingestion job {}", id);
+        }
+        return cancelled;
+    }
+
+    private void run(IngestionJob job, Path pdf) {
+        job.start();
+        try {
+            pdfProcessingService.processPdf(pdf, job);
+            job.finish(IngestionJob.Status.COMPLETED, null);
+            countFinished(IngestionJob.Status.COMPLETED);
+            log.info("Ingestion job {} completed", job.getId());
+        } catch (Exception e) {
+            if (e instanceof CancellationException
+                    || (job.getFuture() != null && job.getFuture().isCancelled())) {
+                job.finish(IngestionJob.Status.CANCELLED, null);
+                countFinished(IngestionJob.Status.CANCELLED);
+                log.info("Ingestion job {} cancelled", job.getId());
+                return;
+            }
+            log.error("Ingestion job {} failed", job.getId(), e);
+            job.finish(IngestionJob.Status.FAILED, e.getMessage());
+            countFinished(IngestionJob.Status.FAILED);
+        } finally {
+            try {
+                Files.deleteIfExists(pdf);
+            } catch (IOException e) {
+                log.warn("Could not delete temporary file {}", pdf, e);
+            }
+        }
+    }
+
+    private void countFinished(IngestionJob.Status status) {
+        metrics.count("rag.ingest.jobs", 1, "status", status.name().toLowerCase());
+    }
+
+    private void purgeExpiredJobs() {
+        Instant cutoff = Instant.now().minus(retention);
+        jobs.values().removeIf(job -> job.isFinished() && job.getFinishedAt().isBefore(cutoff));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        jobExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import org.springframework.ai.vectorstore.filter.Filter;
+
+import java.util.Collection;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.Predicate;
+
+/**
+ * In-memory evaluation of a Spring AI filter expression against chunk metadata, for vector stores that
+ * search outside the database. Numbers compare by value, so an Integer chunkIndex matches a Long literal.
+ */
+final class MetadataFilter {
+
+    private MetadataFilter() {
+    }
+
+    /**
+     * @return a predicate over a metadata lookup, accepting everything when {@code expression} is null
+     */
+    static Predicate<Function<String, Object>> from(Filter.Expression expression) {
+        return expression == null ? metadata -> true : compile(expression);
+    }
+
+    private static Predicate<Function<String, Object>> compile(Filter.Operand operand) {
+        if (operand instanceof Filter.Group group) {
+            return compile(group.content());
+        }
+        if (!(operand instanceof Filter.Expression expression)) {
+            throw new IllegalArgumentException("Unsupported filter operand: " + operand);
+        }
+        return switch (expression.type()) {
+            case AND -> compile(expression.left()).and(compile(expression.right()));
+            case OR -> compile(expression.left()).or(compile(expression.right()));
+            case NOT -> compile(expression.left()).negate();
+            case EQ -> comparison(expression, c -> c == 0);
+            case NE -> comparison(expression, c -> c != 0);
+            case GT -> comparison(expression, c -> c > 0);
+            case GTE -> comparison(expression, c -> c >= 0);
+            case LT -> comparison(expression, c -> c < 0);
+            case LTE -> comparison(expression, c -> c <= 0);
+            case IN -> membership(expression, true);
+            case NIN -> membership(expression, false);
+        };
+    }
+
+    /**
+     * Like SQL, a missing value matches no comparison
+     */
+    private static Predicate<Function<String, Object>> comparison(Filter.Expression expression, IntPredicate outcome) {
+        String key = key(expression);
+        Object value = value(expression);
+        return metadata -> {
+            Object actual = metadata.apply(key);
+            return actual != null && outcome.test(compare(actual, value));
+        };
+    }
+
+    private static Predicate<Function<String, Object>> membership(Filter.Expression expression, boolean in) {
+        String key = key(expression);
+        if (!(value(expression) instanceof Collection<?> values) || values.isEmpty()) {
+            throw new IllegalArgumentException("IN / NIN filters need a non-empty list: " + expression);
+        }
+        return metadata -> {
+            Object actual = metadata.apply(key);
+            if (actual == null) {
+                return false;
+            }
+            boolean found = values.stream().anyMatch(value -> compare(actual, value) == 0);
+            return found == in;
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static int compare(Object actual, Object expected) {
+        if (actual instanceof Number a && expected instanceof Number b) {
+            return Double.compare(a.doubleValue(), b.doubleValue());
+        }
+        if (actual instanceof Comparable comparable && expected != null && actual.getClass() == expected.getClass()) {
+            return comparable.compareTo(expected);
+        }
+        return String.valueOf(actual).compareTo(String.valueOf(expected));
+    }
+
+    private static String key(Filter.Expression expression) {
+        if (!(expression.left() instanceof Filter.Key key)) {
+            throw new IllegalArgumentException("Filter must compare a metadata key: " + expression);
+        }
+        return key.key();
+    }
+
+    private static Object value(Filter.Expression expression) {
+        if (!(expression.right() instanceof Filter.Value value)) {
+            throw new IllegalArgumentException("Filter must compare against a value: " + expression);
+        }
+        return value.value();
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.onnxruntime.OrtEnvironment;
+import ai.onnxruntime.OrtException;
+import ai.onnxruntime.OrtSession;
+import ai.onnxruntime.OrtSession.SessionOptions.ExecutionMode;
+import ai.onnxruntime.OrtSession.SessionOptions.OptLevel;
+import lombok.extern.slf4j.Slf4j;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A fixed set of sessions over the same model, handed out one caller at a time.
+ * A single session runs one inference on its own intra-op thread pool; with several sessions, a chat query does
+ * not queue behind an ingestion batch on that pool. The thread budget is split between the sessions, so the
+ * pool as a whole does not oversubscribe the cores. The pool is also the bulkhead of inference: at most one
+ * inference per session runs at once, however many request threads ask for one.
+ */
+@Slf4j
+final class OnnxSessionPool implements AutoCloseable {
+
+    /**
+     * ONNX Runtime session settings. Thread counts of 0 leave the choice to ONNX Runtime (intra-op: one thread
+     * per core for a single session, or the cores divided between the sessions of a pool).
+     */
+    record Settings(int intraOpThreads, int interOpThreads, OptLevel optimizationLevel,
+                    ExecutionMode executionMode, boolean memoryArena) {
+
+        static Settings defaults() {
+            return new Settings(0, 0, OptLevel.ALL_OPT, ExecutionMode.SEQUENTIAL, true);
+        }
+
+        OrtSession.SessionOptions toSessionOptions(int intraOpThreads) throws OrtException {
+            OrtSession.SessionOptions options = new OrtSession.SessionOptions();
+            if (intraOpThreads > 0) {
+                options.setIntraOpNumThreads(intraOpThreads);
+            }
+            if (interOpThreads > 0) {
+                options.setInterOpNumThreads(interOpThreads);
+            }
+            options.setOptimizationLevel(optimizationLevel);
+            options.setExecutionMode(executionMode);
+            options.setCPUArenaAllocator(memoryArena);
+            return options;
+        }
+    }
+
+    private final List<OrtSession> sessions;
+    private final BlockingQueue<OrtSession> idle;
+    private final int intraOpThreads;
+
+    OnnxSessionPool(OrtEnvironment env, String modelPath, Settings settings, int size) throws OrtException {
+        int poolSize = Math.max(1, size);
+        this.intraOpThreads = settings.intraOpThreads() > 0 || poolSize == 1
+                ? settings.intraOpThreads()
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / poolSize);
+        this.sessions = new ArrayList<>(poolSize);
+        this.idle = new ArrayBlockingQueue<>(poolSize);
+        try (OrtSession.SessionOptions options = settings.toSessionOptions(intraOpThreads)) {
+            for (int i = 0; i < poolSize; i++) {
+                OrtSession session = env.createSession(modelPath, options);
+                sessions.add(session);
+                idle.add(session);
+            }
+        } catch (OrtException | RuntimeException e) {
+            close();
+            throw e;
+        }
+        log.info("Created {} ONNX Runtime session(s): {}, intra-op threads per session: {}", poolSize, settings,
+                intraOpThreads > 0 ? intraOpThreads : "default");
+    }
+
+    /**
+     * Wait for a free session; it must be handed back with {@link #release}
+     */
+    OrtSession borrow() throws InterruptedException {
+        return idle.take();
+    }
+
+    /**
+     * Wait at most {@code maxWait} for a free session
+     *
+     * @throws RejectedExecutionException when every session stayed busy
+     */
+    OrtSession borrow(Duration maxWait) throws InterruptedException {
+        OrtSession session = idle.poll(maxWait.toNanos(), TimeUnit.NANOSECONDS);
+        if (session == null) {
+            throw new RejectedExecutionException("All " + sessions.size() + " ONNX Runtime sessions stayed busy for "
+                    + maxWait);
+        }
+        return session;
+    }
+
+    void release(OrtSession session) {
+        idle.add(session);
+    }
+
+    List<OrtSession> sessions() {
+        return sessions;
+    }
+
+    int size() {
+        return sessions.size();
+    }
+
+    int available() {
+        return idle.size();
+    }
+
+    int intraOpThreads() {
+        return intraOpThreads;
+    }
+
+    @Override
+    public void close() {
+        for (OrtSession session : sessions) {
+            try {
+                session.close();
+            } catch (OrtException e) {
+                log.warn("Could not close ONNX Runtime session", e);
+            }
+        }
+    }
+}
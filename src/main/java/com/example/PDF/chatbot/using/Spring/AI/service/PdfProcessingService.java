@@ -1,130 +1,459 @@
 package com.example.PDF.chatbot.using.Spring.AI.service;
 
 import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.entity.IngestedFileEntity;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentBulkWriter;
 import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.IngestedFileRepository;
+import io.micrometer.core.instrument.Gauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
-import org.springframework.web.multipart.MultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Ingests PDFs as a pipeline of three stages connected by bounded queues, so extraction, embedding and
+ * database writes overlap: an extractor thread turns pages into chunks, an embedder thread embeds them in
+ * batches, and the calling thread streams the batches into the database. A full queue blocks the stage
+ * feeding it, so memory stays bounded however large the document is.
+ * Re-ingestion is incremental: an unchanged file is skipped, and chunks whose content hash matches a stored
+ * chunk of the previous version keep that row and its embedding instead of going through the model.
+ */
 @Service
 @RequiredArgsConstructor
 @Slf4j
 public class PdfProcessingService {
 
+    private static final Chunk END_OF_CHUNKS = new Chunk(-1, null, null);
+    private static final List<DocumentEntity> END_OF_BATCHES = List.of();
+
     private final CustomOnnxService onnxService;
     private final DocumentRepository documentRepository;
+    private final IngestedFileRepository ingestedFileRepository;
+    private final DocumentBulkWriter documentBulkWriter;
+    private final TransactionTemplate transactionTemplate;
+    private final AnswerCache answerCache;
+    private final PdfTextExtractor pdfTextExtractor;
+    private final ApplicationEventPublisher eventPublisher;
+    private final StageMetrics metrics;
+    private final FileLocks fileLocks;
+
+    // Queues of the running ingestions, for the queue depth gauges
+    private final Set<BlockingQueue<?>> chunkQueues = ConcurrentHashMap.newKeySet();
+    private final Set<BlockingQueue<?>> batchQueues = ConcurrentHashMap.newKeySet();
+
+    private final ExecutorService stageExecutor = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "ingest-stage");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${ingest.bulk-copy.enabled:true}")
+    private boolean bulkCopyEnabled = true;
+
+    @Value("${onnx.embedding.batch-size:32}")
+    private int embedBatchSize = 32;
+
+    @Value("${ingest.pipeline.queue-capacity:256}")
+    private int queueCapacity = 256;
+
+    @Value("${ingest.chunk.overlap-tokens:32}")
+    private int chunkOverlapTokens = 32;
+
+    private record Chunk(int index, String text, long[] tokenIds) {
+    }
+
+    @PostConstruct
+    void registerGauges() {
+        Gauge.builder("rag.pipeline.queue.depth", chunkQueues, PdfProcessingService::totalSize)
+                .description("Items waiting between ingestion stages")
+                .tag("queue", "chunks")
+                .register(metrics.getRegistry());
+        Gauge.builder("rag.pipeline.queue.depth", batchQueues, PdfProcessingService::totalSize)
+                .description("Items waiting between ingestion stages")
+                .tag("queue", "batches")
+                .register(metrics.getRegistry());
+    }
+
+    private static double totalSize(Set<BlockingQueue<?>> queues) {
+        return queues.stream().mapToInt(BlockingQueue::size).sum();
+    }
+
+    /**
+     * Process PDF file: Extract → Clean → Chunk → Embed → Store, with progress reported on the job.
+     * All rows are written in one transaction, so a failed or cancelled ingestion leaves nothing behind.
+     * Holds the file's lock throughout, so an embedding migration of the same file waits for it.
+     */
+    public void processPdf(Path pdf, IngestionJob job) throws IOException {
+        fileLocks.lock(job.getFileName());
+        try {
+            ingest(pdf, job);
+        } finally {
+            fileLocks.unlock(job.getFileName());
+        }
+    }
+
+    private void ingest(Path pdf, IngestionJob job) throws IOException {
+        log.info("Processing PDF file: {}", job.getFileName());
+        String fileHash = sha256(pdf);
+        String modelVersion = onnxService.getModelVersion();
+        IngestedFileEntity previous = ingestedFileRepository.findById(job.getFileName()).orElse(null);
+        if (isUnchanged(previous, job, fileHash, modelVersion)) {
+            log.info("{} is unchanged since {}, skipping ingestion", job.getFileName(), previous.getIngestedAt());
+            job.markUnchanged();
+            return;
+        }
+        Map<String, Deque<UUID>> reusable = findReusableChunks(previous, modelVersion);
+
+        Pipeline pipeline = new Pipeline();
+        BlockingQueue<Chunk> chunks = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<List<DocumentEntity>> batches =
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity / Math.max(1, embedBatchSize)));
+
+        chunkQueues.add(chunks);
+        batchQueues.add(batches);
+        Future<?> extractor = stageExecutor.submit(() -> pipeline.run(() -> extract(pdf, job, pipeline, chunks)));
+        Future<?> embedder = stageExecutor.submit(() -> pipeline.run(() -> embed(job, reusable, pipeline, chunks, batches)));
+        try {
+            transactionTemplate.executeWithoutResult(status -> store(job, fileHash, modelVersion, pipeline, batches));
+        } finally {
+            pipeline.close();
+            extractor.cancel(true);
+            embedder.cancel(true);
+            chunkQueues.remove(chunks);
+            batchQueues.remove(batches);
+        }
+        answerCache.invalidateFile(job.getFileName());
+        eventPublisher.publishEvent(new DocumentsChangedEvent(job.getFileName()));
+        log.info("Stored {} documents in database, {} of them reused", job.getRowsStored().get(),
+                job.getChunksReused().get());
+    }
 
     /**
-     * Process PDF file: Extract → Clean → Chunk → Embed → Store
+     * Same bytes, collection and embedding model as the last ingestion, and all of its rows still present
+     * (rows can also be deleted through the vector store API)
      */
-    public void processPdf(MultipartFile file) throws IOException {
-        log.info("Processing PDF file: {}", file.getOriginalFilename());
-        
-        // 1. Extract text from PDF
-        String extractedText = extractTextFromPdf(file);
-        log.info("Extracted text length: {}", extractedText.length());
-        
-        // 2. Clean text
-        String cleanedText = cleanText(extractedText);
-        log.info("Cleaned text length: {}", cleanedText.length());
-        
-        // 3. Chunk text
-        List<String> chunks = chunkText(cleanedText);
-        log.info("Created {} chunks", chunks.size());
-        
-        // 4. Create documents and embed
-        List<DocumentEntity> documents = createDocuments(chunks, file.getOriginalFilename());
-        
-        // 5. Store in database
-        documentRepository.saveAll(documents);
-        log.info("Stored {} documents in database", documents.size());
+    private boolean isUnchanged(IngestedFileEntity previous, IngestionJob job, String fileHash, String modelVersion) {
+        return previous != null
+                && fileHash.equals(previous.getContentHash())
+                && modelVersion.equals(previous.getEmbeddingModel())
+                && Objects.equals(job.getCollection(), previous.getCollection())
+                && previous.getTotalChunks() != null
+                && documentRepository.countByFileName(job.getFileName()) == previous.getTotalChunks();
     }
 
     /**
-     * 1. Extract text from PDF using Apache PDFBox
+     * Stored chunks of the file by content hash. Their embeddings are only reusable when they were computed
+     * with the current model; rows without a hash (ingested before hashing existed) are replaced.
      */
-    private String extractTextFromPdf(MultipartFile file) throws IOException {
-        try (PDDocument document = PDDocument.load(file.getInputStream())) {
-            PDFTextStripper stripper = new PDFTextStripper();
-            return stripper.getText(document);
+    private Map<String, Deque<UUID>> findReusableChunks(IngestedFileEntity previous, String modelVersion) {
+        Map<String, Deque<UUID>> reusable = new HashMap<>();
+        if (previous == null || !modelVersion.equals(previous.getEmbeddingModel())) {
+            return reusable;
         }
+        documentRepository.findContentHashes(previous.getFileName()).forEach((id, hash) -> {
+            if (hash != null) {
+                reusable.computeIfAbsent(hash, h -> new ArrayDeque<>()).add(id);
+            }
+        });
+        return reusable;
     }
 
     /**
-     * 2. Clean text - remove extra whitespace and format
+     * 1-3. Extract text page by page with Apache PDFBox, normalize it and cut it into sentence-aligned chunks
+     * that fill the model's input length, handing each chunk on as soon as it is complete
      */
-    private String cleanText(String text) {
-        return text
-                .replaceAll("\\s+", " ")  // Replace multiple whitespace with single space
-                .replaceAll("\\n\\s*\\n", "\n")  // Remove empty lines
-                .trim();
+    private void extract(Path pdf, IngestionJob job, Pipeline pipeline, BlockingQueue<Chunk> chunks)
+            throws IOException, InterruptedException {
+        List<TextChunker.Chunk> completed = new ArrayList<>();
+        TextChunker chunker = new TextChunker(onnxService::tokenizeSegments, onnxService.getMaxContentTokens(),
+                chunkOverlapTokens, completed::add);
+        long started = System.nanoTime();
+        long[] chunkingNanos = new long[1];
+        pdfTextExtractor.extract(pdf, job.getTotalPages()::set, (page, text) -> {
+            long chunkingStarted = System.nanoTime();
+            chunker.append(text);
+            chunkingNanos[0] += System.nanoTime() - chunkingStarted;
+            job.getPagesExtracted().incrementAndGet();
+            publish(job, pipeline, chunks, completed);
+        });
+        long chunkingStarted = System.nanoTime();
+        chunker.finish();
+        chunkingNanos[0] += System.nanoTime() - chunkingStarted;
+        metrics.record(StageMetrics.CHUNK, StageMetrics.NO_MODEL, chunkingNanos[0]);
+        metrics.record(StageMetrics.PDF_EXTRACT, StageMetrics.NO_MODEL, System.nanoTime() - started - chunkingNanos[0]);
+        metrics.count("rag.ingest.pages", job.getPagesExtracted().get());
+        publish(job, pipeline, chunks, completed);
+        pipeline.put(chunks, END_OF_CHUNKS);
+        log.info("Extracted {} pages into {} chunks", job.getTotalPages().get(), job.getChunksCreated().get());
+    }
+
+    private static void publish(IngestionJob job, Pipeline pipeline, BlockingQueue<Chunk> chunks,
+                                List<TextChunker.Chunk> completed) throws InterruptedException {
+        for (TextChunker.Chunk chunk : completed) {
+            pipeline.put(chunks, new Chunk(job.getChunksCreated().getAndIncrement(), chunk.text(), chunk.tokenIds()));
+        }
+        completed.clear();
     }
 
     /**
-     * 3. Split text into 500-character chunks with overlap
+     * 4. Embed chunks in batches of {@code onnx.embedding.batch-size} and create Document entities with metadata.
+     * A chunk identical to one of the file's stored chunks is not embedded; its entity carries the id of that
+     * row instead. total_chunks is not known yet and is set once all rows are stored.
      */
-    private List<String> chunkText(String text) {
-        List<String> chunks = new ArrayList<>();
-        int chunkSize = 500;
-        int overlap = 50;
-        
-        for (int i = 0; i < text.length(); i += chunkSize - overlap) {
-            int end = Math.min(i + chunkSize, text.length());
-            String chunk = text.substring(i, end);
-            
-            // Don't add empty chunks
-            if (!chunk.trim().isEmpty()) {
-                chunks.add(chunk);
-            }
-            
-            // If we've reached the end, break
-            if (end == text.length()) {
+    private void embed(IngestionJob job, Map<String, Deque<UUID>> reusable, Pipeline pipeline,
+                       BlockingQueue<Chunk> chunks, BlockingQueue<List<DocumentEntity>> batches)
+            throws InterruptedException {
+        List<Chunk> batch = new ArrayList<>(embedBatchSize);
+        boolean done = false;
+        while (!done) {
+            Chunk first = pipeline.take(chunks);
+            if (first == END_OF_CHUNKS) {
                 break;
             }
+            batch.add(first);
+            // Take whatever else is already waiting, up to one batch, instead of waiting for a full batch
+            while (batch.size() < embedBatchSize) {
+                Chunk next = chunks.poll();
+                if (next == null) {
+                    break;
+                }
+                if (next == END_OF_CHUNKS) {
+                    done = true;
+                    break;
+                }
+                batch.add(next);
+            }
+
+            List<DocumentEntity> documents = new ArrayList<>(batch.size());
+            List<DocumentEntity> toEmbed = new ArrayList<>(batch.size());
+            List<long[]> tokenIds = new ArrayList<>(batch.size());
+            for (Chunk chunk : batch) {
+                DocumentEntity document = new DocumentEntity();
+                document.setContent(chunk.text());
+                document.setFileName(job.getFileName());
+                document.setCollection(job.getCollection());
+                document.setChunkIndex(chunk.index());
+                document.setContentHash(sha256(chunk.text()));
+                Deque<UUID> existing = reusable.get(document.getContentHash());
+                if (existing != null && !existing.isEmpty()) {
+                    document.setId(existing.poll());
+                } else {
+                    toEmbed.add(document);
+                    tokenIds.add(chunk.tokenIds());
+                }
+                documents.add(document);
+            }
+            List<float[]> embeddings = onnxService.generateEmbeddingsForTokens(tokenIds);
+            for (int i = 0; i < toEmbed.size(); i++) {
+                toEmbed.get(i).setEmbeddingVector(embeddings.get(i));
+            }
+            job.getChunksEmbedded().addAndGet(toEmbed.size());
+            job.getChunksReused().addAndGet(documents.size() - toEmbed.size());
+            metrics.count("rag.ingest.chunks", toEmbed.size(), "outcome", "embedded");
+            metrics.count("rag.ingest.chunks", documents.size() - toEmbed.size(), "outcome", "reused");
+            pipeline.put(batches, documents);
+            batch.clear();
+        }
+        pipeline.put(batches, END_OF_BATCHES);
+    }
+
+    /**
+     * 5. Store batches as they arrive, inside the ingestion transaction. On PostgreSQL, new rows go into one
+     * binary COPY that stays open for the whole file, so only the batch at hand and one COPY slice are held in
+     * memory; reused rows are moved to their new position once the COPY has finished, since no other statement
+     * can run during it. Elsewhere rows are saved through JPA. Once all batches are stored, rows of the previous
+     * version that were not reused are deleted and the file is recorded as ingested.
+     */
+    private void store(IngestionJob job, String fileHash, String modelVersion, Pipeline pipeline,
+                       BlockingQueue<List<DocumentEntity>> batches) {
+        List<UUID> ids = new ArrayList<>();
+        List<DocumentEntity> moved = new ArrayList<>();
+        boolean useCopy = bulkCopyEnabled && documentBulkWriter.isSupported();
+        try (DocumentBulkWriter.CopyStream copy = useCopy ? documentBulkWriter.open() : null) {
+            List<DocumentEntity> documents;
+            while ((documents = pipeline.take(batches)) != END_OF_BATCHES) {
+                List<DocumentEntity> inserts = new ArrayList<>(documents.size());
+                List<DocumentEntity> reused = new ArrayList<>();
+                for (DocumentEntity document : documents) {
+                    (document.getId() == null ? inserts : reused).add(document);
+                }
+                long started = System.nanoTime();
+                if (copy != null) {
+                    copy.write(inserts);
+                    reused.forEach(document -> moved.add(position(document)));
+                } else {
+                    documentRepository.updateChunkPositions(reused);
+                    inserts = documentRepository.saveAll(inserts);
+                }
+                metrics.record(StageMetrics.DB_WRITE, StageMetrics.NO_MODEL, System.nanoTime() - started);
+                reused.forEach(document -> ids.add(document.getId()));
+                inserts.forEach(document -> ids.add(document.getId()));
+                job.getRowsStored().addAndGet(documents.size());
+            }
+            pipeline.checkFailure();
+            if (copy != null) {
+                long started = System.nanoTime();
+                copy.finish();
+                documentRepository.updateChunkPositions(moved);
+                metrics.record(StageMetrics.DB_WRITE, StageMetrics.NO_MODEL, System.nanoTime() - started);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Ingestion cancelled");
+        } catch (SQLException | IOException e) {
+            throw new IllegalStateException("Failed to bulk insert document chunks", e);
+        }
+        if (!useCopy) {
+            documentRepository.flush();
+        }
+        int stale = documentRepository.deleteByFileNameExcept(job.getFileName(), ids);
+        documentRepository.updateTotalChunks(ids, ids.size());
+        ingestedFileRepository.save(new IngestedFileEntity(job.getFileName(), job.getCollection(), fileHash,
+                modelVersion, ids.size(), new Date()));
+        log.info("Removed {} stale chunks of {}", stale, job.getFileName());
+    }
+
+    /**
+     * Just what moving a reused row needs, so the batch's content does not stay in memory until the COPY ends
+     */
+    private static DocumentEntity position(DocumentEntity document) {
+        DocumentEntity position = new DocumentEntity();
+        position.setId(document.getId());
+        position.setChunkIndex(document.getChunkIndex());
+        position.setCollection(document.getCollection());
+        return position;
+    }
+
+    private static String sha256(Path file) throws IOException {
+        MessageDigest digest = newSha256();
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Chunk text is already whitespace-normalized by the chunker, so equal content gives equal hashes
+     */
+    private static String sha256(String text) {
+        return HexFormat.of().formatHex(newSha256().digest(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static MessageDigest newSha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
         }
-        
-        return chunks;
     }
 
     /**
-     * 4. Create Document entities with metadata and embeddings
+     * Shared state of one pipeline run. Blocking queue operations wake up periodically, so a failure in any
+     * stage (or a cancellation) stops the others instead of leaving them blocked on a queue forever.
      */
-    private List<DocumentEntity> createDocuments(List<String> chunks, String fileName) {
-        List<DocumentEntity> documents = new ArrayList<>();
-        
-        for (int i = 0; i < chunks.size(); i++) {
-            String chunk = chunks.get(i);
-            
-            // Generate embedding using our custom ONNX service
-            List<Float> embedding = onnxService.generateEmbedding(chunk);
-            String embeddingString = onnxService.embeddingToString(embedding);
-            
-            DocumentEntity document = new DocumentEntity();
-            document.setContent(chunk);
-            document.setFileName(fileName);
-            document.setChunkIndex(i);
-            document.setTotalChunks(chunks.size());
-            document.setEmbeddingVector(embeddingString);
-            
-            documents.add(document);
-        }
-        
-        return documents;
+    private static final class Pipeline {
+
+        private volatile Throwable failure;
+        private volatile boolean closed;
+
+        interface Stage {
+            void run() throws Exception;
+        }
+
+        void run(Stage stage) {
+            try {
+                stage.run();
+            } catch (Throwable e) {
+                if (!closed) {
+                    failure = e;
+                    closed = true;
+                }
+            }
+        }
+
+        void close() {
+            closed = true;
+        }
+
+        <T> void put(BlockingQueue<T> queue, T item) throws InterruptedException {
+            while (!queue.offer(item, 100, TimeUnit.MILLISECONDS)) {
+                checkOpen();
+            }
+        }
+
+        <T> T take(BlockingQueue<T> queue) throws InterruptedException {
+            T item;
+            while ((item = queue.poll(100, TimeUnit.MILLISECONDS)) == null) {
+                checkOpen();
+            }
+            return item;
+        }
+
+        void checkFailure() {
+            if (failure != null) {
+                throw new IllegalStateException("Ingestion failed: " + failure.getMessage(), failure);
+            }
+        }
+
+        private void checkOpen() {
+            checkFailure();
+            if (closed) {
+                throw new CancellationException("Ingestion pipeline closed");
+            }
+        }
     }
 
     /**
-     * Clear all documents from database
+     * Clear all documents from database, after the ingestions and migrations in progress have finished their file
      */
     public void clearVectorStore() {
         log.info("Clearing all documents from database");
-        documentRepository.deleteAll();
+        fileLocks.lockAll();
+        try {
+            documentRepository.deleteAll();
+            ingestedFileRepository.deleteAll();
+        } finally {
+            fileLocks.unlockAll();
+        }
+        answerCache.invalidateAll();
+        eventPublisher.publishEvent(new DocumentsChangedEvent(null));
     }
 
     /**
@@ -132,6 +461,19 @@ public class PdfProcessingService {
      */
     public void clearDocumentsForFile(String fileName) {
         log.info("Clearing documents for file: {}", fileName);
-        documentRepository.deleteByFileName(fileName);
+        fileLocks.lock(fileName);
+        try {
+            documentRepository.deleteByFileName(fileName);
+            ingestedFileRepository.deleteById(fileName);
+        } finally {
+            fileLocks.unlock(fileName);
+        }
+        answerCache.invalidateFile(fileName);
+        eventPublisher.publishEvent(new DocumentsChangedEvent(fileName));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stageExecutor.shutdownNow();
     }
 } 
\ No newline at end of file
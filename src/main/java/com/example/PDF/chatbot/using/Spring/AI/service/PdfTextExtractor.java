@@ -0,0 +1,242 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.pdfbox.cos.COSObject;
+import org.apache.pdfbox.io.MemoryUsageSetting;
+import org.apache.pdfbox.pdmodel.DefaultResourceCache;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.graphics.PDXObject;
+import org.apache.pdfbox.text.PDFTextStripper;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.IntConsumer;
+
+/**
+ * Extracts PDF text page by page, optionally in parallel.
+ * With more than one worker, the page range is split into small ranges that run on a fork-join pool; every
+ * worker uses its own PDDocument handle (PDFBox documents are not thread-safe), and results are handed on
+ * strictly in page order, so chunk order and chunkIndex do not depend on scheduling. Only a bounded number
+ * of ranges is in flight at a time.
+ */
+@Component
+@Slf4j
+public class PdfTextExtractor {
+
+    private static final int PAGES_PER_TASK = 4;
+
+    private final int parallelism;
+    private final DataSize maxMainMemory;
+    private final ForkJoinPool pool;
+
+    @FunctionalInterface
+    public interface PageHandler {
+        void accept(int pageNumber, String text) throws InterruptedException;
+    }
+
+    private record PageRange(int firstPage, List<String> texts) {
+    }
+
+    public PdfTextExtractor(@Value("${ingest.pdf.extract-parallelism:0}") int parallelism,
+                            @Value("${ingest.pdf.max-main-memory:16MB}") DataSize maxMainMemory) {
+        this.parallelism = parallelism > 0 ? parallelism : Runtime.getRuntime().availableProcessors();
+        this.maxMainMemory = maxMainMemory;
+        this.pool = this.parallelism > 1 ? new ForkJoinPool(this.parallelism) : null;
+        log.info("PDF text extraction parallelism: {}", this.parallelism);
+    }
+
+    public int getParallelism() {
+        return parallelism;
+    }
+
+    /**
+     * Extract all pages, calling {@code handler} once per page in page order
+     *
+     * @param pageCount receives the number of pages before the first page is handled
+     */
+    public void extract(Path pdf, IntConsumer pageCount, PageHandler handler) throws IOException, InterruptedException {
+        try (DocumentHandles handles = new DocumentHandles(pdf)) {
+            PDDocument first = handles.borrow();
+            int pages = first.getNumberOfPages();
+            handles.release(first);
+            pageCount.accept(pages);
+
+            if (pool == null) {
+                for (int page = 1; page <= pages; page++) {
+                    handler.accept(page, extractRange(handles, page, page).texts().get(0));
+                }
+            } else {
+                extractParallel(handles, pages, handler);
+            }
+        }
+    }
+
+    private void extractParallel(DocumentHandles handles, int pages, PageHandler handler)
+            throws IOException, InterruptedException {
+        Deque<Future<PageRange>> inFlight = new ArrayDeque<>();
+        int nextPage = 1;
+        try {
+            while (nextPage <= pages || !inFlight.isEmpty()) {
+                // Keep every worker busy, with one range of read-ahead each
+                while (nextPage <= pages && inFlight.size() < parallelism * 2) {
+                    int start = nextPage;
+                    int end = Math.min(pages, start + PAGES_PER_TASK - 1);
+                    inFlight.add(pool.submit(() -> extractRange(handles, start, end)));
+                    nextPage = end + 1;
+                }
+                PageRange range = await(inFlight.poll());
+                for (int i = 0; i < range.texts().size(); i++) {
+                    handler.accept(range.firstPage() + i, range.texts().get(i));
+                }
+            }
+        } finally {
+            // Ranges that have not started yet are dropped; running ones finish before the handles are closed
+            inFlight.forEach(future -> future.cancel(false));
+        }
+    }
+
+    private static PageRange extractRange(DocumentHandles handles, int startPage, int endPage)
+            throws IOException, InterruptedException {
+        PDDocument document = handles.borrow();
+        try {
+            PDFTextStripper stripper = new PDFTextStripper();
+            // Mark paragraph ends with a blank line, which the chunker treats as a paragraph boundary
+            stripper.setParagraphEnd(stripper.getLineSeparator());
+            List<String> texts = new ArrayList<>(endPage - startPage + 1);
+            for (int page = startPage; page <= endPage; page++) {
+                stripper.setStartPage(page);
+                stripper.setEndPage(page);
+                texts.add(stripper.getText(document));
+            }
+            return new PageRange(startPage, texts);
+        } finally {
+            handles.release(document);
+        }
+    }
+
+    private static PageRange await(Future<PageRange> future) throws IOException, InterruptedException {
+        try {
+            return future.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException io) {
+                throw io;
+            }
+            throw new IllegalStateException("PDF text extraction failed", e.getCause());
+        }
+    }
+
+    /**
+     * Up to one open document per worker, opened on first use. Closing waits until every borrowed handle
+     * has been returned.
+     */
+    private final class DocumentHandles implements AutoCloseable {
+
+        private final Path pdf;
+        private final BlockingQueue<PDDocument> idle = new LinkedBlockingQueue<>();
+        private int opened;
+        private boolean closed;
+
+        DocumentHandles(Path pdf) {
+            this.pdf = pdf;
+        }
+
+        PDDocument borrow() throws IOException, InterruptedException {
+            PDDocument document = idle.poll();
+            if (document != null) {
+                return document;
+            }
+            boolean openNew;
+            synchronized (this) {
+                if (closed) {
+                    throw new IOException("Extraction of " + pdf + " was aborted");
+                }
+                openNew = opened < parallelism;
+                if (openNew) {
+                    opened++;
+                }
+            }
+            if (!openNew) {
+                return idle.take();
+            }
+            try {
+                return open();
+            } catch (IOException | RuntimeException e) {
+                synchronized (this) {
+                    opened--;
+                }
+                throw e;
+            }
+        }
+
+        void release(PDDocument document) {
+            idle.add(document);
+        }
+
+        /**
+         * Parse from the file and keep at most {@code ingest.pdf.max-main-memory} (shared by all handles) of
+         * decoded streams on the heap, spilling the rest to a temporary scratch file
+         */
+        private PDDocument open() throws IOException {
+            long perHandle = maxMainMemory.toBytes() / parallelism;
+            MemoryUsageSetting memory = perHandle > 0
+                    ? MemoryUsageSetting.setupMixed(perHandle)
+                    : MemoryUsageSetting.setupTempFileOnly();
+            PDDocument document = PDDocument.load(pdf.toFile(), memory);
+            // Text extraction never draws images, so do not keep decoded XObjects of earlier pages around
+            document.setResourceCache(new DefaultResourceCache() {
+                @Override
+                public void put(COSObject indirect, PDXObject xobject) {
+                }
+            });
+            return document;
+        }
+
+        @Override
+        public void close() throws IOException {
+            int toClose;
+            synchronized (this) {
+                closed = true;
+                toClose = opened;
+            }
+            boolean interrupted = false;
+            IOException failure = null;
+            while (toClose > 0) {
+                try {
+                    idle.take().close();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    continue;
+                } catch (IOException e) {
+                    failure = e;
+                }
+                toClose--;
+            }
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,216 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Combines concurrent query embeddings into batched inference.
+ * Callers queue their text and wait; a flusher thread takes the first waiting text, collects more until
+ * {@code embedding.batcher.max-batch-size} texts are queued or {@code embedding.batcher.max-wait} has passed since
+ * the first, and embeds them in one padded batch. While a batch runs, the next one fills. With
+ * {@code embedding.batcher.idle-bypass}, a query arriving while no other is in progress skips the queue, so a
+ * lone user pays no batching delay.
+ * Inference always runs on platform threads (the flushers, or the inference executor for unbatched queries), never
+ * on the caller's thread: a virtual request thread would stay pinned to its carrier for the whole native call.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class QueryEmbeddingBatcher {
+
+    private final CustomOnnxService onnxService;
+    private final StageMetrics metrics;
+
+    @Value("${embedding.batcher.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${embedding.batcher.max-batch-size:16}")
+    private int maxBatchSize = 16;
+
+    @Value("${embedding.batcher.max-wait:PT0.005S}")
+    private Duration maxWait = Duration.ofMillis(5);
+
+    @Value("${embedding.batcher.idle-bypass:true}")
+    private boolean idleBypass = true;
+
+    /**
+     * Batches in flight at once; one per pooled ONNX session keeps every session busy
+     */
+    @Value("${embedding.batcher.flush-threads:${onnx.runtime.sessions:1}}")
+    private int flushThreads = 1;
+
+    private record Pending(String text, CompletableFuture<float[]> result) {
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+    private final AtomicInteger inProgress = new AtomicInteger();
+    private final List<Thread> flushers = new ArrayList<>();
+    private ExecutorService inferenceExecutor;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder batchedQueries = new LongAdder();
+    private DistributionSummary batchSizes;
+
+    @PostConstruct
+    public void start() {
+        Gauge.builder("embedding.batcher.queue.depth", queue, BlockingQueue::size)
+                .description("Query embeddings waiting for a batch")
+                .register(metrics.getRegistry());
+        batchSizes = DistributionSummary.builder("embedding.batcher.batch.size")
+                .description("Query embeddings per batched inference")
+                .register(metrics.getRegistry());
+        AtomicInteger threads = new AtomicInteger();
+        inferenceExecutor = Executors.newFixedThreadPool(Math.max(1, flushThreads), r -> {
+            Thread thread = new Thread(r, "query-embedding-inference-" + threads.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        if (!enabled) {
+            return;
+        }
+        for (int i = 0; i < Math.max(1, flushThreads); i++) {
+            Thread flusher = new Thread(this::flushLoop, "query-embedding-batcher-" + i);
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+        log.info("Query embedding batching enabled (max batch size {}, max wait {}, idle bypass {}, {} flush thread(s))",
+                maxBatchSize, maxWait, idleBypass, flushers.size());
+    }
+
+    public float[] embed(String text) {
+        return await(embedAsync(text));
+    }
+
+    /**
+     * Queue the text, or hand it straight to the inference executor when batching is off or idle bypass applies
+     */
+    public CompletableFuture<float[]> embedAsync(String text) {
+        if (!enabled) {
+            return CompletableFuture.supplyAsync(() -> onnxService.generateEmbedding(text), inferenceExecutor);
+        }
+        int concurrent = inProgress.getAndIncrement();
+        CompletableFuture<float[]> result;
+        if (idleBypass && concurrent == 0) {
+            recordBatch(1);
+            result = CompletableFuture.supplyAsync(() -> onnxService.generateEmbedding(text), inferenceExecutor);
+        } else {
+            result = new CompletableFuture<>();
+            queue.add(new Pending(text, result));
+        }
+        result.whenComplete((embedding, e) -> inProgress.decrementAndGet());
+        return result;
+    }
+
+    public Map<String, Object> getStatus() {
+        long count = batches.sum();
+        return Map.of(
+                "enabled", enabled,
+                "maxBatchSize", maxBatchSize,
+                "maxWait", maxWait.toString(),
+                "idleBypass", idleBypass,
+                "flushThreads", flushers.size(),
+                "queueDepth", queue.size(),
+                "batches", count,
+                "meanBatchSize", count == 0 ? 0.0 : (double) batchedQueries.sum() / count
+        );
+    }
+
+    private void recordBatch(int size) {
+        batches.increment();
+        batchedQueries.add(size);
+        batchSizes.record(size);
+    }
+
+    private static float[] await(CompletableFuture<float[]> result) {
+        try {
+            return result.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            result.cancel(false);
+            throw new CancellationException("Interrupted while waiting for the query embedding");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Query embedding failed", e.getCause());
+        }
+    }
+
+    private void flushLoop() {
+        List<Pending> batch = new ArrayList<>(maxBatchSize);
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                batch.add(queue.take());
+                long deadline = System.nanoTime() + maxWait.toNanos();
+                while (batch.size() < maxBatchSize) {
+                    Pending next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            batch.forEach(pending -> pending.result().completeExceptionally(
+                    new CancellationException("Query embedding batcher stopped")));
+        }
+    }
+
+    private void flush(List<Pending> batch) {
+        // Callers that gave up while queued do not take a row in the batch
+        batch.removeIf(pending -> pending.result().isDone());
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<String> texts = new ArrayList<>(batch.size());
+        for (Pending pending : batch) {
+            texts.add(pending.text());
+        }
+        recordBatch(batch.size());
+        try {
+            List<float[]> embeddings = onnxService.generateEmbeddings(texts);
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).result().complete(embeddings.get(i));
+            }
+        } catch (RuntimeException e) {
+            batch.forEach(pending -> pending.result().completeExceptionally(e));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        flushers.forEach(Thread::interrupt);
+        if (inferenceExecutor != null) {
+            inferenceExecutor.shutdownNow();
+        }
+        Pending pending;
+        while ((pending = queue.poll()) != null) {
+            pending.result().completeExceptionally(new CancellationException("Query embedding batcher stopped"));
+        }
+    }
+}
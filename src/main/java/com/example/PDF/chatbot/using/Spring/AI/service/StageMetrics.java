@@ -0,0 +1,114 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import lombok.Getter;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Micrometer instrumentation of the ingestion and chat pipelines.
+ * Every stage is recorded by the one timer {@value #STAGE_DURATION}, tagged only with stage, model and outcome,
+ * so the number of series is fixed no matter how many files, users or questions there are. File names, queries
+ * and ids never become tags.
+ */
+@Component
+public class StageMetrics {
+
+    public static final String STAGE_DURATION = "rag.stage.duration";
+
+    // Ingestion: extraction excludes the chunking interleaved with it; chunking includes the tokenization it calls
+    public static final String PDF_EXTRACT = "pdf.extract";
+    public static final String CHUNK = "chunk";
+    public static final String TOKENIZE = "tokenize";
+    public static final String INFERENCE = "inference";
+    public static final String DB_WRITE = "db.write";
+
+    // Chat
+    public static final String QUERY_EMBEDDING = "query.embedding";
+    public static final String RETRIEVAL = "retrieval";
+    public static final String CONTEXT_ASSEMBLY = "context.assembly";
+    public static final String LLM = "llm";
+
+    public static final String SUCCESS = "success";
+    public static final String ERROR = "error";
+    public static final String CANCELLED = "cancelled";
+
+    /**
+     * Model tag of stages that do not run a model
+     */
+    public static final String NO_MODEL = "none";
+
+    @Getter
+    private final MeterRegistry registry;
+
+    public StageMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    /**
+     * Records nothing, for components created outside the application context (benchmarks)
+     */
+    public static StageMetrics noop() {
+        return new StageMetrics(new CompositeMeterRegistry());
+    }
+
+    public Timer.Sample start() {
+        return Timer.start(registry);
+    }
+
+    /**
+     * @return the recorded duration in nanoseconds
+     */
+    public long stop(Timer.Sample sample, String stage, String model, boolean success) {
+        return stop(sample, stage, model, success ? SUCCESS : ERROR);
+    }
+
+    /**
+     * @param outcome {@link #SUCCESS}, {@link #ERROR} or {@link #CANCELLED}
+     * @return the recorded duration in nanoseconds
+     */
+    public long stop(Timer.Sample sample, String stage, String model, String outcome) {
+        return sample.stop(timer(stage, model, outcome));
+    }
+
+    public void record(String stage, String model, long nanos) {
+        timer(stage, model, SUCCESS).record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Time {@code body}, tagging the outcome error when it throws
+     */
+    public <T> T time(String stage, String model, Supplier<T> body) {
+        Timer.Sample sample = start();
+        boolean success = false;
+        try {
+            T result = body.get();
+            success = true;
+            return result;
+        } finally {
+            stop(sample, stage, model, success);
+        }
+    }
+
+    /**
+     * Increment a counter; tags are key / value pairs and must come from a small fixed set of values
+     */
+    public void count(String name, long amount, String... tags) {
+        if (amount > 0) {
+            registry.counter(name, tags).increment(amount);
+        }
+    }
+
+    private Timer timer(String stage, String model, String outcome) {
+        return Timer.builder(STAGE_DURATION)
+                .description("Time spent in one stage of PDF ingestion or question answering")
+                .tag("stage", stage)
+                .tag("model", model)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+}
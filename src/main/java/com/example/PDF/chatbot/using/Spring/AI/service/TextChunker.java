@@ -0,0 +1,238 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.jni.CharSpan;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Token-aware chunker fed with text page by page.
+ * One pass over the characters collapses whitespace runs and splits the text into sentences (after . ! ? followed
+ * by whitespace) and paragraphs (blank lines). Sentences are tokenized once, in batches, and packed greedily into
+ * chunks of at most {@code maxTokens} tokens; a chunk is also closed at a paragraph end once it is mostly full.
+ * Trailing sentences of up to {@code overlapTokens} tokens are repeated at the start of the next chunk, and a
+ * sentence longer than a whole chunk is cut at token boundaries.
+ * Each chunk carries its token ids (without special tokens), so the embedder does not tokenize it again.
+ */
+class TextChunker {
+
+    /**
+     * A paragraph end closes the current chunk when it is at least this full
+     */
+    private static final double PARAGRAPH_FILL = 0.75;
+
+    record Chunk(String text, long[] tokenIds) {
+    }
+
+    private record Segment(String text, long[] tokenIds, boolean paragraphEnd) {
+    }
+
+    private final Function<List<String>, Encoding[]> tokenizer;
+    private final int maxTokens;
+    private final int overlapTokens;
+    private final int maxSentenceChars;
+    private final Consumer<Chunk> sink;
+
+    // Sentence being scanned
+    private final StringBuilder sentence = new StringBuilder();
+    private final List<String> sentences = new ArrayList<>();
+    private final List<Boolean> paragraphEnds = new ArrayList<>();
+    private boolean pendingSpace;
+    private int pendingNewlines;
+
+    // Chunk being packed
+    private final Deque<Segment> chunk = new ArrayDeque<>();
+    private int chunkTokens;
+    private int overlapSegments;
+
+    TextChunker(Function<List<String>, Encoding[]> tokenizer, int maxTokens, int overlapTokens, Consumer<Chunk> sink) {
+        this.tokenizer = tokenizer;
+        this.maxTokens = maxTokens;
+        this.overlapTokens = Math.min(overlapTokens, maxTokens / 2);
+        // Bounds a sentence without punctuation; cut at the next space once exceeded (a token is at least one char)
+        this.maxSentenceChars = maxTokens * 8;
+        this.sink = sink;
+    }
+
+    void append(CharSequence text) {
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWhitespace(c)) {
+                if (c == '\n') {
+                    pendingNewlines++;
+                }
+                pendingSpace = sentence.length() > 0;
+                continue;
+            }
+            if (pendingSpace) {
+                if (pendingNewlines >= 2) {
+                    endSentence(true);
+                } else if (endsSentence() || sentence.length() >= maxSentenceChars) {
+                    endSentence(false);
+                } else {
+                    sentence.append(' ');
+                }
+                pendingSpace = false;
+            }
+            pendingNewlines = 0;
+            sentence.append(c);
+        }
+        packSentences();
+    }
+
+    /**
+     * Emit the remaining text as the last chunk
+     */
+    void finish() {
+        endSentence(true);
+        packSentences();
+        if (chunk.size() > overlapSegments) {
+            emitChunk();
+        }
+        chunk.clear();
+        chunkTokens = 0;
+        overlapSegments = 0;
+    }
+
+    private boolean endsSentence() {
+        int end = sentence.length() - 1;
+        // Allow closing quotes and brackets after the terminal punctuation
+        while (end >= 0 && isClosing(sentence.charAt(end))) {
+            end--;
+        }
+        if (end < 0) {
+            return false;
+        }
+        char last = sentence.charAt(end);
+        return last == '.' || last == '!' || last == '?';
+    }
+
+    private void endSentence(boolean paragraphEnd) {
+        if (sentence.length() > 0) {
+            sentences.add(sentence.toString());
+            paragraphEnds.add(paragraphEnd);
+            sentence.setLength(0);
+        } else if (paragraphEnd && !paragraphEnds.isEmpty()) {
+            paragraphEnds.set(paragraphEnds.size() - 1, true);
+        }
+    }
+
+    /**
+     * Tokenize the sentences completed so far in one batch and pack them into chunks
+     */
+    private void packSentences() {
+        if (sentences.isEmpty()) {
+            return;
+        }
+        Encoding[] encodings = tokenizer.apply(sentences);
+        for (int i = 0; i < encodings.length; i++) {
+            long[] ids = encodings[i].getIds();
+            if (ids.length <= maxTokens) {
+                add(new Segment(sentences.get(i), ids, paragraphEnds.get(i)));
+            } else {
+                splitLongSentence(sentences.get(i), encodings[i], paragraphEnds.get(i));
+            }
+        }
+        sentences.clear();
+        paragraphEnds.clear();
+    }
+
+    /**
+     * Cut a sentence that does not fit in one chunk into pieces of at most {@code maxTokens} tokens,
+     * at word boundaries where possible so every piece re-tokenizes to the same ids. A single word longer
+     * than a chunk is cut between its tokens, so no piece ever exceeds the model input.
+     */
+    private void splitLongSentence(String text, Encoding encoding, boolean paragraphEnd) {
+        long[] ids = encoding.getIds();
+        long[] wordIds = encoding.getWordIds();
+        CharSpan[] spans = encoding.getCharTokenSpans();
+        int start = 0;
+        while (start < ids.length) {
+            int end = Math.min(start + maxTokens, ids.length);
+            // Move the cut back to the start of the word it falls into, unless that word began before this piece
+            int cut = end;
+            while (cut < ids.length && cut > start && wordIds[cut] == wordIds[cut - 1]) {
+                cut--;
+            }
+            if (cut > start) {
+                end = cut;
+            }
+            long[] pieceIds = new long[end - start];
+            System.arraycopy(ids, start, pieceIds, 0, pieceIds.length);
+            String pieceText = text.substring(spans[start].getStart(), spans[end - 1].getEnd());
+            add(new Segment(pieceText, pieceIds, paragraphEnd && end == ids.length));
+            start = end;
+        }
+    }
+
+    private void add(Segment segment) {
+        int tokens = segment.tokenIds().length;
+        if (chunkTokens + tokens > maxTokens) {
+            if (chunk.size() > overlapSegments) {
+                emitChunk();
+            }
+            // Drop overlap that does not leave room for the new segment
+            while (!chunk.isEmpty() && chunkTokens + tokens > maxTokens) {
+                chunkTokens -= chunk.removeFirst().tokenIds().length;
+                overlapSegments--;
+            }
+        }
+        chunk.addLast(segment);
+        chunkTokens += tokens;
+        if (segment.paragraphEnd() && chunkTokens >= maxTokens * PARAGRAPH_FILL) {
+            emitChunk();
+        }
+    }
+
+    /**
+     * Emit the packed segments as one chunk and keep its tail as the overlap of the next one
+     */
+    private void emitChunk() {
+        if (chunkTokens == 0) {
+            chunk.clear();
+            overlapSegments = 0;
+            return;
+        }
+        StringBuilder text = new StringBuilder();
+        long[] ids = new long[chunkTokens];
+        int offset = 0;
+        for (Segment segment : chunk) {
+            if (!text.isEmpty()) {
+                text.append(' ');
+            }
+            text.append(segment.text());
+            System.arraycopy(segment.tokenIds(), 0, ids, offset, segment.tokenIds().length);
+            offset += segment.tokenIds().length;
+        }
+        sink.accept(new Chunk(text.toString(), ids));
+
+        Deque<Segment> overlap = new ArrayDeque<>();
+        int overlapSize = 0;
+        // Never carry the whole chunk over, only its tail
+        while (chunk.size() > 1 && overlapSize + chunk.peekLast().tokenIds().length <= overlapTokens) {
+            Segment last = chunk.removeLast();
+            overlap.addFirst(last);
+            overlapSize += last.tokenIds().length;
+        }
+        chunk.clear();
+        chunk.addAll(overlap);
+        chunkTokens = overlapSize;
+        overlapSegments = overlap.size();
+    }
+
+    private static boolean isClosing(char c) {
+        return c == '"' || c == '\'' || c == ')' || c == ']' || c == '”' || c == '’';
+    }
+
+    /**
+     * Same character class as the regex \s
+     */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorDistance;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorQuantization;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.StringJoiner;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Manages the ANN index on document_chunks.embedding_vector, or on its quantized companion column.
+ * The index is created (or recreated when its type, distance or parameters changed) in the background at startup,
+ * and can be rebuilt concurrently on demand. All index DDL runs CONCURRENTLY so searches and ingestion keep working.
+ * Adding a companion column rewrites the table once, under an exclusive lock.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class VectorIndexService {
+
+    public static final String INDEX_NAME = "document_chunks_embedding_idx";
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ExecutorService indexExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "vector-index");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @Value("${vector.index.type:hnsw}")
+    private String indexType = "hnsw";
+
+    @Value("${vector.index.hnsw.m:16}")
+    private int hnswM = 16;
+
+    @Value("${vector.index.hnsw.ef-construction:64}")
+    private int hnswEfConstruction = 64;
+
+    @Value("${vector.index.ivfflat.lists:100}")
+    private int ivfflatLists = 100;
+
+    @Value("${vector.search.distance:inner-product}")
+    private String distanceMetric = "inner-product";
+
+    @Value("${vector.quantization.mode:none}")
+    private String quantizationMode = "none";
+
+    @Value("${spring.ai.vectorstore.pgvector.dimension:384}")
+    private int dimensions = 384;
+
+    private volatile String status = "NOT_STARTED";
+
+    /**
+     * Create the configured index once the schema is in place
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void ensureIndexOnStartup() {
+        if (!isPostgres()) {
+            log.info("Skipping vector index management: database is not PostgreSQL");
+            status = "UNSUPPORTED";
+            return;
+        }
+        indexExecutor.submit(() -> runIndexTask(false));
+    }
+
+    /**
+     * Rebuild the index concurrently in the background
+     */
+    public Future<?> rebuildIndex() {
+        return indexExecutor.submit(() -> runIndexTask(true));
+    }
+
+    public Map<String, Object> getIndexStatus() {
+        return Map.of(
+                "index", INDEX_NAME,
+                "type", indexType,
+                "distance", VectorDistance.from(distanceMetric),
+                "quantization", quantization(),
+                "status", status
+        );
+    }
+
+    private void runIndexTask(boolean rebuild) {
+        try {
+            ensureQuantizedColumn();
+            if ("none".equalsIgnoreCase(indexType)) {
+                dropIndex();
+                status = "DISABLED";
+                return;
+            }
+            status = "BUILDING";
+            String existing = findIndexDefinition();
+            if (existing == null) {
+                createIndex();
+            } else if (!matchesConfiguration(existing) || !isIndexValid()) {
+                // A failed concurrent build leaves an INVALID index behind, which is rebuilt the same way
+                log.info("Vector index definition changed or invalid, recreating: {}", existing);
+                jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+                createIndex();
+            } else if (rebuild) {
+                log.info("Rebuilding vector index {}", INDEX_NAME);
+                jdbcTemplate.execute("REINDEX INDEX CONCURRENTLY " + INDEX_NAME);
+            }
+            status = "READY";
+            log.info("Vector index {} is ready", INDEX_NAME);
+        } catch (DataAccessException e) {
+            status = "FAILED";
+            log.error("Failed to build vector index {}", INDEX_NAME, e);
+        }
+    }
+
+    /**
+     * Add the generated companion column of the configured quantization mode (existing rows are quantized by
+     * the rewrite) and drop the columns of other modes, together with any index on them
+     */
+    private void ensureQuantizedColumn() {
+        VectorQuantization quantization = quantization();
+        for (VectorQuantization mode : VectorQuantization.values()) {
+            // Only issue the DDL when needed: even a no-op ALTER TABLE takes an ACCESS EXCLUSIVE lock
+            if (mode == VectorQuantization.NONE || mode == quantization || !columnExists(mode.indexColumn())) {
+                continue;
+            }
+            log.info("Dropping quantized column {} of the previous quantization mode", mode.indexColumn());
+            jdbcTemplate.execute("ALTER TABLE document_chunks DROP COLUMN IF EXISTS " + mode.indexColumn());
+        }
+        if (quantization != VectorQuantization.NONE && !columnExists(quantization.indexColumn())) {
+            status = "QUANTIZING";
+            log.info("Adding quantized column {} to document_chunks", quantization.indexColumn());
+            jdbcTemplate.execute("ALTER TABLE document_chunks ADD COLUMN IF NOT EXISTS "
+                    + quantization.columnDefinition(dimensions));
+        }
+    }
+
+    private boolean columnExists(String column) {
+        Integer count = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM information_schema.columns WHERE table_name = 'document_chunks' AND column_name = ?",
+                Integer.class, column);
+        return count != null && count > 0;
+    }
+
+    private VectorQuantization quantization() {
+        return VectorQuantization.from(quantizationMode);
+    }
+
+    private String indexTarget() {
+        VectorQuantization quantization = quantization();
+        return "(" + quantization.indexColumn() + " "
+                + quantization.operatorClass(VectorDistance.from(distanceMetric)) + ")";
+    }
+
+    private void createIndex() {
+        String sql = "CREATE INDEX CONCURRENTLY IF NOT EXISTS " + INDEX_NAME +
+                " ON document_chunks USING " + indexMethod() + " " + indexTarget() +
+                " WITH (" + indexOptions() + ")";
+        log.info("Creating vector index: {}", sql);
+        jdbcTemplate.execute(sql);
+    }
+
+    /**
+     * Drop an index left by an earlier configuration, so {@code vector.index.type=none} really searches exactly
+     */
+    private void dropIndex() {
+        if (findIndexDefinition() != null) {
+            log.info("Vector index disabled, dropping {}", INDEX_NAME);
+            jdbcTemplate.execute("DROP INDEX CONCURRENTLY IF EXISTS " + INDEX_NAME);
+        }
+    }
+
+    private String findIndexDefinition() {
+        List<String> definitions = jdbcTemplate.queryForList(
+                "SELECT indexdef FROM pg_indexes WHERE tablename = 'document_chunks' AND indexname = ?",
+                String.class, INDEX_NAME);
+        return definitions.isEmpty() ? null : definitions.get(0);
+    }
+
+    private boolean isIndexValid() {
+        List<Boolean> valid = jdbcTemplate.queryForList(
+                "SELECT i.indisvalid FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid WHERE c.relname = ?",
+                Boolean.class, INDEX_NAME);
+        return !valid.isEmpty() && valid.get(0);
+    }
+
+    /**
+     * Compare against the definition as PostgreSQL reports it, e.g.
+     * "USING hnsw (embedding_vector vector_ip_ops) WITH (m='16', ef_construction='64')"
+     */
+    private boolean matchesConfiguration(String definition) {
+        return definition.contains("USING " + indexMethod() + " " + indexTarget())
+                && definition.contains("WITH (" + joinOptions("%s='%d'") + ")");
+    }
+
+    private String indexMethod() {
+        return "ivfflat".equalsIgnoreCase(indexType) ? "ivfflat" : "hnsw";
+    }
+
+    private String indexOptions() {
+        return joinOptions("%s = %d");
+    }
+
+    private String joinOptions(String format) {
+        Map<String, Integer> options = new LinkedHashMap<>();
+        if ("ivfflat".equals(indexMethod())) {
+            options.put("lists", ivfflatLists);
+        } else {
+            options.put("m", hnswM);
+            options.put("ef_construction", hnswEfConstruction);
+        }
+        StringJoiner joiner = new StringJoiner(", ");
+        options.forEach((name, value) -> joiner.add(String.format(format, name, value)));
+        return joiner.toString();
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) connection ->
+                    connection.getMetaData().getDatabaseProductName());
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (DataAccessException e) {
+            log.warn("Could not determine database type", e);
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        indexExecutor.shutdownNow();
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.PDF.chatbot.using.Spring.AI.entity;
+
+import org.junit.jupiter.api.Test;
+import org.postgresql.core.BaseConnection;
+import org.postgresql.core.Oid;
+import org.postgresql.core.TypeInfo;
+
+import java.sql.SQLException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PgVectorTest {
+
+    @Test
+    void binaryRoundTrip() throws SQLException {
+        float[] values = {0.5f, -1.25f, 3.0e-7f, Float.MAX_VALUE};
+        PgVector vector = new PgVector(values);
+        byte[] bytes = new byte[vector.lengthInBytes() + 3];
+        vector.toBytes(bytes, 3);
+
+        PgVector decoded = new PgVector();
+        decoded.setByteValue(bytes, 3);
+
+        assertThat(decoded.toArray()).containsExactly(values);
+        assertThat(vector.lengthInBytes()).isEqualTo(4 + values.length * Float.BYTES);
+    }
+
+    @Test
+    void textRoundTrip() {
+        float[] values = {1.0f, -0.125f, 42.5f};
+        PgVector decoded = new PgVector();
+        decoded.setValue(new PgVector(values).getValue());
+
+        assertThat(decoded.toArray()).containsExactly(values);
+    }
+
+    @Test
+    void rejectsDimensionMismatch() {
+        byte[] bytes = new byte[4 + 2 * Float.BYTES];
+        new PgVector(new float[]{1f, 2f}).toBytes(bytes, 0);
+        bytes[1] = 3;
+
+        assertThatThrownBy(() -> new PgVector().setByteValue(bytes, 0))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("3 dimensions");
+    }
+
+    @Test
+    void registerFailsWithoutExtension() throws SQLException {
+        BaseConnection connection = mock(BaseConnection.class);
+        TypeInfo typeInfo = mock(TypeInfo.class);
+        when(connection.isWrapperFor(BaseConnection.class)).thenReturn(true);
+        when(connection.unwrap(BaseConnection.class)).thenReturn(connection);
+        when(connection.getTypeInfo()).thenReturn(typeInfo);
+        when(typeInfo.getPGType("vector")).thenReturn(Oid.UNSPECIFIED);
+
+        assertThatThrownBy(() -> PgVector.register(connection))
+                .isInstanceOf(SQLException.class)
+                .hasMessageContaining("CREATE EXTENSION vector");
+    }
+
+    @Test
+    void typeCopiesValues() {
+        PgVectorType type = new PgVectorType();
+        float[] values = {1f, 2f};
+        float[] copy = type.deepCopy(values);
+
+        assertThat(copy).isNotSameAs(values).containsExactly(values);
+        assertThat(type.equals(values, copy)).isTrue();
+        assertThat(type.deepCopy(null)).isNull();
+    }
+}
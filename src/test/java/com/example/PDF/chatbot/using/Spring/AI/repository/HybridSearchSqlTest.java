@@ -0,0 +1,180 @@
+package com.example.PDF.chatbot.using.Spring.AI.repository;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.entity.PgVector;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import org.testcontainers.utility.DockerImageName;
+
+import java.sql.PreparedStatement;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+/**
+ * Runs the hybrid search statement on pgvector and checks the fused ranking against scores computed by hand,
+ * which also checks that every placeholder is bound to the right value.
+ * Query vector (0.8, 0.6, 0) and query text "apple"; with inner product the reported distance is 1 - a·b.
+ * <pre>
+ * chunk  vector           text                 vector rank  lexical rank
+ * A      (1, 0, 0)        cherry               2            -
+ * B      (0.8, 0.6, 0)    apple                1            3
+ * C      (0, 1, 0)        apple apple          3            2
+ * D      (0, 0, 1)        apple apple apple    4            1
+ * </pre>
+ * Chunk F of c.pdf has no ingested_files row, so it is stale: its vector (5, 5, 0) is not unit length.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class HybridSearchSqlTest {
+
+    private static final double K = 60;
+    private static final float[] QUERY = {0.8f, 0.6f, 0f};
+
+    @Container
+    static final PostgreSQLContainer<?> POSTGRES = new PostgreSQLContainer<>(
+            DockerImageName.parse("pgvector/pgvector:pg16").asCompatibleSubstituteFor("postgres"));
+
+    private static DocumentRepositoryCustomImpl repository;
+    private static Map<String, UUID> ids;
+
+    @BeforeAll
+    static void createSchema() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(POSTGRES.getJdbcUrl(),
+                POSTGRES.getUsername(), POSTGRES.getPassword());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS vector");
+        jdbcTemplate.execute("CREATE TABLE document_chunks (id uuid PRIMARY KEY, content text, file_name varchar(255), " +
+                "collection varchar(255), chunk_index int, total_chunks int, content_hash varchar(64), " +
+                "embedding_vector vector(3), created_at timestamp, " +
+                DocumentRepositoryCustomImpl.FULL_TEXT_COLUMN + " tsvector GENERATED ALWAYS AS " +
+                "(to_tsvector('english'::regconfig, coalesce(content, ''))) STORED)");
+        jdbcTemplate.execute("CREATE TABLE ingested_files (file_name varchar(255) PRIMARY KEY, " +
+                "embedding_model varchar(255))");
+        jdbcTemplate.update("INSERT INTO ingested_files VALUES ('a.pdf', 'current'), ('b.pdf', 'current')");
+        ids = Map.of(
+                "A", insert(jdbcTemplate, "a.pdf", "cherry", new float[]{1f, 0f, 0f}),
+                "B", insert(jdbcTemplate, "a.pdf", "apple", QUERY),
+                "C", insert(jdbcTemplate, "a.pdf", "apple apple", new float[]{0f, 1f, 0f}),
+                "D", insert(jdbcTemplate, "a.pdf", "apple apple apple", new float[]{0f, 0f, 1f}),
+                // Best match of both searches, but in another file
+                "E", insert(jdbcTemplate, "b.pdf", "apple apple apple apple", QUERY),
+                "F", insert(jdbcTemplate, "c.pdf", "banana", new float[]{5f, 5f, 0f}));
+        repository = new DocumentRepositoryCustomImpl(jdbcTemplate, new DataSourceTransactionManager(dataSource));
+    }
+
+    private static UUID insert(JdbcTemplate jdbcTemplate, String fileName, String content, float[] vector) {
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            PgVector.register(connection);
+            try (PreparedStatement ps = connection.prepareStatement(
+                    "INSERT INTO document_chunks (id, content, file_name, embedding_vector) VALUES (?, ?, ?, ?)")) {
+                ps.setObject(1, id);
+                ps.setString(2, content);
+                ps.setString(3, fileName);
+                ps.setObject(4, new PgVector(vector));
+                return ps.executeUpdate();
+            }
+        });
+        return id;
+    }
+
+    private static ChunkFilter fileA() {
+        return ChunkFilter.from(new FilterExpressionBuilder().eq("fileName", "a.pdf").build());
+    }
+
+    private static List<DocumentEntity> search(Double maxDistance, FusionWeights weights) {
+        return repository.hybridSearch(QUERY, "apple", 10, maxDistance, fileA(), VectorSearchOptions.defaults(),
+                weights);
+    }
+
+    private static String name(DocumentEntity document) {
+        Map<UUID, String> names = ids.entrySet().stream()
+                .collect(Collectors.toMap(Map.Entry::getValue, Map.Entry::getKey));
+        return names.get(document.getId());
+    }
+
+    private static Map<String, DocumentEntity> byName(List<DocumentEntity> results) {
+        return results.stream().collect(Collectors.toMap(HybridSearchSqlTest::name, Function.identity()));
+    }
+
+    @Test
+    void fusesVectorAndLexicalRanks() {
+        // A lexical weight of 2 tells the weight and k placeholders apart
+        List<DocumentEntity> results = search(null, new FusionWeights(1.0, 2.0));
+
+        assertThat(results).extracting(HybridSearchSqlTest::name).containsExactly("D", "B", "C", "A");
+        Map<String, DocumentEntity> found = byName(results);
+        assertRanks(found.get("A"), 2, null, 1 / (K + 2));
+        assertRanks(found.get("B"), 1, 3, 1 / (K + 1) + 2 / (K + 3));
+        assertRanks(found.get("C"), 3, 2, 1 / (K + 3) + 2 / (K + 2));
+        assertRanks(found.get("D"), 4, 1, 1 / (K + 4) + 2 / (K + 1));
+        assertThat(found.get("A").getDistance()).isCloseTo(0.2, within(1e-6));
+        assertThat(found.get("B").getDistance()).isCloseTo(0.0, within(1e-6));
+        assertThat(found.get("D").getDistance()).isCloseTo(1.0, within(1e-6));
+    }
+
+    @Test
+    void distanceThresholdOnlyLimitsVectorCandidates() {
+        List<DocumentEntity> results = search(0.3, new FusionWeights(1.0, 2.0));
+
+        assertThat(results).extracting(HybridSearchSqlTest::name).containsExactly("B", "D", "C", "A");
+        Map<String, DocumentEntity> found = byName(results);
+        assertRanks(found.get("A"), 2, null, 1 / (K + 2));
+        assertRanks(found.get("B"), 1, 3, 1 / (K + 1) + 2 / (K + 3));
+        assertRanks(found.get("C"), null, 2, 2 / (K + 2));
+        assertRanks(found.get("D"), null, 1, 2 / (K + 1));
+    }
+
+    @Test
+    void zeroWeightTurnsSearchOff() {
+        List<DocumentEntity> lexicalOnly = search(null, new FusionWeights(0.0, 1.0));
+
+        assertThat(lexicalOnly).extracting(HybridSearchSqlTest::name).containsExactly("D", "C", "B");
+        assertRanks(lexicalOnly.get(0), null, 1, 1 / (K + 1));
+
+        List<DocumentEntity> vectorOnly = search(null, new FusionWeights(1.0, 0.0));
+
+        assertThat(vectorOnly).extracting(HybridSearchSqlTest::name).containsExactly("B", "A", "C", "D");
+        assertRanks(vectorOnly.get(3), 4, null, 1 / (K + 4));
+    }
+
+    @Test
+    void ranksChunksOfStaleFilesByCosineDistance() {
+        ChunkFilter filter = ChunkFilter.from(new FilterExpressionBuilder().in("fileName", "a.pdf", "c.pdf").build());
+        VectorSearchOptions options = VectorSearchOptions.defaults().withEmbeddingModel("current");
+        // By inner product F would come first, clamped to distance 0
+        double staleDistance = 1 - 1.4 / Math.sqrt(2);
+
+        List<DocumentEntity> similar = repository.searchSimilarDocuments(QUERY, 10, null, filter, options);
+
+        assertThat(similar).extracting(HybridSearchSqlTest::name).containsExactly("B", "F", "A", "C", "D");
+        assertThat(similar.get(1).getDistance()).isCloseTo(staleDistance, within(1e-6));
+        assertThat(similar.get(2).getDistance()).isCloseTo(0.2, within(1e-6));
+
+        List<DocumentEntity> hybrid = repository.hybridSearch(QUERY, "apple", 10, null, filter, options,
+                new FusionWeights(1.0, 0.0));
+
+        assertThat(hybrid).extracting(HybridSearchSqlTest::name).containsExactly("B", "F", "A", "C", "D");
+        assertRanks(hybrid.get(1), 2, null, 1 / (K + 2));
+        assertThat(hybrid.get(1).getDistance()).isCloseTo(staleDistance, within(1e-6));
+    }
+
+    private static void assertRanks(DocumentEntity document, Integer vectorRank, Integer lexicalRank, double score) {
+        assertThat(document.getVectorRank()).isEqualTo(vectorRank);
+        assertThat(document.getLexicalRank()).isEqualTo(lexicalRank);
+        assertThat(document.getFusedScore()).isCloseTo(score, within(1e-12));
+    }
+}
@@ -0,0 +1,161 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.jni.CharSpan;
+import org.junit.jupiter.api.Test;
+import org.springframework.ai.document.Document;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ContextAssemblerTest {
+
+    /**
+     * One token per word, and one for a paragraph break
+     */
+    private static final Pattern TOKEN = Pattern.compile("\\S+|\n\n");
+
+    private static Encoding[] tokenize(List<String> texts) {
+        Encoding[] encodings = new Encoding[texts.size()];
+        for (int t = 0; t < texts.size(); t++) {
+            List<CharSpan> spans = new ArrayList<>();
+            Matcher matcher = TOKEN.matcher(texts.get(t));
+            while (matcher.find()) {
+                spans.add(new CharSpan(matcher.start(), matcher.end()));
+            }
+            int count = spans.size();
+            long[] ids = new long[count];
+            encodings[t] = new Encoding(ids, ids, new String[count], ids, ids, ids, spans.toArray(CharSpan[]::new),
+                    new Encoding[0]) {
+            };
+        }
+        return encodings;
+    }
+
+    private static ContextAssembler assembler(int maxTokens) {
+        CustomOnnxService onnxService = mock(CustomOnnxService.class);
+        when(onnxService.tokenizeSegments(anyList()))
+                .thenAnswer(invocation -> tokenize(invocation.getArgument(0)));
+        ContextAssembler assembler = new ContextAssembler(onnxService);
+        ReflectionTestUtils.setField(assembler, "maxTokens", maxTokens);
+        return assembler;
+    }
+
+    private static Document chunk(String fileName, int index, String text) {
+        return Document.builder()
+                .text(text)
+                .metadata(Map.of(ChunkVectorStore.FILE_NAME, fileName, ChunkVectorStore.CHUNK_INDEX, index))
+                .build();
+    }
+
+    private static String words(String prefix, int count) {
+        return IntStream.range(0, count).mapToObj(i -> prefix + i).collect(Collectors.joining(" "));
+    }
+
+    @Test
+    void mergesRunsOfConsecutiveChunksInRankOrder() {
+        List<Document> retrieved = List.of(
+                chunk("a.pdf", 3, "a three"),
+                chunk("b.pdf", 0, "b zero"),
+                chunk("a.pdf", 2, "a two"),
+                chunk("a.pdf", 5, "a five"),
+                chunk("a.pdf", 3, "a three"),
+                Document.builder().text("no metadata").build());
+
+        ContextAssembler.Context context = assembler(1500).assemble(retrieved);
+
+        assertThat(context.text()).isEqualTo("a two a three\n\nb zero\n\na five\n\nno metadata");
+        assertThat(context.passages()).isEqualTo(4);
+        // The chunk retrieved twice counts once
+        assertThat(context.chunksUsed()).isEqualTo(5);
+        assertThat(context.tokens()).isEqualTo(4 + 1 + 2 + 1 + 2 + 1 + 2);
+    }
+
+    @Test
+    void keepsChunkOverlapOnlyOnce() {
+        List<Document> retrieved = List.of(
+                chunk("a.pdf", 0, "alpha beta gamma delta epsilon zeta"),
+                chunk("a.pdf", 1, "delta epsilon zeta eta theta"));
+
+        ContextAssembler.Context context = assembler(1500).assemble(retrieved);
+
+        assertThat(context.text()).isEqualTo("alpha beta gamma delta epsilon zeta eta theta");
+        assertThat(context.passages()).isEqualTo(1);
+        assertThat(context.chunksUsed()).isEqualTo(2);
+    }
+
+    @Test
+    void keepsShortCoincidentalOverlap() {
+        List<Document> retrieved = List.of(
+                chunk("a.pdf", 0, "the result was zeta"),
+                chunk("a.pdf", 1, "zeta functions converge"));
+
+        assertThat(assembler(1500).assemble(retrieved).text())
+                .isEqualTo("the result was zeta zeta functions converge");
+    }
+
+    @Test
+    void overlapIsTheLongestSuffixPrefixOnWordBoundaries() {
+        assertThat(ContextAssembler.overlap("one two three four five six", "three four five six seven"))
+                .isEqualTo("three four five six".length());
+        // Whole chunk repeated
+        assertThat(ContextAssembler.overlap("x three four five six", "three four five six"))
+                .isEqualTo("three four five six".length());
+        // 15 characters: below MIN_OVERLAP_CHARS
+        assertThat(ContextAssembler.overlap("one four five sixes", "four five sixes next")).isZero();
+        // Long enough, but starts inside a word of the previous chunk
+        assertThat(ContextAssembler.overlap("xthree four five six", "three four five six seven")).isZero();
+        // Long enough, but ends inside a word of the next chunk
+        assertThat(ContextAssembler.overlap("one three four five six", "three four five sixty")).isZero();
+        assertThat(ContextAssembler.overlap("", "anything")).isZero();
+    }
+
+    @Test
+    void cutsThePassageThatCrossesTheBudget() {
+        List<Document> retrieved = List.of(
+                chunk("a.pdf", 0, words("a", 30)),
+                chunk("b.pdf", 0, words("b", 60)),
+                chunk("c.pdf", 0, words("c", 10)));
+
+        ContextAssembler.Context context = assembler(80).assemble(retrieved);
+
+        // 30 tokens, the separator, then the first 49 words of the second passage
+        assertThat(context.text()).isEqualTo(words("a", 30) + "\n\n" + words("b", 49));
+        assertThat(context.tokens()).isEqualTo(80);
+        assertThat(context.passages()).isEqualTo(2);
+        assertThat(context.chunksUsed()).isEqualTo(2);
+    }
+
+    @Test
+    void dropsPassagesWhenTooLittleBudgetIsLeft() {
+        List<Document> retrieved = List.of(
+                chunk("a.pdf", 0, words("a", 30)),
+                chunk("b.pdf", 0, words("b", 60)));
+
+        ContextAssembler.Context context = assembler(50).assemble(retrieved);
+
+        assertThat(context.text()).isEqualTo(words("a", 30));
+        assertThat(context.tokens()).isEqualTo(30);
+        assertThat(context.passages()).isEqualTo(1);
+    }
+
+    @Test
+    void assemblesNothingFromNoDocuments() {
+        ContextAssembler.Context context = assembler(1500).assemble(List.of());
+
+        assertThat(context.text()).isEmpty();
+        assertThat(context.tokens()).isZero();
+        assertThat(context.passages()).isZero();
+    }
+}
@@ -0,0 +1,175 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.function.IntPredicate;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.within;
+
+class HnswIndexTest {
+
+    private static final int DIMENSIONS = 32;
+    private static final int NODES = 2000;
+    private static final int K = 10;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(7);
+
+    static float[] randomUnitVector(Random random, int dimensions) {
+        float[] vector = new float[dimensions];
+        double norm = 0;
+        for (int d = 0; d < dimensions; d++) {
+            vector[d] = (float) random.nextGaussian();
+            norm += vector[d] * vector[d];
+        }
+        for (int d = 0; d < dimensions; d++) {
+            vector[d] /= (float) Math.sqrt(norm);
+        }
+        return vector;
+    }
+
+    static float squaredDistance(float[] a, float[] b) {
+        float sum = 0;
+        for (int d = 0; d < a.length; d++) {
+            float diff = a[d] - b[d];
+            sum += diff * diff;
+        }
+        return sum;
+    }
+
+    /**
+     * Exact k nearest nodes accepted by the filter
+     */
+    static List<Integer> bruteForce(List<float[]> vectors, float[] query, int k, IntPredicate accept) {
+        return IntStream.range(0, vectors.size())
+                .filter(accept)
+                .boxed()
+                .sorted(Comparator.comparingDouble(node -> squaredDistance(query, vectors.get(node))))
+                .limit(k)
+                .toList();
+    }
+
+    private List<float[]> fill(HnswIndex index, int count) throws IOException {
+        List<float[]> vectors = IntStream.range(0, count).mapToObj(i -> randomUnitVector(random, DIMENSIONS)).toList();
+        for (int i = 0; i < count; i++) {
+            assertThat(index.add(vectors.get(i))).isEqualTo(i);
+        }
+        return vectors;
+    }
+
+    private double recall(HnswIndex index, List<float[]> vectors, IntPredicate live) {
+        int found = 0;
+        int queries = 50;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random, DIMENSIONS);
+            Set<Integer> expected = new HashSet<>(bruteForce(vectors, query, K, live));
+            List<HnswIndex.Neighbor> results = index.search(query, K, 64, node -> true);
+            assertThat(results).hasSize(K);
+            found += (int) results.stream().filter(neighbor -> expected.contains(neighbor.node())).count();
+        }
+        return found / (double) (queries * K);
+    }
+
+    @Test
+    void findsNearestNeighborsLikeBruteForce() throws IOException {
+        try (HnswIndex index = new HnswIndex(directory, DIMENSIONS, 16, 100)) {
+            List<float[]> vectors = fill(index, NODES);
+
+            assertThat(recall(index, vectors, node -> true)).isGreaterThanOrEqualTo(0.95);
+
+            float[] query = vectors.get(123);
+            HnswIndex.Neighbor nearest = index.search(query, 1, 64, node -> true).get(0);
+            assertThat(nearest.node()).isEqualTo(123);
+            assertThat(nearest.distance()).isCloseTo(0f, within(1e-6f));
+        }
+    }
+
+    @Test
+    void resultsAreOrderedAndCarrySquaredDistances() throws IOException {
+        try (HnswIndex index = new HnswIndex(directory, DIMENSIONS, 16, 100)) {
+            List<float[]> vectors = fill(index, 500);
+            float[] query = randomUnitVector(random, DIMENSIONS);
+
+            List<HnswIndex.Neighbor> results = index.search(query, K, 64, node -> true);
+
+            assertThat(results).isSortedAccordingTo(Comparator.comparingDouble(HnswIndex.Neighbor::distance));
+            for (HnswIndex.Neighbor neighbor : results) {
+                assertThat(neighbor.distance())
+                        .isCloseTo(squaredDistance(query, vectors.get(neighbor.node())), within(1e-5f));
+            }
+        }
+    }
+
+    @Test
+    void excludesDeletedAndFilteredNodes() throws IOException {
+        try (HnswIndex index = new HnswIndex(directory, DIMENSIONS, 16, 100)) {
+            List<float[]> vectors = fill(index, NODES);
+            for (int node = 0; node < NODES; node += 3) {
+                index.delete(node);
+            }
+            assertThat(index.deletedCount()).isEqualTo((NODES + 2) / 3);
+            assertThat(index.isDeleted(0)).isTrue();
+
+            assertThat(recall(index, vectors, node -> node % 3 != 0)).isGreaterThanOrEqualTo(0.95);
+
+            float[] query = randomUnitVector(random, DIMENSIONS);
+            IntPredicate even = node -> node % 2 == 0;
+            List<HnswIndex.Neighbor> results = index.search(query, K, 64, even);
+            assertThat(results).extracting(HnswIndex.Neighbor::node)
+                    .allMatch(node -> node % 2 == 0 && node % 3 != 0);
+            Set<Integer> expected = new HashSet<>(bruteForce(vectors, query, K, node -> even.test(node) && node % 3 != 0));
+            long hits = results.stream().filter(neighbor -> expected.contains(neighbor.node())).count();
+            assertThat(hits).isGreaterThanOrEqualTo(K - 2);
+        }
+    }
+
+    @Test
+    void reloadsSnapshotFromMappedFiles() throws IOException {
+        List<float[]> vectors;
+        float[] query = randomUnitVector(random, DIMENSIONS);
+        List<HnswIndex.Neighbor> before;
+        try (HnswIndex index = new HnswIndex(directory, DIMENSIONS, 16, 100)) {
+            vectors = fill(index, NODES);
+            index.delete(5);
+            index.delete(700);
+            index.snapshot();
+            before = index.search(query, K, 64, node -> true);
+            // Not covered by the snapshot, so undone after reopening
+            index.delete(6);
+        }
+
+        try (HnswIndex reopened = new HnswIndex(directory, DIMENSIONS, 16, 100)) {
+            assertThat(reopened.size()).isEqualTo(NODES);
+            assertThat(reopened.deletedCount()).isEqualTo(2);
+            assertThat(reopened.isDeleted(700)).isTrue();
+            assertThat(reopened.vector(42)).containsExactly(vectors.get(42));
+            assertThat(reopened.search(query, K, 64, node -> true)).isEqualTo(before);
+
+            // The reopened graph keeps accepting inserts
+            float[] added = randomUnitVector(random, DIMENSIONS);
+            assertThat(reopened.add(added)).isEqualTo(NODES);
+            assertThat(reopened.search(added, 1, 64, node -> true).get(0).node()).isEqualTo(NODES);
+        }
+    }
+
+    @Test
+    void searchesAnEmptyIndex() throws IOException {
+        try (HnswIndex index = new HnswIndex(directory, DIMENSIONS, 16, 100)) {
+            assertThat(index.search(randomUnitVector(random, DIMENSIONS), K, 64, node -> true)).isEmpty();
+            assertThat(index.size()).isZero();
+        }
+        assertThat(directory.toFile().list()).contains("vectors.bin", "graph.bin");
+    }
+}
@@ -0,0 +1,284 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import com.example.PDF.chatbot.using.Spring.AI.entity.DocumentEntity;
+import com.example.PDF.chatbot.using.Spring.AI.repository.DocumentRepository;
+import com.example.PDF.chatbot.using.Spring.AI.repository.VectorDistance;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.ai.document.Document;
+import org.springframework.ai.embedding.EmbeddingModel;
+import org.springframework.ai.vectorstore.SearchRequest;
+import org.springframework.ai.vectorstore.filter.Filter;
+import org.springframework.ai.vectorstore.filter.FilterExpressionBuilder;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static com.example.PDF.chatbot.using.Spring.AI.service.HnswIndexTest.randomUnitVector;
+import static com.example.PDF.chatbot.using.Spring.AI.service.HnswIndexTest.squaredDistance;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.within;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class HnswVectorStoreTest {
+
+    private static final int DIMENSIONS = 16;
+    private static final int K = 5;
+
+    @TempDir
+    Path directory;
+
+    private final Random random = new Random(11);
+    private final Map<String, float[]> embeddings = new HashMap<>();
+    private final EmbeddingModel embeddingModel = mock(EmbeddingModel.class);
+    private HnswVectorStore store;
+
+    HnswVectorStoreTest() {
+        when(embeddingModel.dimensions()).thenReturn(DIMENSIONS);
+        when(embeddingModel.embed(anyList())).thenAnswer(invocation -> {
+            List<String> texts = invocation.getArgument(0);
+            return texts.stream().map(embeddings::get).toList();
+        });
+    }
+
+    @AfterEach
+    void closeStore() throws IOException {
+        if (store != null) {
+            store.close();
+        }
+    }
+
+    private HnswVectorStore open(DocumentRepository repository) throws IOException {
+        return new HnswVectorStore(repository, embeddingModel, directory.resolve("hnsw"), 8, 64, 64,
+                VectorDistance.L2, Duration.ofHours(1), 0.3);
+    }
+
+    private List<Document> documents(String fileName, int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String text = fileName + " chunk " + i;
+            embeddings.put(text, randomUnitVector(random, DIMENSIONS));
+            documents.add(Document.builder()
+                    .id(UUID.randomUUID().toString())
+                    .text(text)
+                    .metadata(Map.of(ChunkVectorStore.FILE_NAME, fileName, ChunkVectorStore.CHUNK_INDEX, i))
+                    .build());
+        }
+        return documents;
+    }
+
+    private List<String> search(float[] query, Filter.Expression filter) {
+        SearchRequest.Builder request = SearchRequest.builder().query("unused").topK(K);
+        if (filter != null) {
+            request.filterExpression(filter);
+        }
+        return store.similaritySearch(query, request.build()).stream().map(Document::getId).toList();
+    }
+
+    private List<String> bruteForce(List<Document> documents, float[] query) {
+        return documents.stream()
+                .sorted((a, b) -> Float.compare(squaredDistance(query, embeddings.get(a.getText())),
+                        squaredDistance(query, embeddings.get(b.getText()))))
+                .limit(K)
+                .map(Document::getId)
+                .toList();
+    }
+
+    private double recall(List<Document> live) {
+        int found = 0;
+        int queries = 30;
+        for (int q = 0; q < queries; q++) {
+            float[] query = randomUnitVector(random, DIMENSIONS);
+            Set<String> expected = new HashSet<>(bruteForce(live, query));
+            found += (int) search(query, null).stream().filter(expected::contains).count();
+        }
+        return found / (double) (queries * K);
+    }
+
+    @Test
+    void searchesLikeBruteForceWithoutRepository() throws IOException {
+        store = open(null);
+        List<Document> documents = documents("a.pdf", 400);
+        store.add(documents);
+
+        assertThat(recall(documents)).isGreaterThanOrEqualTo(0.95);
+
+        Document target = documents.get(17);
+        float[] query = embeddings.get(target.getText());
+        Document nearest = store.similaritySearch(query, SearchRequest.builder().query("unused").topK(1).build()).get(0);
+        assertThat(nearest.getId()).isEqualTo(target.getId());
+        assertThat(nearest.getText()).isEqualTo(target.getText());
+        assertThat(nearest.getMetadata())
+                .containsEntry(ChunkVectorStore.FILE_NAME, "a.pdf")
+                .containsEntry(ChunkVectorStore.CHUNK_INDEX, 17);
+        assertThat((Double) nearest.getMetadata().get(ChunkVectorStore.DISTANCE)).isCloseTo(0.0, within(1e-3));
+    }
+
+    @Test
+    void deletesByIdAndFilter() throws IOException {
+        store = open(null);
+        List<Document> a = documents("a.pdf", 200);
+        List<Document> b = documents("b.pdf", 200);
+        store.add(a);
+        store.add(b);
+
+        store.delete(a.subList(0, 100).stream().map(Document::getId).toList());
+        store.delete(new FilterExpressionBuilder().eq(ChunkVectorStore.FILE_NAME, "b.pdf").build());
+
+        List<Document> live = a.subList(100, 200);
+        assertThat(store.getStatus()).containsEntry("chunks", 100).containsEntry("deleted", 300);
+        assertThat(recall(live)).isGreaterThanOrEqualTo(0.95);
+        Set<String> liveIds = new HashSet<>(live.stream().map(Document::getId).toList());
+        for (int q = 0; q < 10; q++) {
+            assertThat(search(randomUnitVector(random, DIMENSIONS), null)).allMatch(liveIds::contains);
+        }
+    }
+
+    @Test
+    void rejectsNullDeleteFilter() throws IOException {
+        store = open(null);
+        store.add(documents("a.pdf", 10));
+
+        assertThatThrownBy(() -> store.delete((Filter.Expression) null)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(store.getStatus()).containsEntry("chunks", 10);
+    }
+
+    @Test
+    void filtersByMetadata() throws IOException {
+        store = open(null);
+        store.add(documents("a.pdf", 100));
+        List<Document> b = documents("b.pdf", 100);
+        store.add(b);
+        Set<String> bIds = new HashSet<>(b.stream().map(Document::getId).toList());
+
+        List<String> results = search(randomUnitVector(random, DIMENSIONS),
+                new FilterExpressionBuilder().eq(ChunkVectorStore.FILE_NAME, "b.pdf").build());
+
+        assertThat(results).hasSize(K).allMatch(bIds::contains);
+    }
+
+    @Test
+    void reloadsFromMappedFiles() throws IOException {
+        store = open(null);
+        List<Document> documents = documents("a.pdf", 300);
+        store.add(documents);
+        store.delete(List.of(documents.get(0).getId()));
+        float[] query = randomUnitVector(random, DIMENSIONS);
+        List<String> before = search(query, null);
+        store.close();
+
+        store = open(null);
+
+        assertThat(store.getStatus()).containsEntry("nodes", 300).containsEntry("chunks", 299);
+        assertThat(search(query, null)).isEqualTo(before);
+        Document nearest = store.similaritySearch(embeddings.get(documents.get(5).getText()),
+                SearchRequest.builder().query("unused").topK(1).build()).get(0);
+        assertThat(nearest.getText()).isEqualTo(documents.get(5).getText());
+        assertThat(recall(documents.subList(1, 300))).isGreaterThanOrEqualTo(0.95);
+    }
+
+    @Test
+    void compactionDropsTombstones() throws IOException {
+        store = open(null);
+        List<Document> documents = documents("a.pdf", 300);
+        store.add(documents);
+        store.delete(IntStream.range(0, 300).filter(i -> i % 2 == 0)
+                .mapToObj(i -> documents.get(i).getId()).toList());
+        List<Document> live = IntStream.range(0, 300).filter(i -> i % 2 == 1).mapToObj(documents::get).toList();
+
+        store.compact();
+
+        assertThat(store.getStatus()).containsEntry("nodes", 150).containsEntry("deleted", 0)
+                .containsEntry("chunks", 150);
+        assertThat(recall(live)).isGreaterThanOrEqualTo(0.95);
+        Document nearest = store.similaritySearch(embeddings.get(live.get(3).getText()),
+                SearchRequest.builder().query("unused").topK(1).build()).get(0);
+        assertThat(nearest.getId()).isEqualTo(live.get(3).getId());
+        assertThat(nearest.getText()).isEqualTo(live.get(3).getText());
+
+        // The compacted files are what the store reopens
+        store.close();
+        store = open(null);
+        assertThat(store.getStatus()).containsEntry("nodes", 150).containsEntry("chunks", 150);
+        assertThat(recall(live)).isGreaterThanOrEqualTo(0.95);
+        assertThat(directory.toFile().list()).containsExactly("hnsw");
+    }
+
+    @Test
+    void searchesWhileInsertsGrowTheChunkArray() throws Exception {
+        store = open(null);
+        store.add(documents("a.pdf", 1000));
+        List<List<Document>> batches = IntStream.range(0, 20).mapToObj(i -> documents("b" + i + ".pdf", 100)).toList();
+        Filter.Expression filter = new FilterExpressionBuilder().ne(ChunkVectorStore.FILE_NAME, "none").build();
+        List<float[]> queries = IntStream.range(0, 50).mapToObj(i -> randomUnitVector(random, DIMENSIONS)).toList();
+
+        Thread writer = new Thread(() -> batches.forEach(store::add));
+        writer.start();
+        int searches = 0;
+        while (writer.isAlive() || searches == 0) {
+            // Both the filter and the results read the chunk of every node the index returns
+            assertThat(search(queries.get(searches % queries.size()), filter)).hasSize(K);
+            searches++;
+        }
+        writer.join();
+
+        assertThat(store.getStatus()).containsEntry("chunks", 3000);
+    }
+
+    private DocumentEntity row(String text, int chunkIndex) {
+        DocumentEntity row = new DocumentEntity();
+        row.setId(UUID.randomUUID());
+        row.setContent(text);
+        row.setFileName("a.pdf");
+        row.setChunkIndex(chunkIndex);
+        row.setTotalChunks(50);
+        row.setEmbeddingVector(randomUnitVector(random, DIMENSIONS));
+        return row;
+    }
+
+    @Test
+    void synchronizesOnlyChangedRows() throws IOException {
+        DocumentRepository repository = mock(DocumentRepository.class);
+        List<DocumentEntity> rows = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            rows.add(row("text " + i, i));
+        }
+        when(repository.findByFileName("a.pdf")).thenAnswer(invocation -> List.copyOf(rows));
+        store = open(repository);
+
+        store.onDocumentsChanged(new DocumentsChangedEvent("a.pdf"));
+        assertThat(store.getStatus()).containsEntry("nodes", 50).containsEntry("deleted", 0);
+
+        // Nothing changed: nothing is touched
+        store.onDocumentsChanged(new DocumentsChangedEvent("a.pdf"));
+        assertThat(store.getStatus()).containsEntry("nodes", 50).containsEntry("deleted", 0);
+
+        // One re-embedded row, one moved row, one removed row and one new row
+        rows.get(0).setEmbeddingVector(randomUnitVector(random, DIMENSIONS));
+        rows.get(1).setChunkIndex(99);
+        rows.remove(2);
+        rows.add(row("text new", 50));
+        store.onDocumentsChanged(new DocumentsChangedEvent("a.pdf"));
+
+        assertThat(store.getStatus()).containsEntry("nodes", 53).containsEntry("deleted", 3)
+                .containsEntry("chunks", 50);
+        Document nearest = store.similaritySearch(rows.get(0).getEmbeddingVector(),
+                SearchRequest.builder().query("unused").topK(1).build()).get(0);
+        assertThat(nearest.getId()).isEqualTo(rows.get(0).getId().toString());
+        assertThat(nearest.getMetadata()).containsEntry(ChunkVectorStore.CHUNK_INDEX, 0);
+    }
+}
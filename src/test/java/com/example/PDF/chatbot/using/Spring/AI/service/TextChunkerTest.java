@@ -0,0 +1,105 @@
+package com.example.PDF.chatbot.using.Spring.AI.service;
+
+import ai.djl.huggingface.tokenizers.Encoding;
+import ai.djl.huggingface.tokenizers.jni.CharSpan;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TextChunkerTest {
+
+    /**
+     * Stand-in for a word-piece tokenizer: every word becomes one token per started three characters
+     */
+    private static Encoding[] tokenize(List<String> texts) {
+        Encoding[] encodings = new Encoding[texts.size()];
+        for (int t = 0; t < texts.size(); t++) {
+            String text = texts.get(t);
+            List<Long> ids = new ArrayList<>();
+            List<Long> wordIds = new ArrayList<>();
+            List<CharSpan> spans = new ArrayList<>();
+            int word = 0;
+            int i = 0;
+            while (i < text.length()) {
+                if (text.charAt(i) == ' ') {
+                    i++;
+                    continue;
+                }
+                int wordEnd = text.indexOf(' ', i);
+                if (wordEnd < 0) {
+                    wordEnd = text.length();
+                }
+                for (int start = i; start < wordEnd; start += 3) {
+                    int end = Math.min(start + 3, wordEnd);
+                    ids.add((long) text.substring(start, end).hashCode());
+                    wordIds.add((long) word);
+                    spans.add(new CharSpan(start, end));
+                }
+                word++;
+                i = wordEnd;
+            }
+            long[] idArray = ids.stream().mapToLong(Long::longValue).toArray();
+            long[] wordIdArray = wordIds.stream().mapToLong(Long::longValue).toArray();
+            encodings[t] = new Encoding(idArray, new long[idArray.length], new String[idArray.length], wordIdArray,
+                    new long[idArray.length], new long[idArray.length], spans.toArray(CharSpan[]::new),
+                    new Encoding[0]) {
+            };
+        }
+        return encodings;
+    }
+
+    private static List<TextChunker.Chunk> chunk(String text, int maxTokens, int overlapTokens) {
+        List<TextChunker.Chunk> chunks = new ArrayList<>();
+        TextChunker chunker = new TextChunker(TextChunkerTest::tokenize, maxTokens, overlapTokens, chunks::add);
+        chunker.append(text);
+        chunker.finish();
+        return chunks;
+    }
+
+    private static List<String> texts(List<TextChunker.Chunk> chunks) {
+        return chunks.stream().map(TextChunker.Chunk::text).toList();
+    }
+
+    @Test
+    void packsWholeSentencesIntoChunks() {
+        // Two tokens per sentence
+        List<TextChunker.Chunk> chunks = chunk("Aa  bb. Cc dd.\n Ee ff.\tGg.", 5, 0);
+
+        assertThat(texts(chunks)).containsExactly("Aa bb. Cc dd.", "Ee ff. Gg.");
+        assertThat(chunks.get(0).tokenIds()).containsExactly(tokenize(List.of("Aa bb. Cc dd."))[0].getIds());
+    }
+
+    @Test
+    void closesChunkAtParagraphEndOnceMostlyFull() {
+        List<TextChunker.Chunk> chunks = chunk("Aa bb cc. Dd.\n\nEe ff.", 5, 0);
+
+        assertThat(texts(chunks)).containsExactly("Aa bb cc. Dd.", "Ee ff.");
+    }
+
+    @Test
+    void repeatsTrailingSentencesAsOverlap() {
+        List<TextChunker.Chunk> chunks = chunk("Aa bb. Cc dd. Ee ff. Gg hh.", 4, 2);
+
+        assertThat(texts(chunks)).containsExactly("Aa bb. Cc dd.", "Cc dd. Ee ff.", "Ee ff. Gg hh.");
+    }
+
+    @Test
+    void cutsLongSentenceAtWordBoundaries() {
+        List<TextChunker.Chunk> chunks = chunk("aa bb cc dd ee ff gg", 3, 0);
+
+        assertThat(texts(chunks)).containsExactly("aa bb cc", "dd ee ff", "gg");
+    }
+
+    @Test
+    void hardSplitsWordLongerThanChunk() {
+        String word = "abcdefghijklmnopqrstuvwxyz".repeat(2);
+        List<TextChunker.Chunk> chunks = chunk("Short. " + word + " end.", 4, 1);
+
+        assertThat(chunks).allSatisfy(chunk -> assertThat(chunk.tokenIds()).hasSizeLessThanOrEqualTo(4));
+        assertThat(String.join("", texts(chunks)).replace(" ", "")).contains(word);
+        assertThat(chunks.get(chunks.size() - 1).text()).endsWith("end.");
+    }
+}